@@ -0,0 +1,614 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * BPlusTree is a disk-resident index that maps record keys to record IDs.
+ * Each node occupies one page of its own index file, using the default page size whatever the data file uses.
+ * <p>
+ * Entries are ordered by key and then by record ID, so duplicate keys are allowed and every entry
+ * is unique. Leaves are linked left to right for range iteration. Deletes remove the entry from
+ * its leaf without merging underfull nodes; the tree stays correct and free space is reused by
+ * later inserts into the same key range. The first page of the file holds the tree metadata.
+ * <p>
+ * Modified nodes are written only on flush, close or eviction, so after a crash the file may hold
+ * a mix of old and new nodes. The metadata therefore carries a clean-shutdown flag that
+ * {@link #close()} sets once everything is forced to disk and the first change after opening
+ * clears; {@link #wasClosedCleanly()} reports it, and the data file rebuilds an index that was not
+ * closed cleanly.
+ */
+public class BPlusTree implements RecordIndex {
+    public static final int MAGIC = 0x42505452; // "BPTR", identifies a B+-tree index file
+    public static final int VERSION = 2; // Format version of the index file
+    public static final int NODE_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES; // Node type, entry count and next leaf
+    public static final int LEAF_ENTRY_SIZE = Integer.BYTES + Long.BYTES; // Key and record ID
+    public static final int INTERNAL_ENTRY_SIZE = Integer.BYTES + Long.BYTES * 2; // Separator key, separator record ID and child
+    public static final int LEAF_CAPACITY = (Page.DEFAULT_PAGE_SIZE - NODE_HEADER_SIZE) / LEAF_ENTRY_SIZE;
+    public static final int INTERNAL_CAPACITY = (Page.DEFAULT_PAGE_SIZE - NODE_HEADER_SIZE - Long.BYTES) / INTERNAL_ENTRY_SIZE;
+    private static final int LEAF = 0;
+    private static final int INTERNAL = 1;
+    private static final long NO_PAGE = -1; // Next pointer of the last leaf
+    private static final int METADATA_SIZE = Integer.BYTES * 3 + Long.BYTES * 3; // Magic, version, root, pages, entries, clean flag
+
+    private final FileChannel channel;       // Open channel to the index file
+    private final Map<Long, Node> nodeCache; // Decoded nodes in access order, evicted least recently used first
+    private final int cacheCapacity;         // Number of nodes kept in memory between operations
+    private long rootOffset;                 // Offset of the root node
+    private long pageCount;                  // Pages in the index file, including the metadata page
+    private long entryCount;                 // Number of entries in the tree
+    private boolean metadataDirty;           // True if the metadata page must be rewritten
+    private final boolean closedCleanly;     // True if the file was closed cleanly before this open
+    private boolean cleanOnDisk;             // True while the metadata on disk carries the clean-shutdown flag
+    private long nodeReadCount;              // Nodes read from disk
+    private long nodeWriteCount;             // Nodes written to disk
+    private boolean closed;                  // True once close() has been called
+
+    /**
+     * A decoded tree node. Leaves hold (key, record ID) entries; internal nodes hold
+     * count separators and count + 1 children, where child i holds entries that are
+     * at least separator i - 1 and less than separator i.
+     */
+    private static class Node {
+        private final long offset; // Offset of the node in the index file
+        private final boolean leaf;
+        private int count;         // Number of entries (leaf) or separators (internal)
+        private final int[] keys;
+        private final long[] recordIds;
+        private final long[] children; // Child offsets, null for a leaf
+        private long next = NO_PAGE;   // Next leaf in key order, leaves only
+        private boolean dirty;         // True if the node changed since it was written
+
+        Node(long offset, boolean leaf) {
+            this.offset = offset;
+            this.leaf = leaf;
+            // One spare entry lets a node overflow briefly before it is split
+            int capacity = (leaf ? LEAF_CAPACITY : INTERNAL_CAPACITY) + 1;
+            this.keys = new int[capacity];
+            this.recordIds = new long[capacity];
+            this.children = leaf ? null : new long[capacity + 1];
+        }
+    }
+
+    /**
+     * Separator and new right sibling produced when a node splits.
+     */
+    private static class Split {
+        private final int key;
+        private final long recordId;
+        private final long right;
+
+        Split(int key, long recordId, long right) {
+            this.key = key;
+            this.recordId = recordId;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Opens the index stored in the given file, creating an empty tree if the file is empty.
+     *
+     * @param filename      Path to the index file.
+     * @param cacheCapacity The number of nodes kept in memory.
+     * @throws IOException If an I/O error occurs or the file is not a B+-tree index.
+     * @throws IllegalArgumentException if the cache capacity is not positive.
+     */
+    public BPlusTree(String filename, int cacheCapacity) throws IOException {
+        if (cacheCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid node cache size: " + cacheCapacity);
+        }
+        this.cacheCapacity = cacheCapacity;
+        this.nodeCache = new LinkedHashMap<>(16, 0.75f, true);
+        this.channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean clean = false;
+        try {
+            if (channel.size() == 0 || !readMetadata()) {
+                // 이전 버전의 인덱스는 데이터 파일에서 다시 만들 수 있으므로 비운다
+                channel.truncate(0);
+                initialize();
+            } else {
+                clean = cleanOnDisk;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.closedCleanly = clean;
+    }
+
+    /**
+     * Adds an entry to the index.
+     *
+     * @param key      The record key.
+     * @param recordId The ID of the record holding the key.
+     * @throws IOException If an I/O error occurs while reading or writing nodes.
+     */
+    @Override
+    public void insert(int key, long recordId) throws IOException {
+        markInUse();
+        Split split = insert(getNode(rootOffset), key, recordId);
+        if (split != null) {
+            // The root split: a new root takes the old root and its new sibling as children
+            Node root = allocateNode(false);
+            root.keys[0] = split.key;
+            root.recordIds[0] = split.recordId;
+            root.children[0] = rootOffset;
+            root.children[1] = split.right;
+            root.count = 1;
+            rootOffset = root.offset;
+        }
+        entryCount++;
+        metadataDirty = true;
+        evictNodes();
+    }
+
+    /**
+     * Removes one entry from the index.
+     *
+     * @param key      The record key.
+     * @param recordId The ID of the record holding the key.
+     * @return True if the entry was found and removed.
+     * @throws IOException If an I/O error occurs while reading or writing nodes.
+     */
+    @Override
+    public boolean delete(int key, long recordId) throws IOException {
+        Node leaf = findLeaf(key, recordId);
+        int position = lowerBound(leaf, key, recordId);
+        boolean found = position < leaf.count && leaf.keys[position] == key && leaf.recordIds[position] == recordId;
+        if (found) {
+            markInUse();
+            System.arraycopy(leaf.keys, position + 1, leaf.keys, position, leaf.count - position - 1);
+            System.arraycopy(leaf.recordIds, position + 1, leaf.recordIds, position, leaf.count - position - 1);
+            leaf.count--;
+            leaf.dirty = true;
+            entryCount--;
+            metadataDirty = true;
+        }
+        evictNodes();
+        return found;
+    }
+
+    /**
+     * Finds the record ID of the first entry with the given key.
+     * When the key is duplicated, the entry with the lowest record ID is returned.
+     *
+     * @param key The key to search for.
+     * @return The record ID, or {@link #NOT_FOUND} if no entry has the key.
+     * @throws IOException If an I/O error occurs while reading nodes.
+     */
+    @Override
+    public long search(int key) throws IOException {
+        PrimitiveIterator.OfLong iterator = rangeScan(key, key);
+        return iterator.hasNext() ? iterator.nextLong() : NOT_FOUND;
+    }
+
+    /**
+     * Checks whether the index keeps entries in key order. A B+-tree always does.
+     *
+     * @return True.
+     */
+    @Override
+    public boolean isOrdered() {
+        return true;
+    }
+
+    /**
+     * Returns the record IDs of all entries with keys in the given range, in key order.
+     * The iterator follows the leaf links and reads one leaf at a time; it must not be used
+     * after the tree is modified. I/O errors raised while advancing are rethrown as UncheckedIOException.
+     *
+     * @param lowerBound The lower bound of the range (inclusive).
+     * @param upperBound The upper bound of the range (inclusive).
+     * @return An iterator over the matching record IDs.
+     * @throws IOException If an I/O error occurs while locating the first leaf.
+     */
+    @Override
+    public PrimitiveIterator.OfLong rangeScan(int lowerBound, int upperBound) throws IOException {
+        Node first = findLeaf(lowerBound, Long.MIN_VALUE);
+        int start = lowerBound(first, lowerBound, Long.MIN_VALUE);
+        evictNodes();
+        return new PrimitiveIterator.OfLong() {
+            private long leafOffset = first.offset; // Leaf holding the next entry, NO_PAGE at the end
+            private int position = start;           // Next entry within the leaf
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    // Skip exhausted and empty leaves along the leaf chain
+                    while (leafOffset != NO_PAGE) {
+                        Node leaf = getNode(leafOffset);
+                        if (position < leaf.count) {
+                            if (leaf.keys[position] > upperBound) {
+                                leafOffset = NO_PAGE;
+                                return false;
+                            }
+                            return true;
+                        }
+                        leafOffset = leaf.next;
+                        position = 0;
+                        evictNodes(); // Keep the cache bounded while walking a long leaf chain
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return getNode(leafOffset).recordIds[position++];
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Removes every entry, leaving an empty tree.
+     *
+     * @throws IOException If an I/O error occurs while truncating the file.
+     */
+    @Override
+    public void clear() throws IOException {
+        markInUse();
+        nodeCache.clear();
+        channel.truncate(0);
+        initialize();
+    }
+
+    /**
+     * Checks whether the index file was closed cleanly the last time it was used.
+     *
+     * @return True if the file was closed cleanly before this open; false for a new file,
+     *         a file written by an older version, or a file left by a crash.
+     */
+    @Override
+    public boolean wasClosedCleanly() {
+        return closedCleanly;
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     *
+     * @return The entry count.
+     */
+    @Override
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of levels in the tree, counting the root and the leaves.
+     *
+     * @return The height of the tree; 1 if the root is a leaf.
+     * @throws IOException If an I/O error occurs while reading nodes.
+     */
+    public int getHeight() throws IOException {
+        int height = 1;
+        Node node = getNode(rootOffset);
+        while (!node.leaf) {
+            node = getNode(node.children[0]);
+            height++;
+        }
+        evictNodes();
+        return height;
+    }
+
+    /**
+     * Returns the number of nodes read from disk since the tree was opened.
+     *
+     * @return The node read count.
+     */
+    public long getNodeReadCount() {
+        return nodeReadCount;
+    }
+
+    /**
+     * Returns the number of nodes written to disk since the tree was opened.
+     *
+     * @return The node write count.
+     */
+    public long getNodeWriteCount() {
+        return nodeWriteCount;
+    }
+
+    /**
+     * Writes all modified nodes and the metadata to disk.
+     *
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    @Override
+    public void flush() throws IOException {
+        for (Node node : nodeCache.values()) {
+            writeNode(node);
+        }
+        if (metadataDirty) {
+            writeMetadata();
+        }
+    }
+
+    /**
+     * Flushes the tree, forces it to disk and marks the file as closed cleanly, then closes it.
+     * Calling close more than once has no effect.
+     *
+     * @throws IOException If an I/O error occurs while flushing or closing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            channel.force(false); // 모든 노드가 디스크에 닿은 뒤에야 정상 종료 표시를 남긴다
+            cleanOnDisk = true;
+            writeMetadata();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Inserts into the subtree rooted at the node, returning the split to apply to the parent, if any
+    private Split insert(Node node, int key, long recordId) throws IOException {
+        int position = upperBound(node, key, recordId);
+        if (node.leaf) {
+            shiftRight(node, position);
+            node.keys[position] = key;
+            node.recordIds[position] = recordId;
+            node.count++;
+            node.dirty = true;
+            return node.count > LEAF_CAPACITY ? splitLeaf(node) : null;
+        }
+        Split childSplit = insert(getNode(node.children[position]), key, recordId);
+        if (childSplit == null) {
+            return null;
+        }
+        shiftRight(node, position);
+        node.keys[position] = childSplit.key;
+        node.recordIds[position] = childSplit.recordId;
+        node.children[position + 1] = childSplit.right;
+        node.count++;
+        node.dirty = true;
+        return node.count > INTERNAL_CAPACITY ? splitInternal(node) : null;
+    }
+
+    // Opens a gap at the position, moving later entries (and children of internal nodes) one place right
+    private static void shiftRight(Node node, int position) {
+        System.arraycopy(node.keys, position, node.keys, position + 1, node.count - position);
+        System.arraycopy(node.recordIds, position, node.recordIds, position + 1, node.count - position);
+        if (!node.leaf) {
+            System.arraycopy(node.children, position + 1, node.children, position + 2, node.count - position);
+        }
+    }
+
+    // Moves the upper half of an overfull leaf to a new leaf linked after it
+    private Split splitLeaf(Node leaf) throws IOException {
+        Node right = allocateNode(true);
+        int half = leaf.count / 2;
+        right.count = leaf.count - half;
+        System.arraycopy(leaf.keys, half, right.keys, 0, right.count);
+        System.arraycopy(leaf.recordIds, half, right.recordIds, 0, right.count);
+        leaf.count = half;
+        right.next = leaf.next;
+        leaf.next = right.offset;
+        return new Split(right.keys[0], right.recordIds[0], right.offset);
+    }
+
+    // Moves the upper half of an overfull internal node to a new node; the middle separator moves up
+    private Split splitInternal(Node node) throws IOException {
+        Node right = allocateNode(false);
+        int middle = node.count / 2;
+        right.count = node.count - middle - 1;
+        System.arraycopy(node.keys, middle + 1, right.keys, 0, right.count);
+        System.arraycopy(node.recordIds, middle + 1, right.recordIds, 0, right.count);
+        System.arraycopy(node.children, middle + 1, right.children, 0, right.count + 1);
+        node.count = middle;
+        return new Split(node.keys[middle], node.recordIds[middle], right.offset);
+    }
+
+    // Descends to the leaf whose range covers the given entry
+    private Node findLeaf(int key, long recordId) throws IOException {
+        Node node = getNode(rootOffset);
+        while (!node.leaf) {
+            node = getNode(node.children[upperBound(node, key, recordId)]);
+        }
+        return node;
+    }
+
+    // Orders entries by key, then by record ID
+    private static int compare(Node node, int index, int key, long recordId) {
+        int result = Integer.compare(node.keys[index], key);
+        return result != 0 ? result : Long.compare(node.recordIds[index], recordId);
+    }
+
+    // First position whose entry is at least the given entry
+    private static int lowerBound(Node node, int key, long recordId) {
+        int left = 0;
+        int right = node.count;
+        while (left < right) {
+            int mid = left + (right - left) / 2;
+            if (compare(node, mid, key, recordId) < 0) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    // First position whose entry is greater than the given entry
+    private static int upperBound(Node node, int key, long recordId) {
+        int left = 0;
+        int right = node.count;
+        while (left < right) {
+            int mid = left + (right - left) / 2;
+            if (compare(node, mid, key, recordId) <= 0) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    // Creates an empty tree: the metadata page followed by an empty root leaf
+    private void initialize() throws IOException {
+        pageCount = 1;
+        entryCount = 0;
+        rootOffset = allocateNode(true).offset;
+        flush();
+    }
+
+    // Appends a new node to the file; it stays in the cache until it is written
+    private Node allocateNode(boolean leaf) {
+        Node node = new Node(pageCount * Page.DEFAULT_PAGE_SIZE, leaf);
+        pageCount++;
+        node.dirty = true;
+        nodeCache.put(node.offset, node);
+        metadataDirty = true;
+        return node;
+    }
+
+    // Returns the node at the given offset, reading it on a cache miss
+    private Node getNode(long offset) throws IOException {
+        Node node = nodeCache.get(offset);
+        if (node == null) {
+            node = readNode(offset);
+            nodeCache.put(offset, node);
+        }
+        return node;
+    }
+
+    // Shrinks the cache back to its capacity. Called only between operations, so no caller holds an evicted node.
+    private void evictNodes() throws IOException {
+        Iterator<Node> iterator = nodeCache.values().iterator();
+        while (nodeCache.size() > cacheCapacity && iterator.hasNext()) {
+            writeNode(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private Node readNode(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Page.DEFAULT_PAGE_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of index file at offset " + offset);
+            }
+        }
+        nodeReadCount++;
+        buffer.flip();
+        Node node = new Node(offset, buffer.getInt() == LEAF);
+        node.count = buffer.getInt();
+        node.next = buffer.getLong();
+        if (node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                node.keys[i] = buffer.getInt();
+                node.recordIds[i] = buffer.getLong();
+            }
+        } else {
+            node.children[0] = buffer.getLong();
+            for (int i = 0; i < node.count; i++) {
+                node.keys[i] = buffer.getInt();
+                node.recordIds[i] = buffer.getLong();
+                node.children[i + 1] = buffer.getLong();
+            }
+        }
+        return node;
+    }
+
+    // Writes a node back to the file if it holds unsaved changes
+    private void writeNode(Node node) throws IOException {
+        if (!node.dirty) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Page.DEFAULT_PAGE_SIZE);
+        buffer.putInt(node.leaf ? LEAF : INTERNAL);
+        buffer.putInt(node.count);
+        buffer.putLong(node.next);
+        if (node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                buffer.putInt(node.keys[i]);
+                buffer.putLong(node.recordIds[i]);
+            }
+        } else {
+            buffer.putLong(node.children[0]);
+            for (int i = 0; i < node.count; i++) {
+                buffer.putInt(node.keys[i]);
+                buffer.putLong(node.recordIds[i]);
+                buffer.putLong(node.children[i + 1]);
+            }
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, node.offset + buffer.position());
+        }
+        nodeWriteCount++;
+        node.dirty = false;
+    }
+
+    // Clears the clean-shutdown flag on disk before the first change, so that a crash from here on forces a rebuild
+    private void markInUse() throws IOException {
+        if (cleanOnDisk) {
+            cleanOnDisk = false;
+            writeMetadata();
+            channel.force(false);
+        }
+    }
+
+    // Reads the metadata page; returns false if the file was written by an older version
+    private boolean readMetadata() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(METADATA_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of index metadata");
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Unsupported index file format");
+        }
+        int version = buffer.getInt();
+        if (version < VERSION) {
+            return false;
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported index file version: " + version);
+        }
+        rootOffset = buffer.getLong();
+        pageCount = buffer.getLong();
+        entryCount = buffer.getLong();
+        cleanOnDisk = buffer.getInt() != 0;
+        return true;
+    }
+
+    private void writeMetadata() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(METADATA_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(rootOffset);
+        buffer.putLong(pageCount);
+        buffer.putLong(entryCount);
+        buffer.putInt(cleanOnDisk ? 1 : 0);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        metadataDirty = false;
+    }
+}
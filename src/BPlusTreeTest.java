@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * A test class for the `BPlusTree` index. It inserts enough entries in random order to grow the tree to at least
+ * three levels, including duplicate keys, then deletes most of them in random order so that many leaves become
+ * underfull or empty. After each step, and after closing and reopening the index file, it compares point lookups,
+ * range scans along the leaf chain and the entry count against a sorted model of the entries. It also checks that
+ * a closed file reopens as closed cleanly, and that a file abandoned after a change, as by a crash, does not.
+ * The tree uses a small node cache so that nodes are evicted and read back from disk throughout.
+ * The test exits with an exception if any check fails.
+ */
+public class BPlusTreeTest {
+    private static final int KEY_COUNT = 120000; // Distinct keys inserted
+    private static final int DUPLICATE_EVERY = 10; // Every tenth key gets a second entry with another record ID
+    private static final int CACHE_NODES = 16; // Small cache so that most node accesses go to disk
+    private static final long SEED = 20240611L; // Fixed seed so that a failure can be reproduced
+
+    public static void main(String[] args) {
+        try {
+            String indexFilename = "bpt_test.idx";
+
+            // Clean up any existing file to ensure a fresh test environment
+            new java.io.File(indexFilename).delete();
+
+            Random random = new Random(SEED);
+            TreeSet<Long> model = new TreeSet<>(); // Entries encoded as (key << 32) | record ID, in tree order
+            BPlusTree tree = new BPlusTree(indexFilename, CACHE_NODES);
+
+            // --- Insert entries in random order, with some duplicate keys ---
+            List<Long> entries = new ArrayList<>();
+            for (int key = 0; key < KEY_COUNT; key++) {
+                entries.add(entry(key, key * 2L));
+                if (key % DUPLICATE_EVERY == 0) {
+                    entries.add(entry(key, key * 2L + 1));
+                }
+            }
+            Collections.shuffle(entries, random);
+            for (long entry : entries) {
+                tree.insert(keyOf(entry), recordIdOf(entry));
+                model.add(entry);
+            }
+            int height = tree.getHeight();
+            check(height >= 3, "expected at least 3 levels after inserts, found " + height);
+            checkTree(tree, model, random, "inserts");
+
+            // --- Reopen the index file and check that the tree is read back unchanged ---
+            tree.close();
+            tree = new BPlusTree(indexFilename, CACHE_NODES);
+            check(tree.wasClosedCleanly(), "closed index reopened as not closed cleanly");
+            check(tree.getHeight() == height, "height changed across reopen");
+            checkTree(tree, model, random, "reopen after inserts");
+
+            // --- Delete most entries in random order, leaving many leaves underfull or empty ---
+            Collections.shuffle(entries, random);
+            int deleteCount = entries.size() * 9 / 10;
+            for (int i = 0; i < deleteCount; i++) {
+                long entry = entries.get(i);
+                check(tree.delete(keyOf(entry), recordIdOf(entry)), "delete of key " + keyOf(entry) + " missed the entry");
+                model.remove(entry);
+            }
+            // Deleting an entry that is no longer there must report it as missing
+            long deleted = entries.get(0);
+            check(!tree.delete(keyOf(deleted), recordIdOf(deleted)), "second delete of key " + keyOf(deleted) + " succeeded");
+            check(!tree.delete(keyOf(deleted), -1), "delete with an unknown record ID succeeded");
+            checkTree(tree, model, random, "deletes");
+
+            // --- Reinsert some deleted entries into the emptied key ranges ---
+            for (int i = 0; i < deleteCount; i += 7) {
+                long entry = entries.get(i);
+                tree.insert(keyOf(entry), recordIdOf(entry));
+                model.add(entry);
+            }
+            checkTree(tree, model, random, "reinserts");
+
+            // --- Reopen once more after the deletes and reinserts ---
+            tree.close();
+            tree = new BPlusTree(indexFilename, CACHE_NODES);
+            check(tree.wasClosedCleanly(), "closed index reopened as not closed cleanly after deletes");
+            checkTree(tree, model, random, "reopen after deletes");
+
+            // --- Abandon the tree after a change, as a crash would, and reopen it ---
+            long extra = entry(KEY_COUNT, 0);
+            tree.insert(keyOf(extra), recordIdOf(extra));
+            model.add(extra);
+            BPlusTree crashed = new BPlusTree(indexFilename, CACHE_NODES); // The abandoned tree is never closed
+            check(!crashed.wasClosedCleanly(), "index changed after its last close reopened as closed cleanly");
+            crashed.clear(); // An index that was not closed cleanly is rebuilt from its entries
+            for (long entry : model) {
+                crashed.insert(keyOf(entry), recordIdOf(entry));
+            }
+            checkTree(crashed, model, random, "rebuild after a crash");
+            crashed.close();
+            tree = new BPlusTree(indexFilename, CACHE_NODES);
+            check(tree.wasClosedCleanly(), "rebuilt index reopened as not closed cleanly");
+            tree.close();
+
+            new java.io.File(indexFilename).delete();
+            System.out.println("BPlusTreeTest passed");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Compares the entry count, a full scan over the leaf chain, random range scans and random lookups with the model
+    private static void checkTree(BPlusTree tree, TreeSet<Long> model, Random random, String step) throws IOException {
+        check(tree.getEntryCount() == model.size(), step + ": entry count " + tree.getEntryCount() + ", expected " + model.size());
+
+        // A full scan walks every leaf, including empty ones, in key order
+        checkRange(tree, model, Integer.MIN_VALUE, Integer.MAX_VALUE, step);
+        for (int i = 0; i < 200; i++) {
+            int lowerBound = random.nextInt(KEY_COUNT + 100) - 50;
+            int upperBound = lowerBound + random.nextInt(2000);
+            checkRange(tree, model, lowerBound, upperBound, step);
+        }
+        checkRange(tree, model, 10, 5, step); // An empty range
+
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(KEY_COUNT + 100) - 50;
+            Long first = model.ceiling(entry(key, 0));
+            long expected = first != null && keyOf(first) == key ? recordIdOf(first) : RecordIndex.NOT_FOUND;
+            long actual = tree.search(key);
+            check(actual == expected, step + ": search for key " + key + " returned " + actual + ", expected " + expected);
+        }
+        System.out.println(step + ": " + model.size() + " entries, height " + tree.getHeight());
+    }
+
+    private static void checkRange(BPlusTree tree, TreeSet<Long> model, int lowerBound, int upperBound, String step)
+            throws IOException {
+        PrimitiveIterator.OfLong iterator = tree.rangeScan(lowerBound, upperBound);
+        if (lowerBound <= upperBound) {
+            NavigableSet<Long> expected = model.subSet(entry(Math.max(lowerBound, 0), 0), true,
+                    entry(Math.min(Math.max(upperBound, -1), KEY_COUNT) + 1L, 0), false);
+            for (long entry : expected) {
+                check(iterator.hasNext(), step + ": range [" + lowerBound + ", " + upperBound + "] ended early");
+                long recordId = iterator.nextLong();
+                check(recordId == recordIdOf(entry), step + ": range [" + lowerBound + ", " + upperBound
+                        + "] returned record ID " + recordId + ", expected " + recordIdOf(entry));
+            }
+        }
+        check(!iterator.hasNext(), step + ": range [" + lowerBound + ", " + upperBound + "] returned extra entries");
+    }
+
+    // Keys in this test are never negative, so the encoded entries sort by key and then by record ID
+    private static long entry(long key, long recordId) {
+        return (key << 32) | recordId;
+    }
+
+    private static int keyOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static long recordIdOf(long entry) {
+        return entry & 0xFFFFFFFFL;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
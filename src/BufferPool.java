@@ -0,0 +1,568 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BufferPool caches pages of a data file in a fixed number of in-memory frames.
+ * Callers pin a page with {@link #fetchPage(long)} and release it with {@link #unpinPage(long, boolean)}.
+ * Frames are reused with the Clock (second-chance) policy; pinned frames are never evicted and
+ * dirty frames are written back to the underlying store before their frame is reused.
+ * <p>
+ * The pool is thread-safe. Its bookkeeping is guarded by the pool's monitor, but a missing page is
+ * read from the store outside the monitor, so misses on different pages proceed in parallel; threads
+ * that request a page while it is being read wait for that read instead of issuing their own.
+ * The pool does not latch page contents: callers coordinate access to a pinned page themselves.
+ * <p>
+ * In write-behind mode, eviction prefers clean frames so that callers rarely write a page themselves,
+ * and a background thread calls {@link #flushDirtyPages(int, long)} to write dirty pages once enough
+ * of them have accumulated or the oldest has waited too long. A page modified repeatedly while it is
+ * cached is written once per flush, and each flush writes its pages in offset order.
+ * <p>
+ * {@link #prefetch(long, int)} reads a run of pages that a scan is about to request with one large
+ * read, placing them in clean frames ahead of the scan; see {@link ReadAhead}.
+ */
+public class BufferPool {
+    public static final int DEFAULT_FRAME_COUNT = 64; // Default number of frames, each holding one page
+    public static final int DEFAULT_DIRTY_PAGE_THRESHOLD = 16; // Dirty pages that trigger a write-behind flush
+    public static final long DEFAULT_MAX_DIRTY_AGE_MILLIS = 100; // Age of the oldest dirty page that triggers a write-behind flush
+
+    /**
+     * Storage the pool reads missing pages from and writes dirty pages back to.
+     */
+    public interface PageStore {
+        /**
+         * Reads the page stored at the given offset.
+         *
+         * @param offset The offset of the page in the data file.
+         * @return The page read from storage.
+         * @throws IOException If an I/O error occurs while reading.
+         */
+        Page readPage(long offset) throws IOException;
+
+        /**
+         * Reads consecutive pages starting at the given offset. The default reads them one at a time,
+         * each starting where the previous one ends; stores override it to read them with a single large request.
+         *
+         * @param offset The offset of the first page in the data file.
+         * @param count  The number of pages to read.
+         * @return The pages read, in offset order.
+         * @throws IOException If an I/O error occurs while reading.
+         */
+        default Page[] readPages(long offset, int count) throws IOException {
+            Page[] pages = new Page[count];
+            long pageOffset = offset;
+            for (int i = 0; i < count; i++) {
+                pages[i] = readPage(pageOffset);
+                pageOffset += pages[i].getPageSize();
+            }
+            return pages;
+        }
+
+        /**
+         * Writes a page to the given offset.
+         *
+         * @param offset The offset of the page in the data file.
+         * @param page   The page to write.
+         * @throws IOException If an I/O error occurs while writing.
+         */
+        void writePage(long offset, Page page) throws IOException;
+    }
+
+    /**
+     * A single buffer frame holding one cached page.
+     */
+    private static class Frame {
+        private long offset = -1;   // Offset of the cached page, -1 if the frame is free
+        private Page page;          // Cached page contents
+        private int pinCount;       // Number of callers currently using the page
+        private boolean dirty;      // True if the page was modified since it was read
+        private boolean referenced; // Second-chance bit for the Clock policy
+        private boolean loading;    // True while the page is being read from the store
+        private boolean failed;     // True if reading the page failed; the frame is freed once unpinned
+        private boolean writing;    // True while a write-behind flush writes the page
+        private long dirtySince;    // System.nanoTime() at which the page last became dirty
+    }
+
+    private final PageStore store;            // Backing storage for misses and write-backs
+    private final int pageSize;               // Size of the cached pages in bytes
+    private final Frame[] frames;             // Fixed set of frames
+    private final Map<Long, Frame> pageTable; // Maps page offsets to the frames caching them
+    private int clockHand;                    // Current position of the Clock hand
+    private long hitCount;                    // Number of fetches served from memory
+    private long missCount;                   // Number of fetches that required a read
+    private long prefetchCount;               // Number of pages read ahead of a request
+    private boolean writeBehind;              // True if dirty pages are left to a background flusher
+    private final IoStatistics statistics;    // Also receives the hits and misses, possibly shared with other pools
+
+    /**
+     * Constructs a buffer pool with the given number of frames for pages of the default size.
+     *
+     * @param store      The storage backing the pool.
+     * @param frameCount The maximum number of pages cached at once.
+     * @throws IllegalArgumentException if the frame count is not positive.
+     */
+    public BufferPool(PageStore store, int frameCount) {
+        this(store, frameCount, Page.DEFAULT_PAGE_SIZE, new IoStatistics());
+    }
+
+    /**
+     * Constructs a buffer pool that also records its cache hits and misses into the given statistics,
+     * as the files do with their own statistics.
+     *
+     * @param store      The storage backing the pool.
+     * @param frameCount The maximum number of pages cached at once.
+     * @param pageSize   The size of the store's pages in bytes.
+     * @param statistics The statistics to record hits and misses into.
+     * @throws IllegalArgumentException if the frame count is not positive.
+     */
+    public BufferPool(PageStore store, int frameCount, int pageSize, IoStatistics statistics) {
+        if (frameCount <= 0) {
+            throw new IllegalArgumentException("Invalid frame count: " + frameCount);
+        }
+        this.store = store;
+        this.pageSize = pageSize;
+        this.frames = new Frame[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            frames[i] = new Frame();
+        }
+        this.pageTable = new HashMap<>();
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns the page at the given offset, reading it from storage on a miss, and pins it.
+     *
+     * @param offset The offset of the page in the data file.
+     * @return The pinned page.
+     * @throws IOException If an I/O error occurs while reading or evicting a page.
+     */
+    public Page fetchPage(long offset) throws IOException {
+        Frame frame;
+        synchronized (this) {
+            while (true) {
+                frame = pageTable.get(offset);
+                if (frame != null) {
+                    hitCount++;
+                    statistics.recordCacheHit();
+                    frame.pinCount++;
+                    frame.referenced = true;
+                    awaitLoad(frame);
+                    return frame.page;
+                }
+                frame = findVictim();
+                if (frame != null) {
+                    break;
+                }
+                // Waited for a write-behind flush; another thread may have read the page meanwhile
+            }
+            missCount++;
+            statistics.recordCacheMiss();
+            // Claim the frame for the page so that concurrent requests wait for this read
+            frame.offset = offset;
+            frame.dirty = false;
+            frame.pinCount = 1;
+            frame.referenced = true;
+            frame.loading = true;
+            pageTable.put(offset, frame);
+        }
+        Page page = null;
+        try {
+            page = store.readPage(offset);
+        } finally {
+            synchronized (this) {
+                frame.loading = false;
+                if (page != null) {
+                    frame.page = page;
+                } else {
+                    // The read failed: later requests retry, and the frame is released by its last pin
+                    frame.failed = true;
+                    pageTable.remove(offset);
+                    releasePin(frame);
+                }
+                notifyAll();
+            }
+        }
+        return page;
+    }
+
+    // Waits until a frame's page has been read, releasing the caller's pin if the read failed
+    private void awaitLoad(Frame frame) throws IOException {
+        boolean interrupted = false;
+        while (frame.loading) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true; // Finish waiting so the pin is not leaked, then restore the flag
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (frame.failed) {
+            long offset = frame.offset;
+            releasePin(frame);
+            throw new IOException("Failed to read page at offset " + offset);
+        }
+    }
+
+    // Drops one pin from a frame whose read failed, freeing the frame with the last pin
+    private void releasePin(Frame frame) {
+        frame.pinCount--;
+        if (frame.pinCount == 0) {
+            frame.offset = -1;
+            frame.page = null;
+            frame.failed = false;
+        }
+    }
+
+    /**
+     * Reads the consecutive pages starting at the given offset into the pool without pinning them,
+     * skipping pages that are already cached. Each run of missing pages is read with one request.
+     * Prefetching only takes frames that can be reused without a write; it stops early rather than
+     * evict a dirty page. Requests for a page while it is being read wait for the read, as with
+     * {@link #fetchPage(long)}. The caller must ensure that every page in the range exists.
+     *
+     * @param offset    The offset of the first page.
+     * @param pageCount The number of pages to read.
+     * @return The number of pages read.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    public int prefetch(long offset, int pageCount) throws IOException {
+        List<Frame> claimed = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < pageCount; i++) {
+                long pageOffset = offset + (long) i * pageSize;
+                if (pageTable.containsKey(pageOffset)) {
+                    continue;
+                }
+                Frame frame = sweep(false);
+                if (frame == null) {
+                    break; // Never write a page back just to read ahead
+                }
+                frame.offset = pageOffset;
+                frame.dirty = false;
+                frame.pinCount = 1;
+                frame.referenced = false; // Evicted first if the scan never asks for it
+                frame.loading = true;
+                pageTable.put(pageOffset, frame);
+                claimed.add(frame);
+            }
+        }
+        Page[] pages = new Page[claimed.size()];
+        try {
+            int start = 0;
+            while (start < claimed.size()) {
+                int end = start + 1;
+                while (end < claimed.size() && claimed.get(end).offset == claimed.get(end - 1).offset + pageSize) {
+                    end++;
+                }
+                Page[] run = store.readPages(claimed.get(start).offset, end - start);
+                System.arraycopy(run, 0, pages, start, run.length);
+                start = end;
+            }
+        } finally {
+            synchronized (this) {
+                for (int i = 0; i < claimed.size(); i++) {
+                    Frame frame = claimed.get(i);
+                    frame.loading = false;
+                    if (pages[i] != null) {
+                        frame.page = pages[i];
+                        frame.pinCount--;
+                        prefetchCount++;
+                    } else {
+                        frame.failed = true;
+                        pageTable.remove(frame.offset);
+                        releasePin(frame);
+                    }
+                }
+                notifyAll();
+            }
+        }
+        return claimed.size();
+    }
+
+    /**
+     * Installs a newly created page in the pool without reading it from storage.
+     * The page is pinned and marked dirty so that it is written on flush or eviction.
+     *
+     * @param offset The offset assigned to the new page.
+     * @param page   The new page.
+     * @throws IOException If an I/O error occurs while evicting a page.
+     * @throws IllegalArgumentException if a page with the same offset is already cached.
+     */
+    public synchronized void newPage(long offset, Page page) throws IOException {
+        Frame frame;
+        do {
+            if (pageTable.containsKey(offset)) {
+                throw new IllegalArgumentException("Page at offset " + offset + " is already cached.");
+            }
+            frame = findVictim();
+        } while (frame == null);
+        frame.page = page;
+        frame.offset = offset;
+        frame.dirty = true;
+        frame.dirtySince = System.nanoTime();
+        frame.pinCount = 1;
+        frame.referenced = true;
+        pageTable.put(offset, frame);
+    }
+
+    /**
+     * Releases one pin on a page, optionally marking it as modified.
+     *
+     * @param offset The offset of the page.
+     * @param dirty  True if the caller modified the page.
+     * @throws IllegalArgumentException if the page is not cached or not pinned.
+     */
+    public synchronized void unpinPage(long offset, boolean dirty) {
+        Frame frame = pageTable.get(offset);
+        if (frame == null || frame.pinCount == 0) {
+            throw new IllegalArgumentException("Page at offset " + offset + " is not pinned.");
+        }
+        frame.pinCount--;
+        if (dirty && !frame.dirty) {
+            frame.dirty = true;
+            frame.dirtySince = System.nanoTime();
+        }
+    }
+
+    /**
+     * Enables or disables write-behind mode. In write-behind mode, eviction writes a dirty page only
+     * when every unpinned frame is dirty, leaving writes to {@link #flushDirtyPages(int, long)}.
+     *
+     * @param writeBehind True to prefer clean frames on eviction.
+     */
+    public synchronized void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Writes every unpinned dirty page, in offset order, if at least the given number of pages are
+     * dirty or the oldest dirty page became dirty at least the given time ago; otherwise does nothing.
+     * Pages are written outside the pool's monitor, pinned so that they cannot be evicted meanwhile.
+     * A page modified while it is being written stays dirty and is written again by a later flush.
+     *
+     * @param dirtyThreshold The number of dirty pages that triggers the flush.
+     * @param maxAgeMillis   The age of the oldest dirty page that triggers the flush.
+     * @return The number of pages written.
+     * @throws IOException If an I/O error occurs while writing; pages not written stay dirty.
+     */
+    public int flushDirtyPages(int dirtyThreshold, long maxAgeMillis) throws IOException {
+        List<Frame> batch = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            int dirtyPages = 0;
+            boolean expired = false;
+            for (Frame frame : frames) {
+                if (frame.dirty && frame.page != null) {
+                    dirtyPages++;
+                    expired |= now - frame.dirtySince >= maxAgeMillis * 1_000_000L;
+                }
+            }
+            if (dirtyPages < dirtyThreshold && !expired) {
+                return 0;
+            }
+            for (Frame frame : frames) {
+                if (frame.dirty && frame.page != null && frame.pinCount == 0 && !frame.writing) {
+                    // Clear the flag first: a writer that pins the page meanwhile marks it dirty again
+                    frame.dirty = false;
+                    frame.writing = true;
+                    frame.pinCount++;
+                    batch.add(frame);
+                }
+            }
+        }
+        batch.sort(Comparator.comparingLong(frame -> frame.offset));
+        int written = 0;
+        try {
+            for (Frame frame : batch) {
+                store.writePage(frame.offset, frame.page);
+                written++;
+            }
+        } finally {
+            synchronized (this) {
+                for (int i = 0; i < batch.size(); i++) {
+                    Frame frame = batch.get(i);
+                    if (i >= written && !frame.dirty) {
+                        frame.dirty = true; // Not written: keep the page for the next flush
+                    }
+                    frame.writing = false;
+                    frame.pinCount--;
+                }
+                notifyAll();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Returns the number of dirty pages in the pool.
+     *
+     * @return The dirty page count.
+     */
+    public synchronized int getDirtyPageCount() {
+        int dirtyPages = 0;
+        for (Frame frame : frames) {
+            if (frame.dirty && frame.page != null) {
+                dirtyPages++;
+            }
+        }
+        return dirtyPages;
+    }
+
+    /**
+     * Writes a cached page back to storage if it is dirty.
+     *
+     * @param offset The offset of the page.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public synchronized void flushPage(long offset) throws IOException {
+        awaitWrites();
+        Frame frame = pageTable.get(offset);
+        if (frame != null) {
+            writeBack(frame);
+        }
+    }
+
+    /**
+     * Writes every dirty page in the pool back to storage. Waits for a write-behind flush in progress
+     * first, so every page modified before the call is on storage when it returns.
+     *
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public synchronized void flushAll() throws IOException {
+        awaitWrites();
+        for (Frame frame : frames) {
+            if (frame.offset != -1 && !frame.loading) {
+                writeBack(frame);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of fetches served from memory.
+     *
+     * @return The cache hit count.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of fetches that had to read the page from storage.
+     *
+     * @return The cache miss count.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of pages read by {@link #prefetch(long, int)}.
+     *
+     * @return The prefetched page count.
+     */
+    public synchronized long getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    /**
+     * Returns the number of frames in the pool.
+     *
+     * @return The frame count.
+     */
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    /**
+     * Returns the size of the pages the pool caches.
+     *
+     * @return The page size in bytes.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    // Waits until no write-behind flush is writing a page, returning true if it had to wait
+    private boolean awaitWrites() {
+        boolean waited = false;
+        boolean interrupted = false;
+        for (Frame frame : frames) {
+            while (frame.writing) {
+                waited = true;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // Finish waiting so the barrier holds, then restore the flag
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return waited;
+    }
+
+    // Writes a frame back to storage if it holds unsaved changes
+    private void writeBack(Frame frame) throws IOException {
+        if (frame.dirty && frame.page != null) {
+            // Clear the flag first: a writer that still holds the page marks it dirty again when it unpins
+            frame.dirty = false;
+            try {
+                store.writePage(frame.offset, frame.page);
+            } catch (IOException | RuntimeException e) {
+                frame.dirty = true;
+                throw e;
+            }
+        }
+    }
+
+    // Selects a frame to reuse with the Clock policy, writing back its page if needed. If every frame is
+    // pinned but some only by a write-behind flush, waits for the flush and returns null instead: the
+    // monitor was released meanwhile, so the caller must check the page table again and retry.
+    private Frame findVictim() throws IOException {
+        Frame frame = null;
+        if (writeBehind) {
+            frame = sweep(false); // Leave dirty pages to the background flusher when possible
+        }
+        if (frame == null) {
+            frame = sweep(true);
+        }
+        if (frame == null && !awaitWrites()) {
+            throw new IllegalStateException("All " + frames.length + " buffer frames are pinned.");
+        }
+        return frame;
+    }
+
+    // Runs the Clock hand over the frames, returning a free or evicted frame or null if none qualifies
+    private Frame sweep(boolean evictDirty) throws IOException {
+        // Two full sweeps are enough: the first clears reference bits, the second finds a victim
+        for (int i = 0; i < 2 * frames.length; i++) {
+            Frame frame = frames[clockHand];
+            clockHand = (clockHand + 1) % frames.length;
+            if (frame.offset == -1) {
+                return frame;
+            }
+            if (frame.pinCount > 0) {
+                continue;
+            }
+            if (frame.referenced) {
+                frame.referenced = false;
+                continue;
+            }
+            if (frame.dirty && !evictDirty) {
+                continue;
+            }
+            writeBack(frame);
+            pageTable.remove(frame.offset);
+            frame.offset = -1;
+            frame.page = null;
+            return frame;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A test class for concurrent use of `HeapFile` and `SortedFile`. For each file organization and each index type,
+ * several writer threads run a random mix of inserts, deletes and searches while reader threads run range searches.
+ * Each writer owns the keys congruent to its number, so it can check every result against its own model even though
+ * all threads share the same pages. When the threads finish, the file's contents must equal the union of the models,
+ * before and after reopening, and the file's statistics must count exactly the operations that ran and the same
+ * disk requests as the old static counters. Each organization also runs once in write-behind mode with a flusher that
+ * writes deferred directory entries after every change, so that the flusher writes entries while writers change them.
+ * The test exits with an exception if any check fails.
+ */
+public class ConcurrencyTest {
+    private static final int WRITERS = 8; // Threads running inserts, deletes and searches
+    private static final int READERS = 2; // Threads running range searches until the writers finish
+    private static final int OPERATIONS = 3000; // Operations per writer
+    private static final int KEYS_PER_WRITER = 500; // Distinct keys each writer chooses from
+    private static final int BUFFER_POOL_FRAMES = 16; // Small pool so that threads evict each other's pages
+    private static final long FLUSH_INTERVAL_MILLIS = 1; // Write-behind flusher age limit, so that it runs during the writes
+
+    /**
+     * The operations the test runs, implemented by both file organizations.
+     */
+    private interface TestFile {
+        void insert(Record record) throws IOException;
+
+        boolean delete(int key) throws IOException;
+
+        Record search(int key) throws IOException;
+
+        List<Record> rangeSearch(int lowerBound, int upperBound) throws IOException;
+
+        IoStatistics getStatistics();
+
+        void close() throws IOException;
+    }
+
+    public static void main(String[] args) {
+        try {
+            for (FileOptions.IndexType indexType : FileOptions.IndexType.values()) {
+                run(false, indexType, false);
+                run(true, indexType, false);
+            }
+            run(false, FileOptions.IndexType.NONE, true);
+            run(true, FileOptions.IndexType.NONE, true);
+            System.out.println("ConcurrencyTest passed");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void run(boolean sorted, FileOptions.IndexType indexType, boolean writeBehind) throws Exception {
+        String name = (sorted ? "SortedFile" : "HeapFile") + " with index " + indexType + (writeBehind ? " and write-behind" : "");
+        String dataFilename = "concurrency_test.dat";
+        String directoryFilename = "concurrency_test.pd";
+        deleteFiles(dataFilename, directoryFilename);
+        FileOptions options = new FileOptions().setIndexType(indexType).setBufferPoolFrames(BUFFER_POOL_FRAMES);
+        if (writeBehind) {
+            options.setWriteBehind(true).setDirtyPageThreshold(1).setMaxDirtyAgeMillis(FLUSH_INTERVAL_MILLIS);
+        }
+
+        // The static counters mix every file of a kind, so they are reset before this file opens
+        if (sorted) {
+            SortedFile.resetDiskIOCounters();
+        } else {
+            HeapFile.resetDiskIOCounters();
+        }
+        TestFile file = open(sorted, dataFilename, directoryFilename, options);
+
+        // --- Run writers and readers at the same time ---
+        List<Map<Integer, Integer>> models = new ArrayList<>(); // Occurrences of each key, one model per writer
+        LongAdder inserts = new LongAdder();
+        LongAdder deletes = new LongAdder();
+        LongAdder searches = new LongAdder();
+        LongAdder rangeSearches = new LongAdder();
+        AtomicBoolean writersDone = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            Map<Integer, Integer> model = new HashMap<>();
+            models.add(model);
+            int writer = t;
+            writers.add(executor.submit(() -> {
+                Random random = new Random(writer);
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int key = random.nextInt(KEYS_PER_WRITER) * WRITERS + writer;
+                    int present = model.getOrDefault(key, 0);
+                    int choice = random.nextInt(10);
+                    if (choice < 5) {
+                        file.insert(new Record(key, "ConcurrentData" + key));
+                        model.put(key, present + 1);
+                        inserts.increment();
+                    } else if (choice < 8) {
+                        boolean deleted = file.delete(key);
+                        check(deleted == (present > 0), name + ": delete of key " + key + " returned " + deleted);
+                        if (deleted) {
+                            model.put(key, present - 1);
+                        }
+                        deletes.increment();
+                    } else {
+                        Record record = file.search(key);
+                        check((record != null) == (present > 0), name + ": search for key " + key + " returned " + record);
+                        check(record == null || record.getKey() == key, name + ": search for key " + key + " returned another key");
+                        searches.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < READERS; t++) {
+            int reader = t;
+            readers.add(executor.submit(() -> {
+                Random random = new Random(100 + reader);
+                while (!writersDone.get()) {
+                    int lowerBound = random.nextInt(KEYS_PER_WRITER * WRITERS);
+                    int upperBound = lowerBound + random.nextInt(500);
+                    for (Record record : file.rangeSearch(lowerBound, upperBound)) {
+                        check(record.getKey() >= lowerBound && record.getKey() <= upperBound,
+                                name + ": range search returned key " + record.getKey() + " outside its range");
+                    }
+                    rangeSearches.increment();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        writersDone.set(true);
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+
+        // --- Compare the contents with the models and the statistics with the operations that ran ---
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (Map<Integer, Integer> model : models) {
+            model.forEach((key, count) -> {
+                if (count > 0) {
+                    expected.put(key, count);
+                }
+            });
+        }
+        checkContents(file, expected, name);
+
+        Map<String, Long> counts = file.getStatistics().getOperationCounts();
+        checkCount(counts, IoStatistics.Operation.INSERT, inserts.sum(), name);
+        checkCount(counts, IoStatistics.Operation.DELETE, deletes.sum(), name);
+        // checkContents runs one range search and one search per remaining key
+        checkCount(counts, IoStatistics.Operation.SEARCH, searches.sum() + expected.size(), name);
+        checkCount(counts, IoStatistics.Operation.RANGE_SEARCH, rangeSearches.sum() + 1, name);
+
+        file.close();
+        IoStatistics.Snapshot snapshot = file.getStatistics().snapshot();
+        long staticReads = sorted ? SortedFile.getDiskReadCount() : HeapFile.getDiskReadCount();
+        long staticWrites = sorted ? SortedFile.getDiskWriteCount() : HeapFile.getDiskWriteCount();
+        check(snapshot.getReadRequests() == staticReads, name + ": statistics count " + snapshot.getReadRequests()
+                + " read requests, static counter " + staticReads);
+        check(snapshot.getWriteRequests() == staticWrites, name + ": statistics count " + snapshot.getWriteRequests()
+                + " write requests, static counter " + staticWrites);
+        check(snapshot.getCacheHits() + snapshot.getCacheMisses() > 0, name + ": no page fetches were counted");
+
+        // --- Reopen the file and check that the contents were written ---
+        TestFile reopened = open(sorted, dataFilename, directoryFilename, options);
+        checkContents(reopened, expected, name + " after reopen");
+        reopened.close();
+        deleteFiles(dataFilename, directoryFilename);
+        System.out.println(name + ": " + expected.size() + " keys, " + inserts.sum() + " inserts, " + deletes.sum()
+                + " deletes, " + searches.sum() + " searches, " + rangeSearches.sum() + " range searches");
+    }
+
+    // Every key must appear as many times as its model says, and nothing else may remain
+    private static void checkContents(TestFile file, TreeMap<Integer, Integer> expected, String name) throws IOException {
+        TreeMap<Integer, Integer> actual = new TreeMap<>();
+        for (Record record : file.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+            actual.merge(record.getKey(), 1, Integer::sum);
+        }
+        check(actual.equals(expected), name + ": file holds " + actual.size() + " distinct keys, expected " + expected.size());
+        for (int key : expected.keySet()) {
+            Record record = file.search(key);
+            check(record != null && record.getKey() == key, name + ": search for key " + key + " failed");
+        }
+    }
+
+    private static void checkCount(Map<String, Long> counts, IoStatistics.Operation operation, long expected, String name) {
+        long actual = counts.get(operation.name());
+        check(actual == expected, name + ": statistics count " + actual + " " + operation + " operations, expected " + expected);
+    }
+
+    private static TestFile open(boolean sorted, String dataFilename, String directoryFilename, FileOptions options)
+            throws IOException {
+        if (sorted) {
+            SortedFile sortedFile = new SortedFile(dataFilename, directoryFilename, options);
+            return new TestFile() {
+                @Override
+                public void insert(Record record) throws IOException {
+                    sortedFile.insertRecord(record);
+                }
+
+                @Override
+
+                public boolean delete(int key) throws IOException {
+                    return sortedFile.deleteRecord(key);
+                }
+
+                @Override
+
+                public Record search(int key) throws IOException {
+                    return sortedFile.searchRecord(key);
+                }
+
+                @Override
+
+                public List<Record> rangeSearch(int lowerBound, int upperBound) throws IOException {
+                    return sortedFile.rangeSearch(lowerBound, upperBound);
+                }
+
+                @Override
+
+                public IoStatistics getStatistics() {
+                    return sortedFile.getStatistics();
+                }
+
+                @Override
+
+                public void close() throws IOException {
+                    sortedFile.close();
+                }
+            };
+        }
+        HeapFile heapFile = new HeapFile(dataFilename, directoryFilename, options);
+        return new TestFile() {
+            @Override
+            public void insert(Record record) throws IOException {
+                heapFile.insertRecord(record);
+            }
+
+            @Override
+
+            public boolean delete(int key) throws IOException {
+                return heapFile.deleteRecord(key);
+            }
+
+            @Override
+
+            public Record search(int key) throws IOException {
+                return heapFile.searchRecord(key);
+            }
+
+            @Override
+
+            public List<Record> rangeSearch(int lowerBound, int upperBound) throws IOException {
+                return heapFile.rangeSearch(lowerBound, upperBound);
+            }
+
+            @Override
+
+            public IoStatistics getStatistics() {
+                return heapFile.getStatistics();
+            }
+
+            @Override
+
+            public void close() throws IOException {
+                heapFile.close();
+            }
+        };
+    }
+
+    // Removes the data and directory files and every index file a previous run may have left
+    private static void deleteFiles(String dataFilename, String directoryFilename) {
+        new java.io.File(dataFilename).delete();
+        new java.io.File(directoryFilename).delete();
+        new java.io.File(dataFilename + HeapFile.BTREE_INDEX_SUFFIX).delete();
+        new java.io.File(dataFilename + HeapFile.HASH_INDEX_SUFFIX).delete();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
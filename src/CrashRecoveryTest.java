@@ -0,0 +1,290 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * A test class for crash recovery with the write-ahead log. For `HeapFile` and `SortedFile`, with and without a
+ * B+-tree index, it starts a child JVM that runs a fixed sequence of inserts and deletes with the log enabled and
+ * then halts without closing the file, while checkpoints and evictions are still writing pages. A few bytes are
+ * appended to the log to stand for a write torn by the crash. The test then reopens the file, which replays the log,
+ * and checks that every operation the child completed is present, that the free space and record count of every
+ * directory entry match the page on disk, and that the recovered file accepts further inserts and reopens cleanly.
+ * <p>
+ * A second case cuts the log of a `SortedFile` at many points inside the records of a page split, as a crash
+ * during the split's log write would, and checks that recovery applies either the whole split or none of it:
+ * no record moved by the split may be lost, and every directory entry must match its page.
+ * The test exits with an exception if any check fails.
+ */
+public class CrashRecoveryTest {
+    private static final String DATA_FILENAME = "crash_test.dat";
+    private static final String DIRECTORY_FILENAME = "crash_test.pd";
+    private static final String SPLIT_DATA_FILENAME = "crash_split_test.dat"; // File whose log is cut inside a split
+    private static final String SPLIT_DIRECTORY_FILENAME = "crash_split_test.pd";
+    private static final String COPY_DATA_FILENAME = "crash_split_copy.dat"; // Crash image recovered for each cut
+    private static final String COPY_DIRECTORY_FILENAME = "crash_split_copy.pd";
+    private static final int CUT_STEP = 509; // Bytes between cut points; not a divisor of any record size
+    private static final int OPERATIONS = 6000; // Inserts and deletes run by the child before it halts
+    private static final int KEY_RANGE = 3000; // Keys are drawn from 0 to KEY_RANGE - 1
+    private static final long SEED = 20240611L; // Seed shared by the child and the model
+
+    public static void main(String[] args) {
+        try {
+            if (args.length == 3 && args[0].equals("child")) {
+                runChild(args[1].equals("sorted"), FileOptions.IndexType.valueOf(args[2]));
+                return;
+            }
+            for (FileOptions.IndexType indexType : new FileOptions.IndexType[]{FileOptions.IndexType.NONE, FileOptions.IndexType.BTREE}) {
+                run(false, indexType);
+                run(true, indexType);
+            }
+            runTornSplit();
+            deleteFiles();
+            System.out.println("CrashRecoveryTest passed");
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Options of the crashed run: a small pool and frequent checkpoints keep pages and the log moving at the halt
+    private static FileOptions crashOptions(FileOptions.IndexType indexType) {
+        return new FileOptions().setWriteAheadLog(true).setIndexType(indexType).setBufferPoolFrames(8)
+                .setCheckpointIntervalMillis(20);
+    }
+
+    private static void run(boolean sorted, FileOptions.IndexType indexType) throws IOException, InterruptedException {
+        String name = (sorted ? "SortedFile" : "HeapFile") + " with index " + indexType;
+        deleteFiles();
+
+        // --- Run the workload in a child JVM that halts without closing the file ---
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                CrashRecoveryTest.class.getName(), "child", sorted ? "sorted" : "heap", indexType.name())
+                .inheritIO().start();
+        check(child.waitFor() == 0, name + ": child exited with status " + child.exitValue());
+        check(Files.exists(Paths.get(DATA_FILENAME + HeapFile.WAL_SUFFIX)), name + ": the crash left no log");
+
+        // --- Append a partial record, as if the crash had torn the last log write ---
+        try (FileOutputStream log = new FileOutputStream(DATA_FILENAME + HeapFile.WAL_SUFFIX, true)) {
+            byte[] torn = new byte[37];
+            new Random(SEED).nextBytes(torn);
+            log.write(torn);
+        }
+
+        // --- Reopen, which replays the log, and compare with the operations the child completed ---
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        applyOperations(null, model);
+        int recovered = model.size();
+        FileOptions options = new FileOptions().setWriteAheadLog(true).setIndexType(indexType);
+        if (sorted) {
+            SortedFile sortedFile = new SortedFile(DATA_FILENAME, DIRECTORY_FILENAME, options);
+            checkContents(sortedFile.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE), model, name);
+            checkSearches(sortedFile, null, model, name);
+            sortedFile.close();
+        } else {
+            HeapFile heapFile = new HeapFile(DATA_FILENAME, DIRECTORY_FILENAME, options);
+            checkContents(heapFile.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE), model, name);
+            checkSearches(null, heapFile, model, name);
+            heapFile.close();
+        }
+        check(!Files.exists(Paths.get(DATA_FILENAME + HeapFile.WAL_SUFFIX)), name + ": close left the log behind");
+        int pages = checkDirectory(DATA_FILENAME, DIRECTORY_FILENAME, name);
+
+        // --- Reopen without the log and insert more records into the recovered pages ---
+        FileOptions plain = new FileOptions().setIndexType(indexType);
+        if (sorted) {
+            SortedFile sortedFile = new SortedFile(DATA_FILENAME, DIRECTORY_FILENAME, plain);
+            for (int key = KEY_RANGE; key < KEY_RANGE + 500; key++) {
+                sortedFile.insertRecord(new Record(key, "AfterRecovery" + key));
+                model.put(key, 1);
+            }
+            checkContents(sortedFile.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE), model, name + " after inserts");
+            checkSearches(sortedFile, null, model, name + " after inserts");
+            sortedFile.close();
+        } else {
+            HeapFile heapFile = new HeapFile(DATA_FILENAME, DIRECTORY_FILENAME, plain);
+            for (int key = KEY_RANGE; key < KEY_RANGE + 500; key++) {
+                heapFile.insertRecord(new Record(key, "AfterRecovery" + key));
+                model.put(key, 1);
+            }
+            checkContents(heapFile.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE), model, name + " after inserts");
+            checkSearches(null, heapFile, model, name + " after inserts");
+            heapFile.close();
+        }
+        checkDirectory(DATA_FILENAME, DIRECTORY_FILENAME, name + " after inserts");
+
+        System.out.println(name + ": recovered " + recovered + " keys on " + pages + " pages");
+    }
+
+    // Cuts the log inside a split at many points and recovers a copy of the crashed files for each cut
+    private static void runTornSplit() throws IOException {
+        String name = "SortedFile with a torn split";
+        deleteFiles();
+
+        // --- Insert records in random key order until a page splits, with no checkpoint truncating the log ---
+        FileOptions options = new FileOptions().setWriteAheadLog(true).setCheckpointIntervalMillis(0);
+        SortedFile sortedFile = new SortedFile(SPLIT_DATA_FILENAME, SPLIT_DIRECTORY_FILENAME, options);
+        Path log = Paths.get(SPLIT_DATA_FILENAME + SortedFile.WAL_SUFFIX);
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        Random random = new Random(SEED);
+        int splits = 0;
+        int key;
+        long splitStart;
+        long splitEnd;
+        do {
+            key = random.nextInt(KEY_RANGE);
+            splitStart = Files.size(log);
+            sortedFile.insertRecord(new Record(key, "SplitData" + key + "-".repeat(random.nextInt(120))));
+            model.merge(key, 1, Integer::sum);
+            splitEnd = Files.size(log);
+            if (splitEnd - splitStart > 2L * Page.DEFAULT_PAGE_SIZE) {
+                splits++; // Only a split logs two page images
+            }
+        } while (splits < 3);
+
+        // --- Keep the files as the crash would leave them, then close the original ---
+        Path[] originals = {Paths.get(SPLIT_DATA_FILENAME), Paths.get(SPLIT_DIRECTORY_FILENAME), log};
+        Path[] crashed = new Path[originals.length];
+        for (int i = 0; i < originals.length; i++) {
+            crashed[i] = Paths.get(originals[i] + ".crashed");
+            Files.copy(originals[i], crashed[i], StandardCopyOption.REPLACE_EXISTING);
+        }
+        sortedFile.close();
+
+        // --- Recover the crash image with the log cut at each point; the split's insert is either whole or absent ---
+        TreeMap<Integer, Integer> withoutSplit = new TreeMap<>(model);
+        if (withoutSplit.merge(key, -1, Integer::sum) == 0) {
+            withoutSplit.remove(key);
+        }
+        Path[] copies = {Paths.get(COPY_DATA_FILENAME), Paths.get(COPY_DIRECTORY_FILENAME),
+                Paths.get(COPY_DATA_FILENAME + SortedFile.WAL_SUFFIX)};
+        int cuts = 0;
+        for (long cut = splitStart; cut <= splitEnd; cut = cut == splitEnd || cut + CUT_STEP < splitEnd ? cut + CUT_STEP : splitEnd) {
+            for (int i = 0; i < crashed.length; i++) {
+                Files.copy(crashed[i], copies[i], StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (FileChannel channel = FileChannel.open(copies[2], StandardOpenOption.WRITE)) {
+                channel.truncate(cut);
+            }
+            String step = name + ", log cut " + (cut - splitStart) + " bytes into the split";
+            TreeMap<Integer, Integer> expected = cut == splitEnd ? model : withoutSplit;
+            SortedFile recovered = new SortedFile(COPY_DATA_FILENAME, COPY_DIRECTORY_FILENAME, options);
+            checkContents(recovered.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE), expected, step);
+            checkSearches(recovered, null, expected, step);
+            recovered.close();
+            checkDirectory(COPY_DATA_FILENAME, COPY_DIRECTORY_FILENAME, step);
+            cuts++;
+        }
+        for (Path path : crashed) {
+            Files.delete(path);
+        }
+        System.out.println(name + ": recovered " + cuts + " cuts of a " + (splitEnd - splitStart) + "-byte split");
+    }
+
+    // Runs the workload and halts the JVM, so that nothing is flushed or closed
+    private static void runChild(boolean sorted, FileOptions.IndexType indexType) throws IOException {
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        if (sorted) {
+            applyOperations(new SortedFile(DATA_FILENAME, DIRECTORY_FILENAME, crashOptions(indexType)), model);
+        } else {
+            applyOperations(new HeapFile(DATA_FILENAME, DIRECTORY_FILENAME, crashOptions(indexType)), model);
+        }
+        Runtime.getRuntime().halt(0);
+    }
+
+    // Applies the seeded operations to the file, if one is given, and to the model. Each call returns once it is
+    // durable, so every operation that completed before the halt must survive it.
+    private static void applyOperations(Object file, TreeMap<Integer, Integer> model) throws IOException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(KEY_RANGE);
+            if (random.nextInt(10) < 6 || !model.containsKey(key)) {
+                // Data lengths vary so that inserts and deletes leave pages with different amounts of free space
+                Record record = new Record(key, "CrashData" + key + "-".repeat(random.nextInt(120)));
+                if (file instanceof HeapFile) {
+                    ((HeapFile) file).insertRecord(record);
+                } else if (file instanceof SortedFile) {
+                    ((SortedFile) file).insertRecord(record);
+                }
+                model.merge(key, 1, Integer::sum);
+            } else {
+                boolean deleted = true;
+                if (file instanceof HeapFile) {
+                    deleted = ((HeapFile) file).deleteRecord(key);
+                } else if (file instanceof SortedFile) {
+                    deleted = ((SortedFile) file).deleteRecord(key);
+                }
+                check(deleted, "delete of key " + key + " found no record");
+                if (model.merge(key, -1, Integer::sum) == 0) {
+                    model.remove(key);
+                }
+            }
+        }
+    }
+
+    private static void checkContents(List<Record> records, TreeMap<Integer, Integer> model, String name) {
+        TreeMap<Integer, Integer> actual = new TreeMap<>();
+        for (Record record : records) {
+            actual.merge(record.getKey(), 1, Integer::sum);
+        }
+        check(actual.equals(model), name + ": file holds " + actual.size() + " distinct keys, expected " + model.size());
+    }
+
+    private static void checkSearches(SortedFile sortedFile, HeapFile heapFile, TreeMap<Integer, Integer> model, String name)
+            throws IOException {
+        for (int key = 0; key < KEY_RANGE + 500; key++) {
+            Record record = sortedFile != null ? sortedFile.searchRecord(key) : heapFile.searchRecord(key);
+            check((record != null) == model.containsKey(key), name + ": search for key " + key + " returned " + record);
+        }
+    }
+
+    // Compares every directory entry on disk with the page it describes; returns the number of pages
+    private static int checkDirectory(String dataFilename, String directoryFilename, String name) throws IOException {
+        PageDirectory pageDirectory = PageDirectory.fromByteArray(Files.readAllBytes(Paths.get(directoryFilename)));
+        byte[] data = Files.readAllBytes(Paths.get(dataFilename));
+        int pageSize = pageDirectory.getPageSize();
+        check(data.length == pageDirectory.getPages().size() * pageSize, name + ": data file has " + data.length
+                + " bytes for " + pageDirectory.getPages().size() + " directory entries");
+        for (PageInfo pageInfo : pageDirectory.getPages()) {
+            byte[] pageBytes = new byte[pageSize];
+            System.arraycopy(data, (int) pageInfo.getOffset(), pageBytes, 0, pageSize);
+            Page page = Page.fromByteArray(pageBytes);
+            check(pageInfo.getFreeSpace() == page.getFreeSpace(), name + ": directory gives page at offset "
+                    + pageInfo.getOffset() + " " + pageInfo.getFreeSpace() + " free bytes, the page has " + page.getFreeSpace());
+            check(pageInfo.getRecordCount() == page.getNumberOfRecords(), name + ": directory gives page at offset "
+                    + pageInfo.getOffset() + " " + pageInfo.getRecordCount() + " records, the page has " + page.getNumberOfRecords());
+            for (int slot = 0; slot < page.getSlotCount(); slot++) {
+                if (page.isSlotUsed(slot)) {
+                    int key = page.getKey(slot);
+                    check(key >= pageInfo.getMinKey() && key <= pageInfo.getMaxKey() && pageInfo.mightContain(key), name
+                            + ": directory entry of page at offset " + pageInfo.getOffset() + " does not cover key " + key);
+                }
+            }
+        }
+        return pageDirectory.getPages().size();
+    }
+
+    private static void deleteFiles() {
+        for (String filename : new String[]{SPLIT_DATA_FILENAME, SPLIT_DIRECTORY_FILENAME, SPLIT_DATA_FILENAME + SortedFile.WAL_SUFFIX,
+                COPY_DATA_FILENAME, COPY_DIRECTORY_FILENAME, COPY_DATA_FILENAME + SortedFile.WAL_SUFFIX}) {
+            new java.io.File(filename).delete();
+        }
+        new java.io.File(DATA_FILENAME).delete();
+        new java.io.File(DIRECTORY_FILENAME).delete();
+        new java.io.File(DATA_FILENAME + HeapFile.WAL_SUFFIX).delete();
+        new java.io.File(DATA_FILENAME + HeapFile.BTREE_INDEX_SUFFIX).delete();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,563 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ExtendibleHashIndex is a disk-resident hash index for point lookups by key.
+ * Entries live in bucket pages of the default page size. A directory of 2^globalDepth
+ * bucket offsets, indexed by the low bits of the key's hash, is kept in memory and written to
+ * the index file on flush. A full bucket is split in two, doubling the directory when the bucket
+ * is already as deep as the directory, so a lookup reads a single bucket page.
+ * <p>
+ * A bucket whose entries all share one key cannot be split; further entries for that key go to a
+ * chain of overflow pages linked from the bucket. Deletes do not merge buckets. Pages freed by
+ * splits are kept on a free list stored in the file and reused before the file grows.
+ * <p>
+ * Buckets and the directory are written only on flush, close or eviction, so after a crash the
+ * directory may not match the buckets. The metadata therefore carries a clean-shutdown flag that
+ * {@link #close()} sets once everything is forced to disk and the first change after opening
+ * clears. A file without the flag is emptied when it is opened, and {@link #wasClosedCleanly()}
+ * tells the data file to rebuild it.
+ */
+public class ExtendibleHashIndex implements RecordIndex {
+    public static final int MAGIC = 0x45485348; // "EHSH", identifies an extendible hash index file
+    public static final int VERSION = 2; // Format version of the index file
+    public static final int MAX_GLOBAL_DEPTH = 20; // Directory size limit; deeper buckets overflow instead of splitting
+    public static final int BUCKET_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES; // Local depth, entry count and overflow link
+    public static final int ENTRY_SIZE = Integer.BYTES + Long.BYTES; // Key and record ID
+    public static final int BUCKET_CAPACITY = (Page.DEFAULT_PAGE_SIZE - BUCKET_HEADER_SIZE) / ENTRY_SIZE;
+    private static final int METADATA_SIZE = Integer.BYTES * 5 + Long.BYTES * 4;
+    private static final int DIRECTORY_ENTRIES_PER_PAGE = Page.DEFAULT_PAGE_SIZE / Long.BYTES;
+    private static final long NO_PAGE = -1; // End of an overflow chain or of the free list
+
+    private final FileChannel channel;           // Open channel to the index file
+    private final Map<Long, Bucket> bucketCache; // Decoded bucket pages in access order
+    private final int cacheCapacity;             // Number of bucket pages kept in memory between operations
+    private long[] directory;                    // Bucket offset for each combination of low hash bits
+    private int globalDepth;                     // Number of hash bits used to index the directory
+    private long directoryOffset;                // Start of the directory region in the file
+    private int directoryPages;                  // Pages reserved for the directory region
+    private long pageCount;                      // Pages in the index file, including the metadata page
+    private long entryCount;                     // Number of entries in the index
+    private long freeListHead;                   // First free page, or NO_PAGE
+    private boolean directoryDirty;              // True if the directory must be rewritten
+    private final boolean closedCleanly;         // True if the file was closed cleanly before this open
+    private boolean cleanOnDisk;                 // True while the metadata on disk carries the clean-shutdown flag
+    private long bucketReadCount;                // Bucket pages read from disk
+    private long bucketWriteCount;               // Bucket pages written to disk
+    private boolean closed;                      // True once close() has been called
+
+    /**
+     * A decoded bucket or overflow page.
+     */
+    private static class Bucket {
+        private final long offset; // Offset of the page in the index file
+        private int localDepth;    // Hash bits shared by every key in the bucket
+        private int count;         // Number of entries in this page
+        private long next = NO_PAGE; // Next overflow page, or next free page for a free page
+        private final int[] keys = new int[BUCKET_CAPACITY];
+        private final long[] recordIds = new long[BUCKET_CAPACITY];
+        private boolean dirty;     // True if the page changed since it was written
+
+        Bucket(long offset) {
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Opens the index stored in the given file, creating an empty index if the file is empty.
+     * A file that was not closed cleanly, or was written by an older version, is emptied.
+     *
+     * @param filename      Path to the index file.
+     * @param cacheCapacity The number of bucket pages kept in memory.
+     * @throws IOException If an I/O error occurs or the file is not a hash index.
+     * @throws IllegalArgumentException if the cache capacity is not positive.
+     */
+    public ExtendibleHashIndex(String filename, int cacheCapacity) throws IOException {
+        if (cacheCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid bucket cache size: " + cacheCapacity);
+        }
+        this.cacheCapacity = cacheCapacity;
+        this.bucketCache = new LinkedHashMap<>(16, 0.75f, true);
+        this.channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean clean = false;
+        try {
+            if (channel.size() == 0 || !readMetadata()) {
+                // 디렉토리가 버킷과 맞지 않을 수 있으므로 읽지 않고 비운다. 데이터 파일에서 다시 만든다
+                channel.truncate(0);
+                initialize();
+            } else {
+                clean = true;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.closedCleanly = clean;
+    }
+
+    @Override
+    public void insert(int key, long recordId) throws IOException {
+        markInUse();
+        int hash = hash(key);
+        while (true) {
+            Bucket bucket = getBucket(directory[hash & directoryMask()]);
+            Bucket target = findPageWithSpace(bucket);
+            if (target == null && bucket.localDepth < MAX_GLOBAL_DEPTH && hasOtherKey(bucket, key)) {
+                split(bucket, hash);
+                continue; // The key's bucket may have changed; look it up again
+            }
+            if (target == null) {
+                target = appendOverflowPage(bucket);
+            }
+            target.keys[target.count] = key;
+            target.recordIds[target.count] = recordId;
+            target.count++;
+            target.dirty = true;
+            break;
+        }
+        entryCount++;
+        evictBuckets();
+    }
+
+    @Override
+    public boolean delete(int key, long recordId) throws IOException {
+        Bucket bucket = getBucket(directory[hash(key) & directoryMask()]);
+        for (Bucket page = bucket; page != null; page = nextPage(page)) {
+            for (int i = 0; i < page.count; i++) {
+                if (page.keys[i] == key && page.recordIds[i] == recordId) {
+                    markInUse();
+                    removeEntry(bucket, page, i);
+                    entryCount--;
+                    evictBuckets();
+                    return true;
+                }
+            }
+        }
+        evictBuckets();
+        return false;
+    }
+
+    @Override
+    public long search(int key) throws IOException {
+        long result = NOT_FOUND;
+        Bucket bucket = getBucket(directory[hash(key) & directoryMask()]);
+        // Entries are unordered, so the whole chain is checked for the lowest matching record ID
+        for (Bucket page = bucket; page != null; page = nextPage(page)) {
+            for (int i = 0; i < page.count; i++) {
+                if (page.keys[i] == key && (result == NOT_FOUND || page.recordIds[i] < result)) {
+                    result = page.recordIds[i];
+                }
+            }
+        }
+        evictBuckets();
+        return result;
+    }
+
+    @Override
+    public boolean wasClosedCleanly() {
+        return closedCleanly;
+    }
+
+    @Override
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of hash bits used to index the directory.
+     *
+     * @return The global depth.
+     */
+    public int getGlobalDepth() {
+        return globalDepth;
+    }
+
+    /**
+     * Returns the number of bucket pages read from disk since the index was opened.
+     *
+     * @return The bucket read count.
+     */
+    public long getBucketReadCount() {
+        return bucketReadCount;
+    }
+
+    /**
+     * Returns the number of bucket pages written to disk since the index was opened.
+     *
+     * @return The bucket write count.
+     */
+    public long getBucketWriteCount() {
+        return bucketWriteCount;
+    }
+
+    @Override
+    public void clear() throws IOException {
+        markInUse();
+        bucketCache.clear();
+        channel.truncate(0);
+        initialize();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (Bucket bucket : bucketCache.values()) {
+            writeBucket(bucket);
+        }
+        if (directoryDirty) {
+            writeDirectory();
+        }
+        writeMetadata();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            channel.force(false); // 모든 버킷과 디렉토리가 디스크에 닿은 뒤에야 정상 종료 표시를 남긴다
+            cleanOnDisk = true;
+            writeMetadata();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Mixes the key bits so that nearby keys spread over the directory; the mix is a bijection,
+    // so distinct keys never share a hash
+    private static int hash(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private int directoryMask() {
+        return (1 << globalDepth) - 1;
+    }
+
+    private Bucket nextPage(Bucket page) throws IOException {
+        return page.next == NO_PAGE ? null : getBucket(page.next);
+    }
+
+    // First page of the bucket's chain with a free entry, or null if the whole chain is full
+    private Bucket findPageWithSpace(Bucket bucket) throws IOException {
+        for (Bucket page = bucket; page != null; page = nextPage(page)) {
+            if (page.count < BUCKET_CAPACITY) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    // Checks whether the bucket's chain holds a key other than the given one, so that a split can separate them
+    private boolean hasOtherKey(Bucket bucket, int key) throws IOException {
+        for (Bucket page = bucket; page != null; page = nextPage(page)) {
+            for (int i = 0; i < page.count; i++) {
+                if (page.keys[i] != key) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Links a new empty overflow page at the end of the bucket's chain
+    private Bucket appendOverflowPage(Bucket bucket) throws IOException {
+        Bucket last = bucket;
+        while (last.next != NO_PAGE) {
+            last = getBucket(last.next);
+        }
+        Bucket overflow = allocatePage();
+        overflow.localDepth = bucket.localDepth;
+        last.next = overflow.offset;
+        last.dirty = true;
+        return overflow;
+    }
+
+    // Fills the gap with the chain's last entry and frees the last overflow page once it is empty
+    private void removeEntry(Bucket bucket, Bucket page, int index) throws IOException {
+        Bucket previous = null;
+        Bucket last = bucket;
+        while (last.next != NO_PAGE) {
+            previous = last;
+            last = getBucket(last.next);
+        }
+        last.count--;
+        page.keys[index] = last.keys[last.count];
+        page.recordIds[index] = last.recordIds[last.count];
+        page.dirty = true;
+        last.dirty = true;
+        if (last.count == 0 && previous != null) {
+            previous.next = NO_PAGE;
+            previous.dirty = true;
+            freePage(last);
+        }
+    }
+
+    // Splits a bucket on its next hash bit, doubling the directory first if the bucket is as deep as it
+    private void split(Bucket bucket, int hash) throws IOException {
+        if (bucket.localDepth == globalDepth) {
+            long[] doubled = new long[directory.length * 2];
+            System.arraycopy(directory, 0, doubled, 0, directory.length);
+            System.arraycopy(directory, 0, doubled, directory.length, directory.length);
+            directory = doubled;
+            globalDepth++;
+        }
+        int bit = 1 << bucket.localDepth;
+        int pattern = hash & (bit - 1);
+
+        // Gather every entry of the chain and release its overflow pages
+        List<int[]> keys = new ArrayList<>();
+        List<long[]> recordIds = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (Bucket page = bucket; page != null; page = nextPage(page)) {
+            keys.add(page.keys.clone());
+            recordIds.add(page.recordIds.clone());
+            counts.add(page.count);
+        }
+        long overflow = bucket.next;
+        while (overflow != NO_PAGE) {
+            Bucket page = getBucket(overflow);
+            overflow = page.next;
+            freePage(page);
+        }
+
+        Bucket sibling = allocatePage();
+        bucket.localDepth++;
+        sibling.localDepth = bucket.localDepth;
+        bucket.count = 0;
+        bucket.next = NO_PAGE;
+        bucket.dirty = true;
+        // Directory slots that share the bucket's low bits and have the new bit set move to the sibling
+        for (int i = pattern | bit; i < directory.length; i += bit << 1) {
+            directory[i] = sibling.offset;
+        }
+        directoryDirty = true;
+
+        for (int p = 0; p < keys.size(); p++) {
+            for (int i = 0; i < counts.get(p); i++) {
+                int key = keys.get(p)[i];
+                Bucket target = (hash(key) & bit) == 0 ? bucket : sibling;
+                Bucket page = findPageWithSpace(target);
+                if (page == null) {
+                    page = appendOverflowPage(target);
+                }
+                page.keys[page.count] = key;
+                page.recordIds[page.count] = recordIds.get(p)[i];
+                page.count++;
+                page.dirty = true;
+            }
+        }
+    }
+
+    // Returns an empty page, reusing a free page before growing the file
+    private Bucket allocatePage() throws IOException {
+        Bucket page;
+        if (freeListHead != NO_PAGE) {
+            page = getBucket(freeListHead);
+            freeListHead = page.next;
+        } else {
+            page = new Bucket(pageCount * Page.DEFAULT_PAGE_SIZE);
+            pageCount++;
+            bucketCache.put(page.offset, page);
+        }
+        page.localDepth = 0;
+        page.count = 0;
+        page.next = NO_PAGE;
+        page.dirty = true;
+        return page;
+    }
+
+    // Pushes a page onto the free list, which is linked through the pages' next fields
+    private void freePage(Bucket page) {
+        page.count = 0;
+        page.next = freeListHead;
+        page.dirty = true;
+        freeListHead = page.offset;
+    }
+
+    // Returns the bucket page at the given offset, reading it on a cache miss
+    private Bucket getBucket(long offset) throws IOException {
+        Bucket bucket = bucketCache.get(offset);
+        if (bucket == null) {
+            bucket = readBucket(offset);
+            bucketCache.put(offset, bucket);
+        }
+        return bucket;
+    }
+
+    // Shrinks the cache back to its capacity. Called only between operations, so no caller holds an evicted page.
+    private void evictBuckets() throws IOException {
+        Iterator<Bucket> iterator = bucketCache.values().iterator();
+        while (bucketCache.size() > cacheCapacity && iterator.hasNext()) {
+            writeBucket(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    // Creates an empty index: the metadata page, one bucket and a one-page directory region
+    private void initialize() throws IOException {
+        pageCount = 1;
+        entryCount = 0;
+        freeListHead = NO_PAGE;
+        globalDepth = 0;
+        directory = new long[] {allocatePage().offset};
+        directoryOffset = NO_PAGE;
+        directoryPages = 0;
+        directoryDirty = true;
+        flush();
+    }
+
+    private Bucket readBucket(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Page.DEFAULT_PAGE_SIZE);
+        readFully(buffer, offset);
+        bucketReadCount++;
+        buffer.flip();
+        Bucket bucket = new Bucket(offset);
+        bucket.localDepth = buffer.getInt();
+        bucket.count = buffer.getInt();
+        bucket.next = buffer.getLong();
+        for (int i = 0; i < bucket.count; i++) {
+            bucket.keys[i] = buffer.getInt();
+            bucket.recordIds[i] = buffer.getLong();
+        }
+        return bucket;
+    }
+
+    // Writes a bucket page back to the file if it holds unsaved changes
+    private void writeBucket(Bucket bucket) throws IOException {
+        if (!bucket.dirty) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Page.DEFAULT_PAGE_SIZE);
+        buffer.putInt(bucket.localDepth);
+        buffer.putInt(bucket.count);
+        buffer.putLong(bucket.next);
+        for (int i = 0; i < bucket.count; i++) {
+            buffer.putInt(bucket.keys[i]);
+            buffer.putLong(bucket.recordIds[i]);
+        }
+        buffer.clear();
+        writeFully(buffer, bucket.offset);
+        bucketWriteCount++;
+        bucket.dirty = false;
+    }
+
+    // Writes the directory to its region, moving it to a larger region at the end of the file when it has outgrown it
+    private void writeDirectory() throws IOException {
+        int pagesNeeded = (directory.length + DIRECTORY_ENTRIES_PER_PAGE - 1) / DIRECTORY_ENTRIES_PER_PAGE;
+        if (pagesNeeded > directoryPages) {
+            for (int i = 0; i < directoryPages; i++) {
+                // The old region's pages join the free list
+                Bucket page = new Bucket(directoryOffset + (long) i * Page.DEFAULT_PAGE_SIZE);
+                bucketCache.put(page.offset, page);
+                freePage(page);
+            }
+            directoryOffset = pageCount * Page.DEFAULT_PAGE_SIZE;
+            directoryPages = pagesNeeded;
+            pageCount += pagesNeeded;
+            for (Bucket bucket : bucketCache.values()) {
+                writeBucket(bucket);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(directory.length * Long.BYTES);
+        for (long offset : directory) {
+            buffer.putLong(offset);
+        }
+        buffer.flip();
+        writeFully(buffer, directoryOffset);
+        directoryDirty = false;
+    }
+
+    // Clears the clean-shutdown flag on disk before the first change, so that a crash from here on forces a rebuild
+    private void markInUse() throws IOException {
+        if (cleanOnDisk) {
+            cleanOnDisk = false;
+            writeMetadata();
+            channel.force(false);
+        }
+    }
+
+    // Reads the metadata and the directory; returns false, reading nothing else, if the file was written
+    // by an older version or was not closed cleanly
+    private boolean readMetadata() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(METADATA_SIZE);
+        readFully(buffer, 0);
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Unsupported index file format");
+        }
+        int version = buffer.getInt();
+        if (version < VERSION) {
+            return false;
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported index file version: " + version);
+        }
+        globalDepth = buffer.getInt();
+        directoryPages = buffer.getInt();
+        directoryOffset = buffer.getLong();
+        pageCount = buffer.getLong();
+        entryCount = buffer.getLong();
+        freeListHead = buffer.getLong();
+        if (buffer.getInt() == 0) {
+            return false;
+        }
+        cleanOnDisk = true;
+
+        ByteBuffer entries = ByteBuffer.allocate((1 << globalDepth) * Long.BYTES);
+        readFully(entries, directoryOffset);
+        entries.flip();
+        directory = new long[1 << globalDepth];
+        for (int i = 0; i < directory.length; i++) {
+            directory[i] = entries.getLong();
+        }
+        return true;
+    }
+
+    private void writeMetadata() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(METADATA_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(globalDepth);
+        buffer.putInt(directoryPages);
+        buffer.putLong(directoryOffset);
+        buffer.putLong(pageCount);
+        buffer.putLong(entryCount);
+        buffer.putLong(freeListHead);
+        buffer.putInt(cleanOnDisk ? 1 : 0);
+        buffer.flip();
+        writeFully(buffer, 0);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of index file at offset " + position);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
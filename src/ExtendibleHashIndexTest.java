@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * A test class for the `ExtendibleHashIndex`. It inserts enough distinct keys to double the directory several times,
+ * then a group of keys whose hashes agree in more low bits than the directory uses, so that their bucket must be
+ * split and the directory doubled repeatedly before they separate, and finally many entries for a single key, which
+ * can only go to overflow pages. After deleting a random part of the entries, and after closing and reopening the
+ * index file, it checks every lookup against a model of the entries. Finally it checks that a closed file reopens as
+ * closed cleanly, and that a file abandoned after a change, as by a crash, reopens empty and not closed cleanly.
+ * The test exits with an exception if any check fails.
+ */
+public class ExtendibleHashIndexTest {
+    private static final int KEY_COUNT = 100000; // Distinct keys with well spread hashes
+    private static final int COLLIDING_BITS = 14; // Low hash bits shared by the colliding keys
+    private static final int COLLIDING_COUNT = 1000; // Colliding keys, about three buckets' worth
+    private static final int DUPLICATE_KEY = -7; // Key that receives many record IDs
+    private static final int DUPLICATE_COUNT = 1000; // Entries for the duplicate key, spread over an overflow chain
+    private static final int CACHE_PAGES = 16; // Small cache so that most bucket accesses go to disk
+    private static final long SEED = 20240611L; // Fixed seed so that a failure can be reproduced
+
+    public static void main(String[] args) {
+        try {
+            String indexFilename = "ehi_test.hidx";
+
+            // Clean up any existing file to ensure a fresh test environment
+            new java.io.File(indexFilename).delete();
+
+            Random random = new Random(SEED);
+            Map<Integer, TreeSet<Long>> model = new HashMap<>(); // Record IDs of each key
+            List<long[]> entries = new ArrayList<>(); // Every inserted (key, record ID) pair
+            ExtendibleHashIndex index = new ExtendibleHashIndex(indexFilename, CACHE_PAGES);
+
+            // --- Insert distinct keys until the directory has doubled several times ---
+            for (int key = 0; key < KEY_COUNT; key++) {
+                insert(index, model, entries, key, key * 3L);
+            }
+            int depth = index.getGlobalDepth();
+            check(depth >= 8, "expected several directory doublings, global depth is " + depth);
+            checkIndex(index, model, random, "distinct keys");
+
+            // --- Insert keys that all fall in one bucket at the current global depth ---
+            List<Integer> colliding = collidingKeys(KEY_COUNT, COLLIDING_COUNT, COLLIDING_BITS);
+            for (int key : colliding) {
+                insert(index, model, entries, key, key * 3L);
+            }
+            check(index.getGlobalDepth() > COLLIDING_BITS, "colliding keys were not separated by splits, global depth is "
+                    + index.getGlobalDepth());
+            checkIndex(index, model, random, "colliding keys");
+
+            // --- Insert many entries for one key; its bucket cannot be split and overflows instead ---
+            for (int i = 0; i < DUPLICATE_COUNT; i++) {
+                insert(index, model, entries, DUPLICATE_KEY, 10_000_000L + i);
+            }
+            checkIndex(index, model, random, "duplicate key");
+
+            // --- Reopen the index file and check that every entry is found ---
+            index.close();
+            index = new ExtendibleHashIndex(indexFilename, CACHE_PAGES);
+            check(index.wasClosedCleanly(), "closed index reopened as not closed cleanly");
+            check(index.getGlobalDepth() > COLLIDING_BITS, "global depth changed across reopen");
+            checkIndex(index, model, random, "reopen after inserts");
+
+            // --- Delete a random half of the entries, including most of the overflow chain ---
+            Collections.shuffle(entries, random);
+            for (int i = 0; i < entries.size() / 2; i++) {
+                int key = (int) entries.get(i)[0];
+                long recordId = entries.get(i)[1];
+                check(index.delete(key, recordId), "delete of key " + key + " missed the entry");
+                check(!index.delete(key, recordId), "second delete of key " + key + " succeeded");
+                model.get(key).remove(recordId);
+                if (model.get(key).isEmpty()) {
+                    model.remove(key);
+                }
+            }
+            checkIndex(index, model, random, "deletes");
+
+            // --- Reopen once more after the deletes ---
+            index.close();
+            index = new ExtendibleHashIndex(indexFilename, CACHE_PAGES);
+            check(index.wasClosedCleanly(), "closed index reopened as not closed cleanly after deletes");
+            checkIndex(index, model, random, "reopen after deletes");
+
+            // --- Abandon the index after a change, as a crash would; reopening empties it ---
+            index.insert(DUPLICATE_KEY, 20_000_000L);
+            ExtendibleHashIndex crashed = new ExtendibleHashIndex(indexFilename, CACHE_PAGES); // The abandoned index is never closed
+            check(!crashed.wasClosedCleanly(), "index changed after its last close reopened as closed cleanly");
+            check(crashed.getEntryCount() == 0, "index that was not closed cleanly kept " + crashed.getEntryCount() + " entries");
+            crashed.close();
+            crashed = new ExtendibleHashIndex(indexFilename, CACHE_PAGES);
+            check(crashed.wasClosedCleanly(), "emptied index reopened as not closed cleanly");
+            crashed.close();
+
+            new java.io.File(indexFilename).delete();
+            System.out.println("ExtendibleHashIndexTest passed");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void insert(ExtendibleHashIndex index, Map<Integer, TreeSet<Long>> model, List<long[]> entries,
+                               int key, long recordId) throws IOException {
+        index.insert(key, recordId);
+        model.computeIfAbsent(key, k -> new TreeSet<>()).add(recordId);
+        entries.add(new long[]{key, recordId});
+    }
+
+    // Looks up every key of the model, which must return its lowest record ID, and some keys that were never inserted
+    private static void checkIndex(ExtendibleHashIndex index, Map<Integer, TreeSet<Long>> model, Random random, String step)
+            throws IOException {
+        long entryCount = 0;
+        for (Map.Entry<Integer, TreeSet<Long>> entry : model.entrySet()) {
+            long recordId = index.search(entry.getKey());
+            check(recordId == entry.getValue().first(), step + ": search for key " + entry.getKey() + " returned "
+                    + recordId + ", expected " + entry.getValue().first());
+            entryCount += entry.getValue().size();
+        }
+        check(index.getEntryCount() == entryCount, step + ": entry count " + index.getEntryCount() + ", expected " + entryCount);
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt();
+            if (!model.containsKey(key)) {
+                check(index.search(key) == RecordIndex.NOT_FOUND, step + ": search for absent key " + key + " found an entry");
+            }
+        }
+        System.out.println(step + ": " + entryCount + " entries, global depth " + index.getGlobalDepth());
+    }
+
+    // Keys from the start value upward whose hashes have the given number of low bits all zero
+    private static List<Integer> collidingKeys(int start, int count, int bits) {
+        List<Integer> keys = new ArrayList<>();
+        int mask = (1 << bits) - 1;
+        for (int key = start; keys.size() < count; key++) {
+            if ((hash(key) & mask) == 0) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    // Same mix as ExtendibleHashIndex; the global depth check after the colliding inserts fails if the two differ
+    private static int hash(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
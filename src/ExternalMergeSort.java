@@ -0,0 +1,184 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * ExternalMergeSort sorts a stream of records by key using a bounded amount of memory.
+ * The input is cut into runs of at most {@code runRecords} records, each run is sorted in memory
+ * and spilled to a temporary file, and the runs are then combined with a k-way merge driven by a
+ * priority queue. When there are more runs than the merge fan-in, intermediate merge passes
+ * combine them first. Records with equal keys keep their input order.
+ */
+public class ExternalMergeSort {
+    public static final int DEFAULT_RUN_RECORDS = 64 * 1024; // Records sorted in memory per run
+    public static final int MAX_FAN_IN = 64; // Maximum number of runs merged in one pass
+    private static final int IO_BUFFER_SIZE = 64 * 1024; // Buffer size for run file streams
+
+    /**
+     * Receives the sorted records in key order.
+     */
+    public interface RecordSink {
+        /**
+         * Accepts the next record in sorted order.
+         *
+         * @param record The next record.
+         * @throws IOException If an I/O error occurs while consuming the record.
+         */
+        void accept(Record record) throws IOException;
+    }
+
+    private final int runRecords; // Memory budget, expressed as records held in memory at once
+    private final File tempDirectory; // Directory for run files, null for the system default
+
+    /**
+     * Constructs a sorter with the given memory budget.
+     *
+     * @param runRecords    The maximum number of records held in memory while forming a run.
+     * @param tempDirectory The directory for temporary run files, or null for the system default.
+     * @throws IllegalArgumentException if the run size is not positive.
+     */
+    public ExternalMergeSort(int runRecords, File tempDirectory) {
+        if (runRecords <= 0) {
+            throw new IllegalArgumentException("Invalid run size: " + runRecords);
+        }
+        this.runRecords = runRecords;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Sorts the input records by key and passes them to the sink in order.
+     * Input that fits in a single run is sorted in memory without touching disk.
+     *
+     * @param input  The unsorted records.
+     * @param output The consumer of the sorted records.
+     * @throws IOException If an I/O error occurs while spilling, merging or consuming records.
+     */
+    public void sort(Iterator<Record> input, RecordSink output) throws IOException {
+        List<File> runs = new ArrayList<>();
+        try {
+            List<Record> buffer = new ArrayList<>();
+            while (input.hasNext()) {
+                buffer.add(input.next());
+                if (buffer.size() == runRecords) {
+                    runs.add(writeRun(buffer));
+                    buffer.clear();
+                }
+            }
+            if (runs.isEmpty()) {
+                // Everything fit in memory: no run files are needed
+                buffer.sort(Comparator.comparingInt(Record::getKey));
+                for (Record record : buffer) {
+                    output.accept(record);
+                }
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                runs.add(writeRun(buffer));
+                buffer.clear();
+            }
+
+            // Reduce the number of runs until a single pass can merge them all
+            while (runs.size() > MAX_FAN_IN) {
+                List<File> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                    List<File> group = runs.subList(i, Math.min(i + MAX_FAN_IN, runs.size()));
+                    File target = createRunFile();
+                    merged.add(target);
+                    try (DataOutputStream out = openRunForWrite(target)) {
+                        merge(group, record -> out.write(record.toByteArray()));
+                    }
+                    deleteAll(group);
+                }
+                runs = merged;
+            }
+            merge(runs, output);
+        } finally {
+            deleteAll(runs);
+        }
+    }
+
+    // Sorts the buffered records and spills them to a new run file
+    private File writeRun(List<Record> buffer) throws IOException {
+        buffer.sort(Comparator.comparingInt(Record::getKey)); // List.sort is stable
+        File run = createRunFile();
+        try (DataOutputStream out = openRunForWrite(run)) {
+            for (Record record : buffer) {
+                out.write(record.toByteArray());
+            }
+        }
+        return run;
+    }
+
+    // Merges sorted run files into the sink with a priority queue keyed on each run's current record
+    private void merge(List<File> runs, RecordSink output) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            // Ties are broken by run number so that equal keys keep their input order
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                    Comparator.comparingInt((RunReader reader) -> reader.current.getKey())
+                            .thenComparingInt(reader -> reader.runNumber));
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                output.accept(reader.current);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    private File createRunFile() throws IOException {
+        return File.createTempFile("sortrun", ".tmp", tempDirectory);
+    }
+
+    private static DataOutputStream openRunForWrite(File run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), IO_BUFFER_SIZE));
+    }
+
+    private static void deleteAll(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Sequential reader over one sorted run file.
+     */
+    private static class RunReader {
+        private final DataInputStream in; // Buffered stream over the run file
+        private final int runNumber;      // Position of the run in the merge, used to break ties
+        private final byte[] recordBytes = new byte[Record.RECORD_SIZE];
+        private Record current;           // Record at the head of the run
+
+        RunReader(File run, int runNumber) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), IO_BUFFER_SIZE));
+            this.runNumber = runNumber;
+        }
+
+        // Reads the next record of the run, returning false at the end of the run
+        boolean advance() throws IOException {
+            try {
+                in.readFully(recordBytes);
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            current = Record.fromByteArray(recordBytes);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ * FileOptions collects the tuning settings used when opening a HeapFile or SortedFile.
+ * Every setter returns this object so that options can be chained, and options that
+ * are not set keep their default values.
+ */
+public class FileOptions {
+    /**
+     * Key indexes that can be maintained alongside a data file.
+     */
+    public enum IndexType {
+        NONE,  // No index; lookups use the page directory
+        BTREE, // Disk-resident B+-tree stored next to the data file; serves point and range lookups
+        HASH,  // Disk-resident extendible hash index stored next to the data file; serves point lookups only
+        MEMORY // In-memory primitive hash map built with one scan when the file is opened; point lookups only
+    }
+
+    private int pageSize = 0; // Page size set by setPageSize, 0 if not set
+    private int bufferPoolFrames = BufferPool.DEFAULT_FRAME_COUNT; // Number of pages cached in memory
+    private boolean memoryMapped = false; // Whether pages are read through a memory mapping
+    private IndexType indexType = IndexType.NONE; // Key index maintained alongside the data file
+    private boolean writeAheadLog = false; // Whether changes are logged and committed before they are acknowledged
+    private long checkpointIntervalMillis = WriteAheadLog.DEFAULT_CHECKPOINT_INTERVAL_MILLIS; // 0 disables background checkpoints
+    private boolean writeBehind = false; // Whether dirty pages and directory entries are written by a background flusher
+    private int dirtyPageThreshold = BufferPool.DEFAULT_DIRTY_PAGE_THRESHOLD; // Dirty pages that trigger a background flush
+    private long maxDirtyAgeMillis = BufferPool.DEFAULT_MAX_DIRTY_AGE_MILLIS; // Longest a change waits for a background flush
+    private int readAheadPages = ReadAhead.DEFAULT_WINDOW_PAGES; // Pages sequential scans read ahead, 0 to disable
+    private IoStatistics statistics = null; // Statistics shared by the files opened with these options, null for one per file
+    private boolean jmxEnabled = false; // Whether each file registers its statistics as an MXBean
+
+    /**
+     * Retrieves the page size used when a new file is created.
+     *
+     * @return The page size in bytes; the default page size if none was set.
+     */
+    public int getPageSize() {
+        return pageSize != 0 ? pageSize : Page.DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Checks whether a page size was set explicitly.
+     *
+     * @return True if {@link #setPageSize(int)} was called.
+     */
+    public boolean isPageSizeSet() {
+        return pageSize != 0;
+    }
+
+    /**
+     * Sets the page size used when a new file is created. The size is recorded in the file's page
+     * directory. An existing file is opened with the size it was created with if no size is set,
+     * and opening it fails if a different size is set.
+     * Large pages suit scan-heavy files, small pages files that mostly serve point lookups.
+     *
+     * @param pageSize The page size in bytes: a power of two from 4KB to 64KB.
+     * @return This options object.
+     * @throws IllegalArgumentException if the page size is not supported.
+     */
+    public FileOptions setPageSize(int pageSize) {
+        if (!Page.isValidPageSize(pageSize)) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Retrieves the number of frames in the buffer pool.
+     *
+     * @return The buffer pool size in pages.
+     */
+    public int getBufferPoolFrames() {
+        return bufferPoolFrames;
+    }
+
+    /**
+     * Sets the number of frames in the buffer pool.
+     *
+     * @param bufferPoolFrames The maximum number of pages kept in memory.
+     * @return This options object.
+     * @throws IllegalArgumentException if the frame count is not positive.
+     */
+    public FileOptions setBufferPoolFrames(int bufferPoolFrames) {
+        if (bufferPoolFrames <= 0) {
+            throw new IllegalArgumentException("Invalid buffer pool size: " + bufferPoolFrames);
+        }
+        this.bufferPoolFrames = bufferPoolFrames;
+        return this;
+    }
+
+    /**
+     * Checks whether pages are read through a memory mapping of the data file.
+     *
+     * @return True if the memory-mapped read path is enabled.
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Enables or disables the memory-mapped read path. Intended for read-mostly files;
+     * writes still go through the file channel.
+     *
+     * @param memoryMapped True to read pages through a memory mapping.
+     * @return This options object.
+     */
+    public FileOptions setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+
+    /**
+     * Retrieves the kind of key index maintained alongside the data file.
+     *
+     * @return The index type.
+     */
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * Sets the kind of key index maintained alongside the data file. The index is stored in its own
+     * file next to the data file and is rebuilt when opened if it does not match the data file.
+     *
+     * @param indexType The index type.
+     * @return This options object.
+     */
+    public FileOptions setIndexType(IndexType indexType) {
+        this.indexType = indexType;
+        return this;
+    }
+
+    /**
+     * Checks whether changes are recorded in a write-ahead log.
+     *
+     * @return True if the write-ahead log is enabled.
+     */
+    public boolean isWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    /**
+     * Enables or disables the write-ahead log. With the log enabled, every insert and delete appends
+     * the pages and directory entries it changed to a sequential log next to the data file and returns
+     * only after the log is forced to disk; operations that commit at the same time share one force.
+     * Pages and directory entries are written in place later, by checkpoints, and a file that was not
+     * closed cleanly is repaired from the log when it is opened again.
+     *
+     * @param writeAheadLog True to log changes and commit them durably.
+     * @return This options object.
+     */
+    public FileOptions setWriteAheadLog(boolean writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+        return this;
+    }
+
+    /**
+     * Retrieves the interval between background checkpoints.
+     *
+     * @return The checkpoint interval in milliseconds, or 0 if background checkpoints are disabled.
+     */
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    /**
+     * Sets the interval between background checkpoints, which write logged changes in place and
+     * truncate the write-ahead log. Has no effect unless the write-ahead log is enabled.
+     *
+     * @param checkpointIntervalMillis The interval in milliseconds, or 0 to checkpoint only on flush and close.
+     * @return This options object.
+     * @throws IllegalArgumentException if the interval is negative.
+     */
+    public FileOptions setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        if (checkpointIntervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid checkpoint interval: " + checkpointIntervalMillis);
+        }
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Checks whether modified pages and directory entries are written by a background flusher.
+     *
+     * @return True if write-behind is enabled.
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Enables or disables write-behind. With write-behind enabled, inserts and deletes leave modified
+     * pages in the buffer pool and defer their directory entries, and a background thread writes them
+     * in offset order once the dirty-page threshold or the maximum age is reached. A page or entry
+     * changed many times between flushes is written once. {@link HeapFile#flush()} and
+     * {@link SortedFile#flush()} write everything pending before they return, and close does the same.
+     *
+     * @param writeBehind True to write changes in the background.
+     * @return This options object.
+     */
+    public FileOptions setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+        return this;
+    }
+
+    /**
+     * Retrieves the number of dirty pages that triggers a background flush.
+     *
+     * @return The dirty-page threshold.
+     */
+    public int getDirtyPageThreshold() {
+        return dirtyPageThreshold;
+    }
+
+    /**
+     * Sets the number of dirty pages, or deferred directory entries, that triggers a background flush.
+     * Has no effect unless write-behind is enabled.
+     *
+     * @param dirtyPageThreshold The dirty-page threshold.
+     * @return This options object.
+     * @throws IllegalArgumentException if the threshold is not positive.
+     */
+    public FileOptions setDirtyPageThreshold(int dirtyPageThreshold) {
+        if (dirtyPageThreshold <= 0) {
+            throw new IllegalArgumentException("Invalid dirty page threshold: " + dirtyPageThreshold);
+        }
+        this.dirtyPageThreshold = dirtyPageThreshold;
+        return this;
+    }
+
+    /**
+     * Retrieves how long a change may wait before a background flush writes it.
+     *
+     * @return The maximum age in milliseconds.
+     */
+    public long getMaxDirtyAgeMillis() {
+        return maxDirtyAgeMillis;
+    }
+
+    /**
+     * Sets how long a modified page or directory entry may wait before a background flush writes it,
+     * however few changes are pending. Has no effect unless write-behind is enabled.
+     *
+     * @param maxDirtyAgeMillis The maximum age in milliseconds.
+     * @return This options object.
+     * @throws IllegalArgumentException if the age is not positive.
+     */
+    public FileOptions setMaxDirtyAgeMillis(long maxDirtyAgeMillis) {
+        if (maxDirtyAgeMillis <= 0) {
+            throw new IllegalArgumentException("Invalid maximum dirty age: " + maxDirtyAgeMillis);
+        }
+        this.maxDirtyAgeMillis = maxDirtyAgeMillis;
+        return this;
+    }
+
+    /**
+     * Retrieves the number of pages a sequential scan reads ahead at a time.
+     *
+     * @return The read-ahead window in pages, or 0 if read-ahead is disabled.
+     */
+    public int getReadAheadPages() {
+        return readAheadPages;
+    }
+
+    /**
+     * Sets the number of pages a scan reads ahead with one request once it reads pages sequentially.
+     * The window is capped at a quarter of the buffer pool frames.
+     *
+     * @param readAheadPages The read-ahead window in pages, or 0 to disable read-ahead.
+     * @return This options object.
+     * @throws IllegalArgumentException if the window is negative.
+     */
+    public FileOptions setReadAheadPages(int readAheadPages) {
+        if (readAheadPages < 0) {
+            throw new IllegalArgumentException("Invalid read-ahead window: " + readAheadPages);
+        }
+        this.readAheadPages = readAheadPages;
+        return this;
+    }
+
+    /**
+     * Retrieves the statistics that files opened with these options record into.
+     *
+     * @return The shared statistics, or null if every file keeps its own.
+     */
+    public IoStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets statistics for the files opened with these options to record into, so that several files
+     * report one set of totals. By default every file keeps its own statistics.
+     *
+     * @param statistics The shared statistics, or null to give every file its own.
+     * @return This options object.
+     */
+    public FileOptions setStatistics(IoStatistics statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+    /**
+     * Checks whether files register their statistics with the platform MBean server.
+     *
+     * @return True if JMX registration is enabled.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * Sets whether each file registers its statistics with the platform MBean server while it is
+     * open, under {@code DatabaseFileSort:type=<HeapFile|SortedFile>,file=<data filename>}.
+     * Opening the same data file twice at once then fails.
+     *
+     * @param jmxEnabled True to register the statistics.
+     * @return This options object.
+     */
+    public FileOptions setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+        return this;
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * FreeSpaceMap tracks how much free space each page of a heap file has.
+ * Free space is rounded down into {@link #CATEGORIES} equal-width categories; the map keeps one bit set
+ * of pages per category, indexed by the page's position in the page directory, and remembers the
+ * lowest page of each category so that an insert finds a page large enough for its record by checking
+ * at most one entry per category instead of scanning the directory.
+ */
+public class FreeSpaceMap {
+    public static final int CATEGORIES = 128; // Number of free space categories
+    private final int categoryWidth; // Bytes of free space per category, a fixed fraction of the page size
+    private final BitSet[] pagesByCategory = new BitSet[CATEGORIES]; // Bit i of set c is set if page i is in category c
+    private final int[] firstPage = new int[CATEGORIES]; // Lowest page index of each category, or -1 if none
+    private int[] categoryOfPage; // Category of each page, indexed by page
+
+    /**
+     * Builds the map from the free space recorded in the page directory.
+     *
+     * @param pages    The pages of the file, in directory order.
+     * @param pageSize The page size of the file in bytes.
+     */
+    public FreeSpaceMap(List<PageInfo> pages, int pageSize) {
+        categoryWidth = pageSize / CATEGORIES;
+        for (int c = 0; c < CATEGORIES; c++) {
+            pagesByCategory[c] = new BitSet();
+        }
+        categoryOfPage = new int[Math.max(16, pages.size())];
+        for (int i = 0; i < pages.size(); i++) {
+            int category = categoryOf(pages.get(i).getFreeSpace());
+            categoryOfPage[i] = category;
+            pagesByCategory[category].set(i);
+        }
+        for (int c = 0; c < CATEGORIES; c++) {
+            firstPage[c] = pagesByCategory[c].nextSetBit(0);
+        }
+    }
+
+    /**
+     * Returns the lowest-indexed page among those of the smallest category guaranteed to have
+     * the requested free space.
+     *
+     * @param needed The bytes a record and its slot entry need.
+     * @return The page index, or -1 if no page is known to have enough free space.
+     */
+    public int findPage(int needed) {
+        int category = (needed + categoryWidth - 1) / categoryWidth; // Every page of this category fits the record
+        for (int c = category; c < CATEGORIES; c++) {
+            if (firstPage[c] != -1) {
+                return firstPage[c];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records the new free space of a page.
+     *
+     * @param pageIndex The index of the page in the directory.
+     * @param freeSpace The bytes now available in the page.
+     */
+    public void update(int pageIndex, int freeSpace) {
+        if (pageIndex >= categoryOfPage.length) {
+            categoryOfPage = Arrays.copyOf(categoryOfPage, Math.max(pageIndex + 1, categoryOfPage.length * 2));
+        }
+        int previous = categoryOfPage[pageIndex];
+        int category = categoryOf(freeSpace);
+        if (pagesByCategory[previous].get(pageIndex)) {
+            if (previous == category) {
+                return;
+            }
+            pagesByCategory[previous].clear(pageIndex);
+            if (firstPage[previous] == pageIndex) {
+                firstPage[previous] = pagesByCategory[previous].nextSetBit(pageIndex + 1);
+            }
+        }
+        categoryOfPage[pageIndex] = category;
+        pagesByCategory[category].set(pageIndex);
+        if (firstPage[category] == -1 || pageIndex < firstPage[category]) {
+            firstPage[category] = pageIndex;
+        }
+    }
+
+    // Category of a free space amount, rounded down so that every page of a category has at least its lower bound
+    private int categoryOf(int freeSpace) {
+        return Math.min(CATEGORIES - 1, Math.max(0, freeSpace) / categoryWidth);
+    }
+}
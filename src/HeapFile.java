@@ -1,18 +1,90 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import javax.management.ObjectName;
 
 /**
  * HeapFile manages a collection of records stored in pages, providing
  * functionality for insertion, search, deletion, and range-based queries.
+ * <p>
+ * Record operations may be called from many threads at once. Each page is guarded by a latch
+ * taken from a striped set of read-write locks: searches and range scans hold a page's read latch
+ * while they examine it, so they run in parallel, and inserts and deletes hold the write latch of
+ * the one page they modify. The page list, the free space and record counts and the free space map are guarded
+ * by a separate directory lock that is held only briefly, and the key index, if enabled, is guarded
+ * by its own monitor. A page latch is never held together with another page latch, and it is always
+ * taken before the directory lock or the index monitor, so operations cannot deadlock.
+ * {@link #insertAll(Iterable)} holds the directory lock for its whole duration, and
+ * {@link #close()} must not run concurrently with other operations.
+ * <p>
+ * With the write-ahead log enabled, inserts and deletes append the page and directory entry they
+ * changed to the log and return once it is forced, sharing forces with concurrent operations.
+ * Directory entries are then written in place only by checkpoints, which run in the background and
+ * on flush and close, and a log left behind by a crash is replayed when the file is opened.
+ * <p>
+ * With write-behind enabled, inserts and deletes neither write pages nor directory entries on the
+ * caller's thread: a background flusher writes the dirty pages and deferred entries in offset order
+ * once the dirty-page threshold or the maximum age is reached, and {@link #flush()} and
+ * {@link #close()} write everything still pending.
  */
-public class HeapFile {
-    // Static counters for disk I/O statistics
-    private static int diskReadCount = 0;
-    private static int diskWriteCount = 0;
+public class HeapFile implements AutoCloseable {
+    public static final int BULK_WRITE_PAGES = 64; // Pages written per sequential write during bulk insert
+    public static final String BTREE_INDEX_SUFFIX = ".idx"; // Appended to the data filename to name a B+-tree index file
+    public static final String HASH_INDEX_SUFFIX = ".hidx"; // Appended to the data filename to name a hash index file
+    public static final int LATCH_STRIPES = 64; // Number of page latches; page i uses latch i % LATCH_STRIPES
+    public static final int PARALLEL_SCAN_PAGES = 32; // Pages scanned by one task of a parallel range search
+    public static final String WAL_SUFFIX = ".wal"; // Appended to the data filename to name the write-ahead log
+    private static final long NOT_DELETED = -1; // Returned by removeByKey when no record has the key
+    // Static counters for disk I/O statistics, shared by every thread and every file
+    private static final AtomicInteger diskReadCount = new AtomicInteger();
+    private static final AtomicInteger diskWriteCount = new AtomicInteger();
     private PageDirectory pageDirectory; // Metadata for all pages
+    private final int pageSize; // Size of the file's pages in bytes, recorded in the page directory
     private String dataFilename; // Path to the data file
     private String directoryFilename; // Path to the page directory file
+    private BufferPool bufferPool; // Cache of recently used pages
+    private FileChannel dataChannel; // Open channel to the data file, shared by all page I/O
+    private FileChannel directoryChannel; // Open channel to the page directory file
+    private MappedPageReader mappedReader; // Memory-mapped read path, null unless enabled
+    private FreeSpaceMap freeSpaceMap; // Free space of each page, for finding an insert target
+    private RecordIndex keyIndex; // Key index, null unless enabled in the options
+    private final ReadWriteLock[] pageLatches; // Guard page contents and each page's key range and Bloom filter
+    private final ReadWriteLock directoryLock; // Guards the page list, free space and record counts and the free space map
+    private final LongAdder bloomFilterNegatives = new LongAdder(); // Pages skipped because their Bloom filter ruled the key out
+    private final LongAdder bloomFilterFalsePositives = new LongAdder(); // Pages read because their Bloom filter passed a key they did not hold
+    private WriteAheadLog wal; // Write-ahead log, null unless enabled in the options
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock(); // Shared by logged operations, exclusive for checkpoints
+    private final ConcurrentHashMap<Long, byte[]> dirtyEntries = new ConcurrentHashMap<>(); // Bytes of logged or deferred directory entries not yet written in place, by page offset
+    private PeriodicTask checkpointer; // Background checkpoints, null unless the log is enabled
+    private PeriodicTask flusher; // Background write-behind flusher, null unless enabled in the options
+    private int dirtyPageThreshold; // Dirty pages or deferred entries that trigger a background flush
+    private long maxDirtyAgeMillis; // Longest a change waits for a background flush
+    private long entriesWrittenAt; // System.nanoTime() of the flusher's last entry write, used only by the flusher
+    private final int readAheadPages; // Pages sequential scans read ahead at a time, 0 if disabled
+    private final IoStatistics statistics; // I/O counters and operation latencies of this file
+    private ObjectName mbeanName; // Name the statistics are registered under, null unless JMX is enabled
+    private boolean closed; // True once close() has been called
 
     /**
      * Constructs a HeapFile instance with specified filenames for data and directory.
@@ -22,57 +94,491 @@ public class HeapFile {
      * @throws IOException If an I/O error occurs while reading the directory.
      */
     public HeapFile(String dataFilename, String directoryFilename) throws IOException {
+        this(dataFilename, directoryFilename, new FileOptions());
+    }
+
+    /**
+     * Constructs a HeapFile instance with the given buffer pool and I/O options.
+     *
+     * @param dataFilename      Path to the data file.
+     * @param directoryFilename Path to the directory file.
+     * @param options           Tuning options such as the buffer pool size.
+     * @throws IOException If an I/O error occurs while reading the directory, or the options set a page size
+     *                     other than the one the file was created with.
+     */
+    public HeapFile(String dataFilename, String directoryFilename, FileOptions options) throws IOException {
         this.dataFilename = dataFilename;
         this.directoryFilename = directoryFilename;
-        this.pageDirectory = readDirectoryFromDisk();
+        this.pageLatches = new ReadWriteLock[LATCH_STRIPES];
+        for (int i = 0; i < LATCH_STRIPES; i++) {
+            pageLatches[i] = new ReentrantReadWriteLock();
+        }
+        this.directoryLock = new ReentrantReadWriteLock();
+        this.statistics = options.getStatistics() != null ? options.getStatistics() : new IoStatistics();
+        this.directoryChannel = FileChannel.open(Paths.get(directoryFilename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.dataChannel = FileChannel.open(Paths.get(dataFilename),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException | RuntimeException e) {
+            directoryChannel.close();
+            throw e;
+        }
+        try {
+            this.pageDirectory = readDirectoryFromDisk(options.getPageSize());
+            this.pageSize = pageDirectory.getPageSize(); // 기존 파일은 만들 때 정한 페이지 크기로 연다
+            if (options.isPageSizeSet() && options.getPageSize() != pageSize) {
+                // 명시한 페이지 크기가 기존 파일과 다르면 파일의 크기로 조용히 여는 대신 거부한다
+                throw new IOException("Page size mismatch: " + dataFilename + " was created with " + pageSize
+                        + "-byte pages, but " + options.getPageSize() + "-byte pages were requested");
+            }
+            // 로그 파일이 남아 있으면 지난번에 정상적으로 닫히지 않은 것이므로 로그를 재적용한다
+            boolean crashed = recoverFromLog(options);
+            this.freeSpaceMap = new FreeSpaceMap(pageDirectory.getPages(), pageSize);
+            if (options.isMemoryMapped()) {
+                this.mappedReader = new MappedPageReader(dataChannel, pageSize);
+            }
+            this.bufferPool = new BufferPool(new BufferPool.PageStore() {
+                @Override
+                public Page readPage(long offset) throws IOException {
+                    return readPageFromDisk(offset);
+                }
+
+                @Override
+                public Page[] readPages(long offset, int count) throws IOException {
+                    return readPagesFromDisk(offset, count);
+                }
+
+                @Override
+                public void writePage(long offset, Page page) throws IOException {
+                    if (wal != null) {
+                        wal.sync(); // 페이지가 자신의 로그 레코드보다 먼저 디스크에 기록되지 않게 한다
+                    }
+                    writePageToDisk(page, offset);
+                }
+            }, options.getBufferPoolFrames(), pageSize, statistics);
+            this.readAheadPages = options.getReadAheadPages();
+            this.keyIndex = openIndex(options);
+            // 인덱스가 정상적으로 닫히지 않았거나 데이터 파일과 레코드 수가 다르면 전체를 읽어 다시 만든다.
+            // 인덱스 노드는 강제 기록되지 않고 로그에도 남지 않으므로, 비정상 종료 뒤의 인덱스는 믿을 수 없다
+            if (keyIndex != null && (crashed || !keyIndex.wasClosedCleanly() || keyIndex.getEntryCount() != countRecords())) {
+                rebuildIndex();
+            }
+            if (wal != null && options.getCheckpointIntervalMillis() > 0) {
+                this.checkpointer = new PeriodicTask("checkpoint " + dataFilename, options.getCheckpointIntervalMillis(), () -> {
+                    if (wal.size() > 0) {
+                        checkpoint();
+                    }
+                });
+            }
+            if (options.isWriteBehind()) {
+                this.dirtyPageThreshold = options.getDirtyPageThreshold();
+                this.maxDirtyAgeMillis = options.getMaxDirtyAgeMillis();
+                this.entriesWrittenAt = System.nanoTime();
+                bufferPool.setWriteBehind(true);
+                // 최대 대기 시간보다 자주 확인해야 오래된 변경이 제때 기록된다
+                this.flusher = new PeriodicTask("flusher " + dataFilename, Math.max(1, maxDirtyAgeMillis / 4), this::writeBehind);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAfterFailedOpen(e); // 여기까지 연 파일을 닫아야 다시 열거나 지울 수 있다
+            throw e;
+        }
+        if (options.isJmxEnabled()) {
+            try {
+                this.mbeanName = statistics.registerMBean("HeapFile", dataFilename);
+            } catch (IOException e) {
+                close(); // 같은 파일이 이미 열려 있으면 등록에 실패하므로 연 자원을 모두 닫는다
+                throw e;
+            }
+        }
     }
 
-    // Methods to access disk I/O statistics
+    /**
+     * Returns the number of disk reads issued by all heap files since the last reset.
+     *
+     * @return The read request count.
+     * @deprecated The count mixes every open file; use {@link #getStatistics()} instead.
+     */
+    @Deprecated
     public static int getDiskReadCount() {
-        return diskReadCount;
+        return diskReadCount.get();
     }
 
+    /**
+     * Returns the number of disk writes issued by all heap files since the last reset.
+     *
+     * @return The write request count.
+     * @deprecated The count mixes every open file; use {@link #getStatistics()} instead.
+     */
+    @Deprecated
     public static int getDiskWriteCount() {
-        return diskWriteCount;
+        return diskWriteCount.get();
     }
 
+    /**
+     * Resets the counters shared by all heap files.
+     *
+     * @deprecated Compare two {@link #getStatistics()} snapshots instead.
+     */
+    @Deprecated
     public static void resetDiskIOCounters() {
-        diskReadCount = 0;
-        diskWriteCount = 0;
+        diskReadCount.set(0);
+        diskWriteCount.set(0);
+    }
+
+    /**
+     * Returns the live I/O counters and operation latencies of this file. Reads, writes and cache
+     * accesses are counted as they happen; insert, bulk insert, search, delete, range search and flush
+     * calls are timed from entry to return, including waits for locks and commits. Cursors are not timed.
+     *
+     * @return The statistics, shared with other files if passed in through the options.
+     */
+    public IoStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the buffer pool caching this file's pages.
+     *
+     * @return The buffer pool.
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Returns the measured false positive rate of the page Bloom filters: among pages that did not
+     * hold a looked-up key, the fraction whose filter still let the lookup read them.
+     *
+     * @return The observed false positive rate, or 0 if no lookup has reached a filter yet.
+     */
+    public double getBloomFilterFalsePositiveRate() {
+        long falsePositives = bloomFilterFalsePositives.sum();
+        long negatives = bloomFilterNegatives.sum() + falsePositives;
+        return negatives == 0 ? 0.0 : (double) falsePositives / negatives;
+    }
+
+    /**
+     * Estimates the false positive rate of the page Bloom filters from how full they are,
+     * averaged over the pages that hold records. Filters are read without their page latches,
+     * so the estimate is approximate while writers are running.
+     *
+     * @return The estimated false positive rate, between 0 and 1.
+     */
+    public double estimateBloomFilterFalsePositiveRate() {
+        double sum = 0;
+        int pages = 0;
+        for (PageInfo pageInfo : snapshotPages()) {
+            if (pageInfo.hasKeys()) {
+                sum += pageInfo.estimatedFalsePositiveRate();
+                pages++;
+            }
+        }
+        return pages == 0 ? 0.0 : sum / pages;
+    }
+
+    /**
+     * Returns the key index maintained alongside this file.
+     *
+     * @return The index, or null if no index is enabled.
+     */
+    public RecordIndex getKeyIndex() {
+        return keyIndex;
+    }
+
+    /**
+     * Returns the write-ahead log of this file.
+     *
+     * @return The log, or null if the write-ahead log is not enabled.
+     */
+    public WriteAheadLog getWriteAheadLog() {
+        return wal;
+    }
+
+    /**
+     * Writes all modified pages held in the buffer pool, and the index if enabled, to disk.
+     * With the write-ahead log enabled, this is a checkpoint: logged directory entries are written
+     * in place, the data and directory files are forced, and the log is truncated.
+     * With write-behind enabled, this is a barrier: every change made before the call is written
+     * when it returns, including pages a background flush is writing at the time.
+     *
+     * @throws IOException If an I/O error occurs during the operation, or a background checkpoint
+     *                     or flush failed.
+     */
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        if (checkpointer != null) {
+            checkpointer.checkFailure();
+        }
+        if (flusher != null) {
+            flusher.checkFailure();
+        }
+        checkpoint();
+        statistics.recordLatency(IoStatistics.Operation.FLUSH, start);
+    }
+
+    // Helper method to write every change in place; with the log enabled, also forces the files and truncates the log
+    private void checkpoint() throws IOException {
+        checkpointLock.writeLock().lock(); // 진행 중인 기록 작업이 끝나기를 기다리고 새 작업을 막는다
+        try {
+            bufferPool.flushAll();
+            writeDirtyEntries();
+            if (keyIndex != null) {
+                synchronized (keyIndex) {
+                    keyIndex.flush();
+                }
+            }
+            if (wal != null) {
+                dataChannel.force(false);
+                directoryChannel.force(false);
+                wal.truncate(); // 로그의 모든 변경이 제자리에 기록되었으므로 버린다
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes modified pages and closes the data file. Calling close more than once has no effect.
+     *
+     * @throws IOException If an I/O error occurs while flushing or closing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (checkpointer != null) {
+                checkpointer.close(); // 진행 중인 백그라운드 체크포인트가 끝나기를 기다린다
+            }
+            if (flusher != null) {
+                flusher.close();
+            }
+            checkpoint();
+            if (keyIndex != null) {
+                keyIndex.close();
+            }
+            if (wal != null) {
+                // 정상적으로 닫혔다는 표시로 로그 파일을 지운다
+                wal.close();
+                Files.delete(Paths.get(dataFilename + WAL_SUFFIX));
+            }
+        } finally {
+            mappedReader = null;
+            dataChannel.close();
+            directoryChannel.close();
+            if (mbeanName != null) {
+                IoStatistics.unregisterMBean(mbeanName);
+            }
+        }
+    }
+
+    // Helper method to release what the constructor opened before it failed; later failures are attached to the first
+    private void closeAfterFailedOpen(Exception failure) {
+        for (AutoCloseable resource : new AutoCloseable[]{checkpointer, flusher, keyIndex, wal, dataChannel, directoryChannel}) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                failure.addSuppressed(e);
+            }
+        }
+        mappedReader = null;
     }
 
     /**
      * Inserts a record into the heap file.
-     * Allocates a new page if no free slots are available.
+     * Allocates a new page if no page has enough free space for the record.
+     * With the write-ahead log enabled, returns once the insert is durable.
      *
      * @param record The record to insert.
      * @throws IOException If an I/O error occurs during the operation.
      */
     public void insertRecord(Record record) throws IOException {
-        // 기존 페이지들을 순차적으로 확인하여 빈 슬롯이 있는지 확인
-        for (PageInfo pageInfo : pageDirectory.getPages()) {
-            if (pageInfo.getFreeSlots() > 0) {
-                Page page = readPageFromDisk(pageInfo.getOffset());
-                // 빈 슬롯을 찾아 레코드 삽입
-                for (int i = 0; i < Page.SLOT_COUNT; i++) {
-                    if (!page.isSlotUsed(i)) {
-                        page.insertRecord(i, record);
-                        pageInfo.setFreeSlots(pageInfo.getFreeSlots() - 1);
-                        writePageToDisk(page, pageInfo); // 변경된 페이지 디스크에 기록
-                        writeDirectoryToDisk(); // 페이지 디렉토리 갱신
-                        return;
+        long start = System.nanoTime();
+        long lsn;
+        checkpointLock.readLock().lock();
+        try {
+            lsn = addRecord(record);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        commit(lsn); // 래치를 모두 푼 뒤에 기다려야 다른 스레드의 커밋과 한 번의 force로 묶인다
+        statistics.recordLatency(IoStatistics.Operation.INSERT, start);
+    }
+
+    // Helper method to insert a record into a page with enough free space, returning the LSN to commit
+    private long addRecord(Record record) throws IOException {
+        // 디렉토리 잠금 안에서 레코드와 슬롯 항목이 들어갈 공간을 예약하므로, 페이지 래치를 잡은 뒤에는 공간이 반드시 있다
+        int needed = record.getStoredSize() + Page.SLOT_ENTRY_SIZE;
+        PageInfo pageInfo = reserveSpace(needed);
+        long offset = pageInfo.getOffset();
+        Lock latch = latchFor(offset).writeLock();
+        latch.lock();
+        try {
+            Page page = bufferPool.fetchPage(offset);
+            try {
+                // 슬롯 디렉토리에서 빈 슬롯을 찾아 레코드 삽입
+                int slot = page.findFreeSlot();
+                if (slot == -1) {
+                    throw new IllegalStateException("Page at offset " + offset + " has no free slot but space was reserved");
+                }
+                int freeBefore = page.getFreeSpace();
+                page.insertRecord(slot, record);
+                // 빈 슬롯 항목을 재사용하면 예약한 것보다 적게 쓰므로 남은 공간을 돌려준다
+                settleSpace(pageInfo, needed - (freeBefore - page.getFreeSpace()), 1);
+                // 삽입된 키를 페이지의 키 범위와 블룸 필터에 반영한다
+                pageInfo.addKey(record.getKey());
+                if (keyIndex != null) {
+                    synchronized (keyIndex) {
+                        keyIndex.insert(record.getKey(), RecordIndex.recordId(offset, slot));
                     }
                 }
+                return recordPageChange(pageInfo, page); // 변경된 페이지의 디렉토리 항목만 갱신
+            } finally {
+                bufferPool.unpinPage(offset, true); // 변경된 페이지는 dirty로 표시
+            }
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    // Helper method to reserve space for a record in the first page that has enough, allocating a new page if none has
+    private PageInfo reserveSpace(int needed) throws IOException {
+        directoryLock.writeLock().lock();
+        try {
+            // 빈 공간 맵에서 공간이 충분한 첫 페이지를 바로 찾는다
+            int pageIndex = freeSpaceMap.findPage(needed);
+            PageInfo pageInfo;
+            if (pageIndex != -1) {
+                pageInfo = pageDirectory.getPages().get(pageIndex);
+                pageInfo.setFreeSpace(pageInfo.getFreeSpace() - needed);
+            } else {
+                // 새로운 페이지는 아직 디스크에 없을 수 있으므로 디렉토리 크기로 오프셋 계산
+                pageIndex = pageDirectory.getPages().size();
+                long offset = (long) pageIndex * pageSize;
+                pageInfo = new PageInfo(offset, Page.usableSpace(pageSize) - needed, pageDirectory.getBloomFilterBits());
+                // 잠금을 풀기 전에 버퍼 풀에 올려 두어, 다른 스레드가 아직 없는 페이지를 디스크에서 읽지 않게 한다
+                Page page = new Page(pageSize);
+                bufferPool.newPage(offset, page);
+                bufferPool.unpinPage(offset, true);
+                pageDirectory.addPage(pageInfo);
+                if (wal != null) {
+                    // 새 페이지의 항목을 먼저 로그에 남겨, 복구한 디렉토리에 빈 항목이 생기지 않게 한다
+                    recordPageChange(pageInfo, page);
+                }
+            }
+            freeSpaceMap.update(pageIndex, pageInfo.getFreeSpace());
+            return pageInfo;
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+    }
+
+    // Helper method to return unused or freed bytes of a page to its free space and the free space map,
+    // and to adjust its record count
+    private void settleSpace(PageInfo pageInfo, int freedBytes, int recordDelta) {
+        directoryLock.writeLock().lock();
+        try {
+            pageInfo.setFreeSpace(pageInfo.getFreeSpace() + freedBytes); // 빈 공간 증가
+            pageInfo.setRecordCount(pageInfo.getRecordCount() + recordDelta);
+            freeSpaceMap.update((int) (pageInfo.getOffset() / pageSize), pageInfo.getFreeSpace());
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts many records at once, as for an initial load or an import.
+     * Records are packed into new pages in memory and appended to the data file in large
+     * sequential writes, and the directory entries of the new pages are written once at the end.
+     * Free space in existing pages is not reused. The directory lock is held until the load
+     * finishes, so concurrent inserts wait and concurrent searches do not see the new pages yet.
+     * With the write-ahead log enabled, the new pages are forced to the data file and only their
+     * directory entries are logged, so the records become visible after a crash only as a whole.
+     *
+     * @param records The records to insert.
+     * @throws IOException If an I/O error occurs during the operation.
+     */
+    public void insertAll(Iterable<Record> records) throws IOException {
+        long start = System.nanoTime();
+        long lsn;
+        checkpointLock.readLock().lock();
+        try {
+            directoryLock.writeLock().lock();
+            try {
+                lsn = appendPages(records);
+            } finally {
+                directoryLock.writeLock().unlock();
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        commit(lsn);
+        statistics.recordLatency(IoStatistics.Operation.BULK_INSERT, start);
+    }
+
+    // Helper method to pack records into new pages appended to the file, returning the LSN to commit.
+    // The caller holds the directory lock.
+    private long appendPages(Iterable<Record> records) throws IOException {
+        List<PageInfo> pages = pageDirectory.getPages();
+        int firstNewPage = pages.size();
+        ByteBuffer chunk = ByteBuffer.allocate(BULK_WRITE_PAGES * pageSize);
+        long chunkOffset = (long) firstNewPage * pageSize;
+        Page page = new Page(pageSize);
+        // 페이지는 청크의 현재 위치에 놓이므로 기록 전에 오프셋을 알 수 있다
+        PageInfo pageInfo = new PageInfo(chunkOffset, Page.usableSpace(pageSize), pageDirectory.getBloomFilterBits());
+
+        for (Record record : records) {
+            if (!page.hasRoomFor(record)) {
+                // 레코드가 들어가지 않는 페이지는 청크에 모아 두었다가 한 번에 기록
+                chunk.put(page.toByteBuffer());
+                pageInfo.setFreeSpace(page.getFreeSpace());
+                pageInfo.setRecordCount(page.getNumberOfRecords());
+                pages.add(pageInfo);
+                freeSpaceMap.update(pages.size() - 1, page.getFreeSpace()); // 짧은 레코드는 남은 공간에 들어갈 수 있다
+                if (!chunk.hasRemaining()) {
+                    writeChunkToDisk(chunk, chunkOffset);
+                    chunkOffset += chunk.capacity();
+                }
+                page = new Page(pageSize);
+                pageInfo = new PageInfo(chunkOffset + chunk.position(), Page.usableSpace(pageSize), pageDirectory.getBloomFilterBits());
+            }
+            int slot = page.findFreeSlot();
+            if (keyIndex != null) {
+                synchronized (keyIndex) {
+                    keyIndex.insert(record.getKey(), RecordIndex.recordId(pageInfo.getOffset(), slot));
+                }
             }
+            page.insertRecord(slot, record);
+            pageInfo.addKey(record.getKey());
+        }
+        if (page.getNumberOfRecords() > 0) {
+            // 마지막 페이지는 빈 공간이 남아 있으므로 빈 공간 맵에도 등록
+            chunk.put(page.toByteBuffer());
+            pageInfo.setFreeSpace(page.getFreeSpace());
+            pageInfo.setRecordCount(page.getNumberOfRecords());
+            pages.add(pageInfo);
+            freeSpaceMap.update(pages.size() - 1, page.getFreeSpace());
+        }
+        if (chunk.position() > 0) {
+            writeChunkToDisk(chunk, chunkOffset);
         }
-        // 빈 슬롯이 없다면 새로운 페이지를 생성하여 삽입
-        Page newPage = new Page();
-        newPage.insertRecord(0, record);
-        long offset = new File(dataFilename).length(); // 새로운 페이지의 오프셋
-        PageInfo newPageInfo = new PageInfo(offset, Page.SLOT_COUNT - 1);
-        pageDirectory.addPage(newPageInfo);
-        writePageToDisk(newPage, newPageInfo);
-        writeDirectoryToDisk();
+        if (wal == null) {
+            writeDirectoryEntries(pages.subList(firstNewPage, pages.size())); // 디렉토리는 마지막에 한 번만 기록
+            return 0;
+        }
+        // 새 페이지는 디렉토리에 오르기 전까지 보이지 않으므로, 데이터를 먼저 force하고 항목만 로그에 남긴다
+        dataChannel.force(false);
+        WriteAheadLog.Operation operation = new WriteAheadLog.Operation(); // 복구는 새 페이지를 모두 보이게 하거나 하나도 보이지 않게 한다
+        for (PageInfo newPage : pages.subList(firstNewPage, pages.size())) {
+            addDirectoryEntry(operation, newPage);
+        }
+        return wal.append(operation);
     }
 
     /**
@@ -83,14 +589,64 @@ public class HeapFile {
      * @throws IOException If an I/O error occurs during the operation.
      */
     public Record searchRecord(int key) throws IOException {
+        long start = System.nanoTime();
+        Record record = findRecord(key);
+        statistics.recordLatency(IoStatistics.Operation.SEARCH, start);
+        return record;
+    }
+
+    // Helper method to find the record with the key through the index or by scanning the pages
+    private Record findRecord(int key) throws IOException {
+        if (keyIndex != null) {
+            // 인덱스가 있으면 레코드가 있는 페이지 하나만 읽는다
+            long previous = RecordIndex.NOT_FOUND;
+            while (true) {
+                long recordId = searchIndex(key);
+                if (recordId == RecordIndex.NOT_FOUND || recordId == previous) {
+                    return null;
+                }
+                long offset = RecordIndex.pageOffset(recordId, pageSize);
+                int slot = RecordIndex.slot(recordId, pageSize);
+                Lock latch = latchFor(offset).readLock();
+                latch.lock();
+                try {
+                    Page page = bufferPool.fetchPage(offset);
+                    try {
+                        // 인덱스를 조회한 뒤 래치를 잡기 전에 레코드가 지워졌을 수 있으므로 키를 다시 확인한다
+                        if (page.isSlotUsed(slot) && page.getKey(slot) == key) {
+                            return page.getRecord(slot);
+                        }
+                    } finally {
+                        bufferPool.unpinPage(offset, false);
+                    }
+                } finally {
+                    latch.unlock();
+                }
+                previous = recordId; // 같은 위치가 다시 나오면 키가 사라진 것이다
+            }
+        }
         // 페이지 디렉토리 내 모든 페이지를 순차적으로 검색
-        for (PageInfo pageInfo : pageDirectory.getPages()) {
-            Page page = readPageFromDisk(pageInfo.getOffset());
-            // 각 페이지에서 레코드의 키가 일치하는지 확인
-            for (int i = 0; i < Page.SLOT_COUNT; i++) {
-                if (page.isSlotUsed(i) && page.getRecord(i).getKey() == key) {
-                    return page.getRecord(i); // 일치하는 레코드를 찾으면 반환
+        for (PageInfo pageInfo : snapshotPages()) {
+            Lock latch = latchFor(pageInfo.getOffset()).readLock();
+            latch.lock();
+            try {
+                if (!mightHoldKey(pageInfo, key)) {
+                    continue; // 키 범위 밖이거나 블룸 필터가 배제한 페이지는 읽지 않는다
                 }
+                Page page = bufferPool.fetchPage(pageInfo.getOffset());
+                try {
+                    // 각 페이지에서 레코드의 키가 일치하는지 확인
+                    for (int i = 0; i < page.getSlotCount(); i++) {
+                        if (page.isSlotUsed(i) && page.getKey(i) == key) {
+                            return page.getRecord(i); // 일치하는 레코드를 찾으면 반환
+                        }
+                    }
+                } finally {
+                    bufferPool.unpinPage(pageInfo.getOffset(), false);
+                }
+                bloomFilterFalsePositives.increment(); // 필터를 통과했지만 키가 없었던 페이지
+            } finally {
+                latch.unlock();
             }
         }
         return null; // 레코드가 없으면 null 반환
@@ -98,27 +654,103 @@ public class HeapFile {
 
     /**
      * Deletes a record by its key.
+     * With the write-ahead log enabled, returns once the delete is durable.
      *
      * @param key The key of the record to delete.
      * @return True if the record was successfully deleted, false otherwise.
      * @throws IOException If an I/O error occurs during the operation.
      */
     public boolean deleteRecord(int key) throws IOException {
+        long start = System.nanoTime();
+        long lsn;
+        checkpointLock.readLock().lock();
+        try {
+            lsn = removeByKey(key);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        if (lsn != NOT_DELETED) {
+            commit(lsn);
+        }
+        statistics.recordLatency(IoStatistics.Operation.DELETE, start);
+        return lsn != NOT_DELETED;
+    }
+
+    // Helper method to delete one record with the key, returning the LSN to commit or NOT_DELETED
+    private long removeByKey(int key) throws IOException {
+        if (keyIndex != null) {
+            // 인덱스에서 찾은 슬롯만 지운다
+            long previous = RecordIndex.NOT_FOUND;
+            while (true) {
+                long recordId = searchIndex(key);
+                if (recordId == RecordIndex.NOT_FOUND || recordId == previous) {
+                    return NOT_DELETED;
+                }
+                PageInfo pageInfo = pageInfoAt((int) (RecordIndex.pageOffset(recordId, pageSize) / pageSize));
+                int slot = RecordIndex.slot(recordId, pageSize);
+                Lock latch = latchFor(pageInfo.getOffset()).writeLock();
+                latch.lock();
+                try {
+                    Page page = bufferPool.fetchPage(pageInfo.getOffset());
+                    boolean deleted = false;
+                    try {
+                        // 래치를 잡기 전에 다른 스레드가 지웠을 수 있으므로 키를 다시 확인한다
+                        if (page.isSlotUsed(slot) && page.getKey(slot) == key) {
+                            deleted = true;
+                            return removeRecord(pageInfo, page, slot);
+                        }
+                    } finally {
+                        bufferPool.unpinPage(pageInfo.getOffset(), deleted);
+                    }
+                } finally {
+                    latch.unlock();
+                }
+                previous = recordId;
+            }
+        }
         // 페이지 디렉토리 내 모든 페이지를 순차적으로 검색
-        for (PageInfo pageInfo : pageDirectory.getPages()) {
-            Page page = readPageFromDisk(pageInfo.getOffset());
-            // 각 페이지에서 레코드의 키가 일치하는지 확인
-            for (int i = 0; i < Page.SLOT_COUNT; i++) {
-                if (page.isSlotUsed(i) && page.getRecord(i).getKey() == key) {
-                    page.deleteRecord(i); // 레코드 삭제
-                    pageInfo.setFreeSlots(pageInfo.getFreeSlots() + 1); // 빈 슬롯 수 증가
-                    writePageToDisk(page, pageInfo); // 변경된 페이지 디스크에 기록
-                    writeDirectoryToDisk(); // 페이지 디렉토리 갱신
-                    return true; // 삭제 성공
+        for (PageInfo pageInfo : snapshotPages()) {
+            Lock latch = latchFor(pageInfo.getOffset()).writeLock();
+            latch.lock();
+            try {
+                if (!mightHoldKey(pageInfo, key)) {
+                    continue; // 키 범위 밖이거나 블룸 필터가 배제한 페이지는 읽지 않는다
+                }
+                Page page = bufferPool.fetchPage(pageInfo.getOffset());
+                boolean deleted = false;
+                try {
+                    // 각 페이지에서 레코드의 키가 일치하는지 확인
+                    for (int i = 0; i < page.getSlotCount(); i++) {
+                        if (page.isSlotUsed(i) && page.getKey(i) == key) {
+                            deleted = true;
+                            return removeRecord(pageInfo, page, i); // 레코드 삭제 성공
+                        }
+                    }
+                } finally {
+                    bufferPool.unpinPage(pageInfo.getOffset(), deleted); // 변경된 페이지는 dirty로 표시
                 }
+                bloomFilterFalsePositives.increment(); // 필터를 통과했지만 키가 없었던 페이지
+            } finally {
+                latch.unlock();
+            }
+        }
+        return NOT_DELETED; // 레코드가 없으면 삭제 실패
+    }
+
+    // Deletes the record in a slot of a write-latched page, updates the page's metadata and the index,
+    // and records the change, returning the LSN to commit
+    private long removeRecord(PageInfo pageInfo, Page page, int slot) throws IOException {
+        int key = page.getKey(slot);
+        int freeBefore = page.getFreeSpace();
+        page.deleteRecord(slot);
+        rebuildPageKeys(pageInfo, page); // 블룸 필터는 키를 지울 수 없으므로 남은 키로 다시 만든다
+        if (keyIndex != null) {
+            synchronized (keyIndex) {
+                keyIndex.delete(key, RecordIndex.recordId(pageInfo.getOffset(), slot));
             }
         }
-        return false; // 레코드가 없으면 삭제 실패
+        settleSpace(pageInfo, page.getFreeSpace() - freeBefore, -1); // 빈 공간 맵 갱신
+        return recordPageChange(pageInfo, page); // 변경된 페이지의 디렉토리 항목만 갱신
     }
 
     /**
@@ -130,23 +762,257 @@ public class HeapFile {
      * @throws IOException If an I/O error occurs during the operation.
      */
     public List<Record> rangeSearch(int lowerBound, int upperBound) throws IOException {
-        List<Record> result = new ArrayList<>();
-        // 페이지 디렉토리 내 모든 페이지를 순차적으로 검색
-        for (PageInfo pageInfo : pageDirectory.getPages()) {
-            Page page = readPageFromDisk(pageInfo.getOffset());
-            // 각 페이지에서 범위 내의 레코드가 있는지 확인
-            for (int i = 0; i < Page.SLOT_COUNT; i++) {
-                if (page.isSlotUsed(i)) {
-                    Record record = page.getRecord(i);
-                    if (record.getKey() >= lowerBound && record.getKey() <= upperBound) {
-                        result.add(record); // 범위 내의 레코드를 결과 목록에 추가
+        long start = System.nanoTime();
+        List<Record> result;
+        try (RecordCursor cursor = rangeCursor(lowerBound, upperBound)) {
+            result = cursor.toList();
+        }
+        statistics.recordLatency(IoStatistics.Operation.RANGE_SEARCH, start);
+        return result;
+    }
+
+    /**
+     * Opens a cursor over the records with keys within the specified bounds.
+     * Pages are read one at a time as the cursor advances, so the first records are available
+     * before the scan finishes and a cursor that is closed early reads no further pages.
+     * With an ordered index, the matching record IDs are collected from the index up front and
+     * their pages are read in file order; otherwise the cursor walks the page directory and
+     * skips pages whose key range does not overlap the bounds.
+     *
+     * @param lowerBound The lower bound of the range (inclusive).
+     * @param upperBound The upper bound of the range (inclusive).
+     * @return A cursor over the matching records.
+     * @throws IOException If an I/O error occurs while reading the index.
+     */
+    public RecordCursor rangeCursor(int lowerBound, int upperBound) throws IOException {
+        if (keyIndex == null || !keyIndex.isOrdered()) {
+            return pageCursor(lowerBound, upperBound);
+        }
+        // 레코드 ID를 정렬하면 페이지 순서가 되므로, 각 페이지를 한 번씩 순서대로 읽는다
+        long[] recordIds;
+        synchronized (keyIndex) {
+            recordIds = collectRecordIds(keyIndex.rangeScan(lowerBound, upperBound));
+        }
+        Arrays.sort(recordIds);
+        long endOffset = directoryEndOffset();
+        return new RecordCursor() {
+            private final ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages);
+            private int next = 0; // Next record ID to read
+
+            @Override
+            protected boolean readNextPage(List<Record> records) throws IOException {
+                if (next == recordIds.length) {
+                    return false;
+                }
+                long offset = RecordIndex.pageOffset(recordIds[next], pageSize);
+                Lock latch = latchFor(offset).readLock();
+                latch.lock();
+                try {
+                    readAhead.access(offset, endOffset);
+                    Page page = bufferPool.fetchPage(offset);
+                    try {
+                        for (; next < recordIds.length && RecordIndex.pageOffset(recordIds[next], pageSize) == offset; next++) {
+                            // 인덱스를 읽은 뒤 지워지거나 바뀐 슬롯은 건너뛴다
+                            int slot = RecordIndex.slot(recordIds[next], pageSize);
+                            if (page.isSlotUsed(slot)) {
+                                int recordKey = page.getKey(slot);
+                                if (recordKey >= lowerBound && recordKey <= upperBound) {
+                                    records.add(page.getRecord(slot));
+                                }
+                            }
+                        }
+                    } finally {
+                        bufferPool.unpinPage(offset, false);
                     }
+                } finally {
+                    latch.unlock();
+                }
+                return true;
+            }
+        };
+    }
+
+    // Helper method to open a cursor that walks the page directory, reading pages whose key range overlaps the bounds.
+    // Pages are read ahead while the pages read are consecutive; pages added after the cursor opened are not.
+    private RecordCursor pageCursor(int lowerBound, int upperBound) {
+        long endOffset = directoryEndOffset();
+        return new RecordCursor() {
+            private final ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages);
+            private int pageIndex = 0; // Next page to read
+
+            @Override
+            protected boolean readNextPage(List<Record> records) throws IOException {
+                // 스캔 도중 추가된 페이지도 디렉토리에서 차례로 읽는다
+                PageInfo pageInfo = pageInfoAt(pageIndex);
+                if (pageInfo == null) {
+                    return false;
+                }
+                pageIndex++;
+                scanPage(pageInfo, lowerBound, upperBound, records, readAhead, endOffset);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Performs a range search by scanning the pages on a fork/join pool.
+     * The page list is split into chunks of {@link #PARALLEL_SCAN_PAGES} pages that are scanned as
+     * separate tasks, each holding one page's read latch at a time, so the search runs alongside
+     * other readers and writers. The key index is not used: the parallel scan is meant for ranges
+     * that cover a large part of the file. The pool's parallelism should stay below the number of
+     * buffer pool frames, since every worker pins one page while it scans.
+     *
+     * @param lowerBound The lower bound of the range (inclusive).
+     * @param upperBound The upper bound of the range (inclusive).
+     * @param ordered    True to return records in page and slot order, as {@link #rangeSearch(int, int)}
+     *                   does without an index; false to return them in any order, which lets each worker
+     *                   collect into one buffer instead of keeping a result list per chunk.
+     * @param pool       The pool that runs the scan tasks.
+     * @return A list of matching records.
+     * @throws IOException If an I/O error occurs during the operation.
+     */
+    public List<Record> parallelRangeSearch(int lowerBound, int upperBound, boolean ordered, ForkJoinPool pool)
+            throws IOException {
+        long start = System.nanoTime();
+        PageInfo[] pages = snapshotPages();
+        int chunkCount = (pages.length + PARALLEL_SCAN_PAGES - 1) / PARALLEL_SCAN_PAGES;
+        List<Record> result = new ArrayList<>();
+        try {
+            if (ordered) {
+                // 청크마다 결과를 따로 모았다가 청크 순서대로 이어 붙인다
+                AtomicReferenceArray<List<Record>> chunkResults = new AtomicReferenceArray<>(chunkCount);
+                pool.invoke(new RangeScanTask(pages, 0, chunkCount, lowerBound, upperBound,
+                        chunk -> newChunkResult(chunkResults, chunk)));
+                for (int i = 0; i < chunkCount; i++) {
+                    result.addAll(chunkResults.get(i));
+                }
+            } else {
+                // 순서가 필요 없으면 작업 스레드마다 버퍼 하나에 모으고 마지막에 한 번만 합친다
+                ConcurrentHashMap<Thread, List<Record>> workerResults = new ConcurrentHashMap<>();
+                pool.invoke(new RangeScanTask(pages, 0, chunkCount, lowerBound, upperBound,
+                        chunk -> workerResults.computeIfAbsent(Thread.currentThread(), thread -> new ArrayList<>())));
+                for (List<Record> records : workerResults.values()) {
+                    result.addAll(records);
                 }
             }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        statistics.recordLatency(IoStatistics.Operation.RANGE_SEARCH, start);
         return result;
     }
 
+    /**
+     * Performs a parallel range search on the common fork/join pool.
+     *
+     * @param lowerBound The lower bound of the range (inclusive).
+     * @param upperBound The upper bound of the range (inclusive).
+     * @param ordered    True to return records in page and slot order, false to return them in any order.
+     * @return A list of matching records.
+     * @throws IOException If an I/O error occurs during the operation.
+     * @see #parallelRangeSearch(int, int, boolean, ForkJoinPool)
+     */
+    public List<Record> parallelRangeSearch(int lowerBound, int upperBound, boolean ordered) throws IOException {
+        return parallelRangeSearch(lowerBound, upperBound, ordered, ForkJoinPool.commonPool());
+    }
+
+    // Helper method to create the result list of one chunk of an ordered parallel scan
+    private static List<Record> newChunkResult(AtomicReferenceArray<List<Record>> chunkResults, int chunk) {
+        List<Record> records = new ArrayList<>();
+        chunkResults.set(chunk, records);
+        return records;
+    }
+
+    /**
+     * Scans a range of page chunks, splitting it in half until a single chunk remains.
+     */
+    private class RangeScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PageInfo[] pages;  // Snapshot of the page list taken when the search started
+        private final int fromChunk;     // First chunk to scan (inclusive)
+        private final int toChunk;       // Last chunk to scan (exclusive)
+        private final int lowerBound;
+        private final int upperBound;
+        private final IntFunction<List<Record>> sink; // Returns the list the records of a chunk are added to
+
+        RangeScanTask(PageInfo[] pages, int fromChunk, int toChunk, int lowerBound, int upperBound,
+                      IntFunction<List<Record>> sink) {
+            this.pages = pages;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new RangeScanTask(pages, fromChunk, middle, lowerBound, upperBound, sink),
+                        new RangeScanTask(pages, middle, toChunk, lowerBound, upperBound, sink));
+                return;
+            }
+            if (fromChunk == toChunk) {
+                return; // 페이지가 하나도 없는 파일
+            }
+            List<Record> result = sink.apply(fromChunk);
+            int end = Math.min(pages.length, (fromChunk + 1) * PARALLEL_SCAN_PAGES);
+            ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages); // 각 청크는 연속된 페이지를 순서대로 읽는다
+            long endOffset = (long) end * pageSize;
+            try {
+                for (int i = fromChunk * PARALLEL_SCAN_PAGES; i < end; i++) {
+                    scanPage(pages[i], lowerBound, upperBound, result, readAhead, endOffset);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Helper method to add the records of one page whose keys fall in the range, under the page's read latch.
+    // The read-ahead sees only the pages that are actually read, up to the given end offset.
+    private void scanPage(PageInfo pageInfo, int lowerBound, int upperBound, List<Record> result,
+                          ReadAhead readAhead, long endOffset) throws IOException {
+        Lock latch = latchFor(pageInfo.getOffset()).readLock();
+        latch.lock();
+        try {
+            if (!pageInfo.overlaps(lowerBound, upperBound)) {
+                return; // 키 범위가 겹치지 않는 페이지는 읽지 않는다
+            }
+            readAhead.access(pageInfo.getOffset(), endOffset);
+            Page page = bufferPool.fetchPage(pageInfo.getOffset());
+            try {
+                // 각 페이지에서 범위 내의 레코드가 있는지 확인
+                for (int i = 0; i < page.getSlotCount(); i++) {
+                    if (page.isSlotUsed(i)) {
+                        // 키만 먼저 비교하고, 범위 안에 있을 때만 레코드를 만든다
+                        int recordKey = page.getKey(i);
+                        if (recordKey >= lowerBound && recordKey <= upperBound) {
+                            result.add(page.getRecord(i)); // 범위 내의 레코드를 결과 목록에 추가
+                        }
+                    }
+                }
+            } finally {
+                bufferPool.unpinPage(pageInfo.getOffset(), false);
+            }
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * Returns a cursor over every record in the file, in page and slot order.
+     * Pages are read one at a time as the cursor advances, so the whole file is never held in memory.
+     * I/O errors raised while advancing are rethrown as UncheckedIOException.
+     *
+     * @return A cursor over all records.
+     */
+    public RecordCursor scan() {
+        return pageCursor(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
     /**
      * Prints all pages and their records in the heap file.
      *
@@ -154,55 +1020,436 @@ public class HeapFile {
      */
     public void printAllPages() throws IOException {
         System.out.println("\nHeapFile Pages:");
+        PageInfo[] pages = snapshotPages();
+        ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages);
+        for (int pageIndex = 0; pageIndex < pages.length; pageIndex++) {
+            PageInfo pageInfo = pages[pageIndex];
+            Lock latch = latchFor(pageInfo.getOffset()).readLock();
+            latch.lock();
+            try {
+                readAhead.access(pageInfo.getOffset(), (long) pages.length * pageSize);
+                Page page = bufferPool.fetchPage(pageInfo.getOffset());
+                try {
+                    System.out.print("Page " + pageIndex + ": ");
+                    page.printAllRecords();
+                } finally {
+                    bufferPool.unpinPage(pageInfo.getOffset(), false);
+                }
+            } finally {
+                latch.unlock();
+            }
+        }
+    }
+
+    // Helper method to return the latch guarding the page at the given offset
+    private ReadWriteLock latchFor(long offset) {
+        return pageLatches[(int) (offset / pageSize % LATCH_STRIPES)];
+    }
+
+    // Helper method to copy the page list under the directory lock; pages added afterwards are not included
+    private PageInfo[] snapshotPages() {
+        directoryLock.readLock().lock();
+        try {
+            return pageDirectory.getPages().toArray(new PageInfo[0]);
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    // Helper method to return the offset just past the last page in the directory
+    private long directoryEndOffset() {
+        directoryLock.readLock().lock();
+        try {
+            return (long) pageDirectory.getPages().size() * pageSize;
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    // Helper method to look up a page's metadata under the directory lock, or null past the last page
+    private PageInfo pageInfoAt(int pageIndex) {
+        directoryLock.readLock().lock();
+        try {
+            List<PageInfo> pages = pageDirectory.getPages();
+            return pageIndex < pages.size() ? pages.get(pageIndex) : null;
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    // Helper method to look up a key in the index, which is not safe for concurrent use on its own
+    private long searchIndex(int key) throws IOException {
+        synchronized (keyIndex) {
+            return keyIndex.search(key);
+        }
+    }
+
+    // Helper method to drain a record ID iterator into an array
+    private static long[] collectRecordIds(PrimitiveIterator.OfLong iterator) {
+        long[] recordIds = new long[16];
+        int count = 0;
+        while (iterator.hasNext()) {
+            if (count == recordIds.length) {
+                recordIds = Arrays.copyOf(recordIds, count * 2);
+            }
+            recordIds[count++] = iterator.nextLong();
+        }
+        return Arrays.copyOf(recordIds, count);
+    }
+
+    // Helper method to open the index selected in the options, or return null if none is selected
+    private RecordIndex openIndex(FileOptions options) throws IOException {
+        switch (options.getIndexType()) {
+            case BTREE:
+                return new BPlusTree(dataFilename + BTREE_INDEX_SUFFIX, options.getBufferPoolFrames());
+            case HASH:
+                return new ExtendibleHashIndex(dataFilename + HASH_INDEX_SUFFIX, options.getBufferPoolFrames());
+            case MEMORY:
+                return new MemoryHashIndex(countRecords(), pageSize); // 빈 상태로 만들고 열 때 한 번 스캔해서 채운다
+            default:
+                return null;
+        }
+    }
+
+    // Helper method to count the records in the file from the directory's record counts
+    private long countRecords() {
+        long count = 0;
+        for (PageInfo pageInfo : pageDirectory.getPages()) {
+            count += pageInfo.getRecordCount();
+        }
+        return count;
+    }
+
+    // Helper method to rebuild the index from every record in the file
+    private void rebuildIndex() throws IOException {
+        keyIndex.clear();
+        ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages);
+        long endOffset = (long) pageDirectory.getPages().size() * pageSize;
+        for (PageInfo pageInfo : pageDirectory.getPages()) {
+            readAhead.access(pageInfo.getOffset(), endOffset);
+            Page page = bufferPool.fetchPage(pageInfo.getOffset());
+            try {
+                for (int i = 0; i < page.getSlotCount(); i++) {
+                    if (page.isSlotUsed(i)) {
+                        keyIndex.insert(page.getKey(i), RecordIndex.recordId(pageInfo.getOffset(), i));
+                    }
+                }
+            } finally {
+                bufferPool.unpinPage(pageInfo.getOffset(), false);
+            }
+        }
+        keyIndex.flush();
+    }
+
+    // Helper method to check a page's key range and Bloom filter, counting the pages the filter rules out
+    private boolean mightHoldKey(PageInfo pageInfo, int key) {
+        if (!pageInfo.overlaps(key, key)) {
+            return false;
+        }
+        if (!pageInfo.mightContain(key)) {
+            bloomFilterNegatives.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Helper method to recompute a page's key range and Bloom filter from the records it holds
+    private void rebuildPageKeys(PageInfo pageInfo, Page page) {
+        pageInfo.clearKeyRange(); // An empty page keeps the empty range and filter
+        for (int i = 0; i < page.getSlotCount(); i++) {
+            if (page.isSlotUsed(i)) {
+                pageInfo.addKey(page.getKey(i));
+            }
+        }
+    }
+
+    // Helper method to read the page directory from disk, creating one for pages of the given size if the file is new
+    private PageDirectory readDirectoryFromDisk(int newPageSize) throws IOException {
+        long size = directoryChannel.size();
+        if (size == 0) {
+            PageDirectory pageDirectory = new PageDirectory(newPageSize);
+            // 새 디렉토리 파일에는 헤더만 기록한다
+            ByteBuffer header = ByteBuffer.wrap(pageDirectory.headerToByteArray());
+            while (header.hasRemaining()) {
+                directoryChannel.write(header, header.position());
+            }
+            diskWriteCount.incrementAndGet();
+            statistics.recordDirectoryWrite(header.capacity());
+            return pageDirectory;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (directoryChannel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of page directory");
+            }
+        }
+        diskReadCount.incrementAndGet();
+        statistics.recordDirectoryRead(size);
+        return PageDirectory.fromByteArray(buffer.array());
+    }
+
+    // Helper method to record a change to a write-latched page: without the log, its directory entry is
+    // written in place, or left to the flusher in write-behind mode; with the log, the page image and the
+    // entry are logged as one operation, so recovery never applies one without the other. Returns the LSN to commit.
+    private long recordPageChange(PageInfo pageInfo, Page page) throws IOException {
+        if (wal == null) {
+            if (flusher != null) {
+                dirtyEntries.put(pageInfo.getOffset(), serializeEntry(pageInfo)); // 같은 페이지의 항목이 여러 번 바뀌어도 한 번만 기록된다
+            } else {
+                writeDirectoryEntry(pageInfo);
+            }
+            return 0;
+        }
+        WriteAheadLog.Operation operation = new WriteAheadLog.Operation();
+        operation.add(WriteAheadLog.DATA_PAGE, pageInfo.getOffset(), page.toByteArray());
+        addDirectoryEntry(operation, pageInfo);
+        return wal.append(operation);
+    }
+
+    // Helper method to add a directory entry to a logged operation; the entry is written in place by the next checkpoint
+    private void addDirectoryEntry(WriteAheadLog.Operation operation, PageInfo pageInfo) {
+        byte[] entry = serializeEntry(pageInfo);
+        dirtyEntries.put(pageInfo.getOffset(), entry);
+        operation.add(WriteAheadLog.DIRECTORY_ENTRY, pageDirectory.entryPosition(pageInfo), entry);
+    }
+
+    // Helper method to serialize a directory entry. The caller holds the page's write latch, which guards the key
+    // range and Bloom filter, and the directory lock guards the free space and record count, so the bytes are never
+    // torn. Deferred entries keep these bytes rather than the live entry, which changes under the latch only.
+    private byte[] serializeEntry(PageInfo pageInfo) {
+        directoryLock.readLock().lock(); // 빈 공간과 레코드 수는 디렉토리 잠금이 보호한다
+        try {
+            return pageInfo.toByteArray();
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    // Helper method to wait until the log records up to the LSN are durable
+    private void commit(long lsn) throws IOException {
+        if (wal != null) {
+            wal.commit(lsn);
+        }
+    }
+
+    // Helper method to run one round of the write-behind flusher
+    private void writeBehind() throws IOException {
+        bufferPool.flushDirtyPages(dirtyPageThreshold, maxDirtyAgeMillis);
+        if (wal != null || dirtyEntries.isEmpty()) {
+            return; // 로그가 켜져 있으면 디렉토리 항목은 체크포인트가 기록한다
+        }
+        long now = System.nanoTime();
+        if (dirtyEntries.size() >= dirtyPageThreshold || now - entriesWrittenAt >= maxDirtyAgeMillis * 1_000_000L) {
+            writeDirtyEntries();
+            entriesWrittenAt = now;
+        }
+    }
+
+    // Helper method to write the deferred directory entries in offset order, merging adjacent entries.
+    // Each entry is removed before it is written, so an update made meanwhile marks it again.
+    private void writeDirtyEntries() throws IOException {
+        TreeMap<Long, byte[]> entries = new TreeMap<>();
+        for (Long offset : dirtyEntries.keySet()) {
+            byte[] entry = dirtyEntries.remove(offset);
+            if (entry != null) {
+                entries.put(offset, entry);
+            }
+        }
+        try {
+            writeEntryRuns(entries);
+        } catch (IOException e) {
+            for (Map.Entry<Long, byte[]> entry : entries.entrySet()) {
+                dirtyEntries.putIfAbsent(entry.getKey(), entry.getValue()); // 다음 기록 때 다시 시도한다
+            }
+            throw e;
+        }
+    }
+
+    // Helper method to write serialized directory entries, sorted by page offset, with one write per run of adjacent pages
+    private void writeEntryRuns(TreeMap<Long, byte[]> entries) throws IOException {
+        List<byte[]> run = new ArrayList<>();
+        long runStart = 0;
+        for (Map.Entry<Long, byte[]> entry : entries.entrySet()) {
+            if (!run.isEmpty() && entry.getKey() != runStart + (long) run.size() * pageSize) {
+                writeEntryRun(runStart, run); // 연속된 항목은 한 번에 기록
+                run.clear();
+            }
+            if (run.isEmpty()) {
+                runStart = entry.getKey();
+            }
+            run.add(entry.getValue());
+        }
+        writeEntryRun(runStart, run);
+    }
+
+    // Helper method to replay the write-ahead log left by a crash, then open the log if it is enabled.
+    // Returns true if a log was found, which means the file was not closed cleanly.
+    private boolean recoverFromLog(FileOptions options) throws IOException {
+        File logFile = new File(dataFilename + WAL_SUFFIX);
+        boolean crashed = logFile.exists();
+        if (!crashed && !options.isWriteAheadLog()) {
+            return false;
+        }
+        WriteAheadLog log = new WriteAheadLog(logFile.getPath());
+        try {
+            Set<Long> replayedPages = new HashSet<>();
+            int replayed = log.replay((type, position, bytes) -> {
+                FileChannel channel = type == WriteAheadLog.DATA_PAGE ? dataChannel : directoryChannel;
+                if (type == WriteAheadLog.DATA_PAGE) {
+                    replayedPages.add(position);
+                }
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, position + bytes.position());
+                }
+            });
+            if (replayed > 0) {
+                pageDirectory = readDirectoryFromDisk(pageSize);
+                repairFreeSpace(replayedPages);
+                dataChannel.force(false);
+                directoryChannel.force(false);
+            }
+            log.truncate();
+        } catch (IOException | RuntimeException e) {
+            try {
+                log.close(); // 재적용에 실패하면 로그를 지우지 않고 닫기만 한다
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        if (options.isWriteAheadLog()) {
+            wal = log;
+        } else {
+            log.close();
+            Files.delete(logFile.toPath());
+        }
+        return crashed;
+    }
+
+    // Helper method to recompute the metadata of replayed pages from their contents. A logged entry may
+    // count space reserved by an insert that never reached the log, so the page itself is authoritative.
+    private void repairFreeSpace(Set<Long> offsets) throws IOException {
         List<PageInfo> pages = pageDirectory.getPages();
-        for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+        for (long offset : offsets) {
+            int pageIndex = (int) (offset / pageSize);
+            if (pageIndex >= pages.size()) {
+                continue; // 디렉토리 항목이 로그에 남지 않은 페이지는 보이지 않는다
+            }
             PageInfo pageInfo = pages.get(pageIndex);
-            Page page = readPageFromDisk(pageInfo.getOffset());
-            System.out.print("Page " + pageIndex + ": ");
-            page.printAllRecords();
+            Page page = readPageFromDisk(offset);
+            pageInfo.setFreeSpace(page.getFreeSpace());
+            pageInfo.setRecordCount(page.getNumberOfRecords());
+            rebuildPageKeys(pageInfo, page);
+            writeDirectoryEntry(pageInfo);
+        }
+    }
+
+    // Helper method to write one page's directory entry in place; a new page's entry is appended.
+    // The caller holds the page's latch, so the entries of one page are written in the order of its updates.
+    private void writeDirectoryEntry(PageInfo pageInfo) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(serializeEntry(pageInfo));
+        long position = pageDirectory.entryPosition(pageInfo);
+        while (buffer.hasRemaining()) {
+            directoryChannel.write(buffer, position + buffer.position());
+        }
+        diskWriteCount.incrementAndGet();
+        statistics.recordDirectoryWrite(buffer.limit());
+    }
+
+    // Helper method to append the new entries at the end of the directory with one sequential write
+    private void writeDirectoryEntries(List<PageInfo> newPages) throws IOException {
+        if (newPages.isEmpty()) {
+            return;
+        }
+        List<byte[]> run = new ArrayList<>();
+        for (PageInfo pageInfo : newPages) {
+            run.add(pageInfo.toByteArray());
         }
+        writeEntryRun(newPages.get(0).getOffset(), run);
     }
 
-    // Helper method to read the page directory from disk
-    private PageDirectory readDirectoryFromDisk() throws IOException {
-        File dirFile = new File(directoryFilename);
-        if (!dirFile.exists()) {
-            return new PageDirectory();
+    // Helper method to write the serialized entries of adjacent pages, starting with the page at the offset, in one write
+    private void writeEntryRun(long firstPageOffset, List<byte[]> run) throws IOException {
+        if (run.isEmpty()) {
+            return;
         }
-        try (FileInputStream fis = new FileInputStream(directoryFilename)) {
-            byte[] data = fis.readAllBytes();
-            diskReadCount++;
-            return PageDirectory.fromByteArray(data);
-        } catch (ClassNotFoundException e) {
-            throw new IOException("Failed to load page directory", e);
+        ByteBuffer buffer = ByteBuffer.allocate(run.size() * pageDirectory.getEntrySize());
+        for (byte[] entry : run) {
+            buffer.put(entry);
         }
+        buffer.flip();
+        long position = pageDirectory.entryPosition(firstPageOffset);
+        while (buffer.hasRemaining()) {
+            directoryChannel.write(buffer, position + buffer.position());
+        }
+        diskWriteCount.incrementAndGet();
+        statistics.recordDirectoryWrite(buffer.limit());
     }
 
-    // Helper method to write the page directory to disk
-    private void writeDirectoryToDisk() throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(directoryFilename)) {
-            fos.write(pageDirectory.toByteArray());
-            diskWriteCount++;
+    // Helper method to write a chunk of consecutive pages starting at the specified offset, then reset it
+    private void writeChunkToDisk(ByteBuffer chunk, long offset) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            dataChannel.write(chunk, offset + chunk.position());
         }
+        diskWriteCount.incrementAndGet();
+        statistics.recordPageWrite(chunk.limit() / pageSize, chunk.limit());
+        chunk.clear();
     }
 
     // Helper method to read a page from disk at the specified offset
     private Page readPageFromDisk(long offset) throws IOException {
-        byte[] bytes = new byte[Page.PAGE_SIZE];
-        try (RandomAccessFile raf = new RandomAccessFile(dataFilename, "r")) {
-            raf.seek(offset);
-            raf.readFully(bytes);
-            diskReadCount++;
+        if (mappedReader != null) {
+            // 매핑된 영역에서 바로 역직렬화하므로 페이지 크기의 배열을 새로 만들지 않는다
+            Page page = Page.fromByteBuffer(mappedReader.pageSlice(offset));
+            diskReadCount.incrementAndGet();
+            statistics.recordPageRead(1, pageSize);
+            return page;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        // 위치 지정 읽기는 채널의 position을 바꾸지 않으므로 여러 스레드가 공유할 수 있다
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at offset " + offset);
+            }
+        }
+        diskReadCount.incrementAndGet();
+        statistics.recordPageRead(1, pageSize);
+        return Page.fromByteArray(buffer.array());
+    }
+
+    // Helper method to read consecutive pages from disk with one request
+    private Page[] readPagesFromDisk(long offset, int count) throws IOException {
+        Page[] pages = new Page[count];
+        if (mappedReader != null) {
+            for (int i = 0; i < count; i++) {
+                pages[i] = readPageFromDisk(offset + (long) i * pageSize); // 매핑된 영역은 운영체제가 미리 읽는다
+            }
+            return pages;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(count * pageSize);
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at offset " + (offset + buffer.position()));
+            }
+        }
+        diskReadCount.incrementAndGet(); // 여러 페이지를 한 번의 요청으로 읽는다
+        statistics.recordPageRead(count, buffer.capacity());
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < count; i++) {
+            // 페이지마다 배열을 복사해, 캐시에 남은 페이지 하나가 큰 버퍼 전체를 붙잡지 않게 한다
+            pages[i] = Page.fromByteArray(Arrays.copyOfRange(bytes, i * pageSize, (i + 1) * pageSize));
         }
-        return Page.fromByteArray(bytes);
+        return pages;
     }
 
-    // Helper method to write a page to disk
-    private void writePageToDisk(Page page, PageInfo pageInfo) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(dataFilename, "rw")) {
-            raf.seek(pageInfo.getOffset());
-            raf.write(page.toByteArray());
-            diskWriteCount++;
+    // Helper method to write a page to disk at the specified offset
+    private void writePageToDisk(Page page, long offset) throws IOException {
+        ByteBuffer buffer = page.toByteBuffer();
+        while (buffer.hasRemaining()) {
+            dataChannel.write(buffer, offset + buffer.position());
         }
+        diskWriteCount.incrementAndGet();
+        statistics.recordPageWrite(1, buffer.limit());
     }
 }
@@ -82,7 +82,8 @@ public class HeapFileBasicTest {
                 System.out.println("  Record Key: " + record.getKey() + ", Data: " + record.getData());
             }
 
-            // Clean up
+            // Close files and clean up
+            heapFile.close();
             new java.io.File(heapDataFilename).delete();
             new java.io.File(heapDirectoryFilename).delete();
         } catch (IOException e) {
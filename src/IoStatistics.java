@@ -0,0 +1,409 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * IoStatistics collects the I/O counters and operation latencies of a file.
+ * Every HeapFile and SortedFile records into its own instance unless one is passed in through
+ * {@link FileOptions#setStatistics(IoStatistics)}, which lets several files share one set of
+ * totals. Counters are {@link LongAdder}s, so recording from many threads does not contend, and
+ * each {@link Operation} has a {@link LatencyHistogram}.
+ * <p>
+ * {@link #snapshot()} returns a consistent-enough copy for reporting and for computing the
+ * difference between two points in time. The live values can also be published as an MXBean
+ * with {@link #registerMBean(String, String)}.
+ */
+public class IoStatistics implements IoStatisticsMXBean {
+    public static final String MBEAN_DOMAIN = "DatabaseFileSort"; // JMX domain of registered statistics
+
+    /**
+     * The timed operations of a file.
+     */
+    public enum Operation {
+        INSERT,
+        BULK_INSERT,
+        SEARCH,
+        DELETE,
+        RANGE_SEARCH,
+        FLUSH
+    }
+
+    private final LongAdder pageReadRequests = new LongAdder();  // Read requests to the data file
+    private final LongAdder pagesRead = new LongAdder();         // Pages read from the data file
+    private final LongAdder pageWriteRequests = new LongAdder(); // Write requests to the data file
+    private final LongAdder pagesWritten = new LongAdder();      // Pages written to the data file
+    private final LongAdder directoryReads = new LongAdder();    // Reads of the page directory file
+    private final LongAdder directoryWrites = new LongAdder();   // Writes to the page directory file
+    private final LongAdder bytesRead = new LongAdder();         // Bytes read from both files
+    private final LongAdder bytesWritten = new LongAdder();      // Bytes written to both files
+    private final LongAdder cacheHits = new LongAdder();         // Fetches served by the buffer pool
+    private final LongAdder cacheMisses = new LongAdder();       // Fetches that read the page
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class); // Latency of each operation
+
+    /**
+     * Creates statistics with every counter at zero.
+     */
+    public IoStatistics() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records one read request to the data file.
+     *
+     * @param pages The number of pages read by the request.
+     * @param bytes The number of bytes read.
+     */
+    public void recordPageRead(int pages, long bytes) {
+        pageReadRequests.increment();
+        pagesRead.add(pages);
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Records one write request to the data file.
+     *
+     * @param pages The number of pages written by the request.
+     * @param bytes The number of bytes written.
+     */
+    public void recordPageWrite(int pages, long bytes) {
+        pageWriteRequests.increment();
+        pagesWritten.add(pages);
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Records one read of the page directory file.
+     *
+     * @param bytes The number of bytes read.
+     */
+    public void recordDirectoryRead(long bytes) {
+        directoryReads.increment();
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Records one write to the page directory file.
+     *
+     * @param bytes The number of bytes written.
+     */
+    public void recordDirectoryWrite(long bytes) {
+        directoryWrites.increment();
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Records a page fetch served by the buffer pool.
+     */
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    /**
+     * Records a page fetch that had to read the page.
+     */
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Records the latency of an operation that started at the given time.
+     *
+     * @param operation  The operation.
+     * @param startNanos The {@link System#nanoTime()} at which the operation started.
+     */
+    public void recordLatency(Operation operation, long startNanos) {
+        latencies.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation The operation.
+     * @return The live histogram.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    @Override
+    public long getPageReadRequests() {
+        return pageReadRequests.sum();
+    }
+
+    @Override
+    public long getPagesRead() {
+        return pagesRead.sum();
+    }
+
+    @Override
+    public long getPageWriteRequests() {
+        return pageWriteRequests.sum();
+    }
+
+    @Override
+    public long getPagesWritten() {
+        return pagesWritten.sum();
+    }
+
+    @Override
+    public long getDirectoryReads() {
+        return directoryReads.sum();
+    }
+
+    @Override
+    public long getDirectoryWrites() {
+        return directoryWrites.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            counts.put(entry.getKey().name(), entry.getValue().getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMicros() {
+        return latencyMicros(LatencyHistogram.Snapshot::getMeanNanos);
+    }
+
+    @Override
+    public Map<String, Double> getP99LatencyMicros() {
+        return latencyMicros(latency -> latency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public Map<String, Double> getMaxLatencyMicros() {
+        return latencyMicros(LatencyHistogram.Snapshot::getMaxNanos);
+    }
+
+    // Helper method to compute one latency figure of every operation, converted to microseconds
+    private Map<String, Double> latencyMicros(ToDoubleFunction<LatencyHistogram.Snapshot> nanos) {
+        Map<String, Double> micros = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            micros.put(entry.getKey().name(), nanos.applyAsDouble(entry.getValue().snapshot()) / 1e3);
+        }
+        return micros;
+    }
+
+    /**
+     * Copies the current counters and latency histograms. Counters are read one after another
+     * without stopping writers, so a snapshot taken under load may be off by operations in flight.
+     *
+     * @return A snapshot of these statistics.
+     */
+    public Snapshot snapshot() {
+        Map<Operation, LatencyHistogram.Snapshot> latencySnapshots = new EnumMap<>(Operation.class);
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            latencySnapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(getPageReadRequests(), getPagesRead(), getPageWriteRequests(), getPagesWritten(),
+                getDirectoryReads(), getDirectoryWrites(), getBytesRead(), getBytesWritten(),
+                getCacheHits(), getCacheMisses(), latencySnapshots);
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server under
+     * {@code DatabaseFileSort:type=<type>,file=<filename>}.
+     *
+     * @param type     The kind of file, such as "HeapFile".
+     * @param filename The data filename, quoted into the object name.
+     * @return The name to pass to {@link #unregisterMBean(ObjectName)}.
+     * @throws IOException If the name is invalid or already registered.
+     */
+    public ObjectName registerMBean(String type, String filename) throws IOException {
+        try {
+            ObjectName name = new ObjectName(MBEAN_DOMAIN + ":type=" + type + ",file=" + ObjectName.quote(filename));
+            // An MXBean object can be registered only once, so statistics shared by several files
+            // are registered through a separate forwarding view per name
+            IoStatisticsMXBean view = (IoStatisticsMXBean) Proxy.newProxyInstance(IoStatisticsMXBean.class.getClassLoader(),
+                    new Class<?>[]{IoStatisticsMXBean.class}, (proxy, method, args) -> method.invoke(this, args));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(view, IoStatisticsMXBean.class, true), name);
+            return name;
+        } catch (JMException e) {
+            throw new IOException("Could not register I/O statistics MBean for " + filename, e);
+        }
+    }
+
+    /**
+     * Removes statistics registered by {@link #registerMBean(String, String)}.
+     * A name that is no longer registered is ignored.
+     *
+     * @param name The registered name.
+     * @throws IOException If the MBean server refuses to unregister the name.
+     */
+    public static void unregisterMBean(ObjectName name) throws IOException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // Already unregistered
+        } catch (JMException e) {
+            throw new IOException("Could not unregister I/O statistics MBean " + name, e);
+        }
+    }
+
+    /**
+     * An immutable copy of the statistics at one point in time.
+     */
+    public static class Snapshot {
+        private final long pageReadRequests;
+        private final long pagesRead;
+        private final long pageWriteRequests;
+        private final long pagesWritten;
+        private final long directoryReads;
+        private final long directoryWrites;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long cacheHits;
+        private final long cacheMisses;
+        private final Map<Operation, LatencyHistogram.Snapshot> latencies; // Latency of each operation
+
+        private Snapshot(long pageReadRequests, long pagesRead, long pageWriteRequests, long pagesWritten,
+                         long directoryReads, long directoryWrites, long bytesRead, long bytesWritten,
+                         long cacheHits, long cacheMisses, Map<Operation, LatencyHistogram.Snapshot> latencies) {
+            this.pageReadRequests = pageReadRequests;
+            this.pagesRead = pagesRead;
+            this.pageWriteRequests = pageWriteRequests;
+            this.pagesWritten = pagesWritten;
+            this.directoryReads = directoryReads;
+            this.directoryWrites = directoryWrites;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+            this.latencies = Collections.unmodifiableMap(latencies);
+        }
+
+        public long getPageReadRequests() {
+            return pageReadRequests;
+        }
+
+        public long getPagesRead() {
+            return pagesRead;
+        }
+
+        public long getPageWriteRequests() {
+            return pageWriteRequests;
+        }
+
+        public long getPagesWritten() {
+            return pagesWritten;
+        }
+
+        public long getDirectoryReads() {
+            return directoryReads;
+        }
+
+        public long getDirectoryWrites() {
+            return directoryWrites;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+
+        /**
+         * Returns the number of read requests to both files, the measure the old static disk read
+         * counters reported.
+         *
+         * @return Page read requests plus directory reads.
+         */
+        public long getReadRequests() {
+            return pageReadRequests + directoryReads;
+        }
+
+        /**
+         * Returns the number of write requests to both files, the measure the old static disk write
+         * counters reported.
+         *
+         * @return Page write requests plus directory writes.
+         */
+        public long getWriteRequests() {
+            return pageWriteRequests + directoryWrites;
+        }
+
+        /**
+         * Returns the fraction of page fetches served by the buffer pool.
+         *
+         * @return The hit ratio, or 0 if no page was fetched.
+         */
+        public double getCacheHitRatio() {
+            long fetches = cacheHits + cacheMisses;
+            return fetches == 0 ? 0.0 : (double) cacheHits / fetches;
+        }
+
+        /**
+         * Returns the latency histogram of an operation as of this snapshot.
+         *
+         * @param operation The operation.
+         * @return The histogram snapshot.
+         */
+        public LatencyHistogram.Snapshot getLatency(Operation operation) {
+            return latencies.get(operation);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("reads=%d (%d pages) writes=%d (%d pages) directory reads=%d writes=%d"
+                            + " bytes read=%d written=%d cache hits=%d misses=%d",
+                    pageReadRequests, pagesRead, pageWriteRequests, pagesWritten, directoryReads, directoryWrites,
+                    bytesRead, bytesWritten, cacheHits, cacheMisses));
+            for (Map.Entry<Operation, LatencyHistogram.Snapshot> entry : latencies.entrySet()) {
+                if (entry.getValue().getCount() > 0) {
+                    sb.append(System.lineSeparator()).append(entry.getKey()).append(": ").append(entry.getValue());
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Map;
+
+/**
+ * Management interface through which {@link IoStatistics} is exposed over JMX.
+ * Latency maps are keyed by operation name and report microseconds.
+ */
+public interface IoStatisticsMXBean {
+    /**
+     * Returns the number of read requests issued to the data file.
+     *
+     * @return The count; a read-ahead request reading several pages counts once.
+     */
+    long getPageReadRequests();
+
+    /**
+     * Returns the number of pages read from the data file.
+     *
+     * @return The count.
+     */
+    long getPagesRead();
+
+    /**
+     * Returns the number of write requests issued to the data file.
+     *
+     * @return The count; a bulk write of several pages counts once.
+     */
+    long getPageWriteRequests();
+
+    /**
+     * Returns the number of pages written to the data file.
+     *
+     * @return The count.
+     */
+    long getPagesWritten();
+
+    /**
+     * Returns the number of reads of the page directory file.
+     *
+     * @return The count.
+     */
+    long getDirectoryReads();
+
+    /**
+     * Returns the number of writes to the page directory file.
+     *
+     * @return The count.
+     */
+    long getDirectoryWrites();
+
+    /**
+     * Returns the number of bytes read from the data and directory files.
+     *
+     * @return The byte count.
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the number of bytes written to the data and directory files.
+     *
+     * @return The byte count.
+     */
+    long getBytesWritten();
+
+    /**
+     * Returns the number of page fetches served by the buffer pool without a read.
+     *
+     * @return The count.
+     */
+    long getCacheHits();
+
+    /**
+     * Returns the number of page fetches that had to read the page.
+     *
+     * @return The count.
+     */
+    long getCacheMisses();
+
+    /**
+     * Returns the number of times each operation was timed.
+     *
+     * @return The counts by operation name.
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * Returns the mean latency of each operation.
+     *
+     * @return The means in microseconds by operation name.
+     */
+    Map<String, Double> getMeanLatencyMicros();
+
+    /**
+     * Returns the 99th percentile latency of each operation.
+     *
+     * @return The percentiles in microseconds by operation name.
+     */
+    Map<String, Double> getP99LatencyMicros();
+
+    /**
+     * Returns the largest latency of each operation.
+     *
+     * @return The maxima in microseconds by operation name.
+     */
+    Map<String, Double> getMaxLatencyMicros();
+}
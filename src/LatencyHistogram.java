@@ -0,0 +1,163 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records operation latencies in nanoseconds into logarithmic buckets, in the
+ * style of HdrHistogram. Values below 64 get a bucket each; above that, every power of two is
+ * split into 32 linear sub-buckets, so any recorded value is reported within about 3% of its true
+ * value while the whole range up to {@link Long#MAX_VALUE} fits in under 2000 counters.
+ * <p>
+ * Recording is lock-free and may be called from many threads at once. Percentiles are computed from
+ * a {@link Snapshot}, which copies the counters; a snapshot taken while values are being recorded
+ * may include some of them and not others.
+ */
+public class LatencyHistogram {
+    private static final int PRECISION_BITS = 5; // log2 of the sub-buckets per power of two
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS; // Values below this get their own bucket
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (62 - PRECISION_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT); // Values recorded per bucket
+    private final LongAdder totalCount = new LongAdder(); // Number of values recorded
+    private final LongAdder totalNanos = new LongAdder(); // Sum of the values recorded
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0); // Largest value recorded
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos The latency in nanoseconds; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Copies the current counts so that percentiles can be computed from a consistent view.
+     *
+     * @return A snapshot of this histogram.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, totalNanos.sum(), maxNanos.get());
+    }
+
+    // Index of the bucket holding a non-negative value
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // At least PRECISION_BITS + 1
+        int shift = exponent - PRECISION_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS; // The top bits below the leading one
+        return LINEAR_LIMIT + (exponent - PRECISION_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value that falls into a bucket
+    private static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + PRECISION_BITS + 1;
+        long mantissa = SUB_BUCKETS + (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        int shift = exponent - PRECISION_BITS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * An immutable copy of a histogram's counts.
+     */
+    public static class Snapshot {
+        private final long[] counts; // Values per bucket
+        private final long count;    // Number of values
+        private final long sum;      // Sum of the values
+        private final long max;      // Largest value
+
+        private Snapshot(long[] counts, long sum, long max) {
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of values recorded.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the mean of the recorded values.
+         *
+         * @return The mean in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the largest value recorded.
+         *
+         * @return The maximum in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return max;
+        }
+
+        /**
+         * Returns the value below or at which the given percentage of the recorded values fall,
+         * rounded up to the top of its bucket but never above the maximum.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The value in nanoseconds, or 0 if nothing was recorded.
+         * @throws IllegalArgumentException if the percentile is out of range.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Invalid percentile: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(bucket), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                    count, getMeanNanos() / 1e3, getValueAtPercentile(50) / 1e3, getValueAtPercentile(99) / 1e3,
+                    getValueAtPercentile(99.9) / 1e3, max / 1e3);
+        }
+    }
+}
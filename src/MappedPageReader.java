@@ -0,0 +1,73 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MappedPageReader exposes the pages of a data file as read-only views of a memory mapping.
+ * The file is mapped in fixed-size segments so that files larger than 2GB can be mapped,
+ * and a segment is remapped when the file grows past its current mapping.
+ * Writes made through the same file channel are visible through the mapping.
+ * Pages may be requested from several threads at once; remapping a segment is synchronized.
+ */
+public class MappedPageReader {
+    public static final long SEGMENT_SIZE = 64L * 1024 * 1024; // 64MB per mapping, a multiple of every page size
+
+    private final FileChannel channel;              // Channel of the mapped data file
+    private final int pageSize;                     // Size of the file's pages in bytes
+    private final List<MappedByteBuffer> segments;  // Current mapping of each segment, null if not mapped yet
+
+    /**
+     * Constructs a reader for the given data file channel. Segments are mapped lazily.
+     *
+     * @param channel  The open channel of the data file.
+     * @param pageSize The page size of the data file.
+     */
+    public MappedPageReader(FileChannel channel, int pageSize) {
+        this.pageSize = pageSize;
+        this.channel = channel;
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Returns a read-only view of the page stored at the given offset.
+     * The view shares memory with the mapping, so no bytes are copied.
+     *
+     * @param offset The offset of the page in the data file.
+     * @return A buffer positioned at the first byte of the page, with a limit of one page.
+     * @throws IOException If the page lies beyond the end of the file or mapping fails.
+     */
+    public ByteBuffer pageSlice(long offset) throws IOException {
+        int segmentIndex = (int) (offset / SEGMENT_SIZE);
+        int positionInSegment = (int) (offset % SEGMENT_SIZE);
+        MappedByteBuffer segment = mapSegment(segmentIndex, positionInSegment + pageSize);
+        ByteBuffer view = segment.duplicate();
+        view.position(positionInSegment);
+        view.limit(positionInSegment + pageSize);
+        return view.slice();
+    }
+
+    // Returns a mapping of the segment covering at least the requested number of bytes, remapping if needed
+    private synchronized MappedByteBuffer mapSegment(int segmentIndex, int requiredBytes) throws IOException {
+        while (segments.size() <= segmentIndex) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(segmentIndex);
+        if (segment != null && segment.capacity() >= requiredBytes) {
+            return segment;
+        }
+        long segmentStart = segmentIndex * SEGMENT_SIZE;
+        long available = channel.size() - segmentStart;
+        if (available < requiredBytes) {
+            throw new EOFException("Page at offset " + (segmentStart + requiredBytes - pageSize)
+                    + " is beyond the end of the file");
+        }
+        // Map up to the current end of the file so that later growth triggers a remap
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, available));
+        segments.set(segmentIndex, segment);
+        return segment;
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.Arrays;
+
+/**
+ * MemoryHashIndex is an in-memory index that maps record keys to record IDs with a primitive
+ * open-addressing hash table. Keys and record IDs are kept in parallel int arrays, so no key or
+ * value is boxed and each slot costs 8 bytes: a record ID is stored as the page index times the
+ * most slots a page can have plus the slot, which fits an int for data files of up to about 16GB.
+ * Collisions are resolved by linear probing, and deletes shift later entries back instead of
+ * leaving tombstones, so lookups never slow down after heavy deletes. Duplicate keys are stored
+ * as separate entries.
+ * <p>
+ * The table is not restricted to powers of two: a key's home slot is its hash scaled to the
+ * capacity. It is sized for the expected entries at the load factor, about 10.7 bytes per record,
+ * and grows by half when it fills, so it holds between 10.7 and 16 bytes per record.
+ * <p>
+ * Nothing is written to disk: the owning file rebuilds the index with one scan when it is opened.
+ */
+public class MemoryHashIndex implements RecordIndex {
+    public static final float LOAD_FACTOR = 0.75f; // Fraction of slots used before the table grows
+    public static final float GROWTH_FACTOR = 1.5f; // Capacity multiplier when the table grows
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int EMPTY = -1; // Packed record ID of an unused slot; real record IDs are never negative
+
+    private final int pageSize;     // Page size of the data file, to split record IDs into page and slot
+    private final int slotsPerPage; // Most slots a data page can have
+    private int[] keys;             // Key of each slot
+    private int[] packedIds;        // Packed record ID of each slot, EMPTY if the slot is unused
+    private int size;               // Number of entries
+    private int resizeThreshold;    // Size at which the table grows
+
+    /**
+     * Constructs an empty index sized to hold the expected number of entries without resizing.
+     *
+     * @param expectedEntries The number of entries the index is expected to hold.
+     * @param pageSize        The page size of the data file whose records the index locates.
+     * @throws IllegalArgumentException if the page size is not supported or the entries do not fit in memory.
+     */
+    public MemoryHashIndex(long expectedEntries, int pageSize) {
+        if (!Page.isValidPageSize(pageSize)) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.slotsPerPage = Page.maxSlots(pageSize);
+        allocate(capacityFor(expectedEntries));
+    }
+
+    /**
+     * Adds an entry to the index.
+     *
+     * @param key      The record key.
+     * @param recordId The ID of the record holding the key.
+     * @throws IllegalArgumentException if the record lies beyond the data file size the index can address.
+     */
+    @Override
+    public void insert(int key, long recordId) {
+        int packed = pack(recordId);
+        if (size >= resizeThreshold) {
+            resize(grownCapacity());
+        }
+        int slot = home(key);
+        while (packedIds[slot] != EMPTY) {
+            slot = next(slot);
+        }
+        keys[slot] = key;
+        packedIds[slot] = packed;
+        size++;
+    }
+
+    @Override
+    public boolean delete(int key, long recordId) {
+        int packed = pack(recordId);
+        for (int slot = home(key); packedIds[slot] != EMPTY; slot = next(slot)) {
+            if (keys[slot] == key && packedIds[slot] == packed) {
+                removeAt(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long search(int key) {
+        int result = EMPTY;
+        // Duplicates sit in the same probe run, which ends at the first unused slot. Packing keeps the
+        // order of record IDs, so the lowest packed ID is the lowest record ID.
+        for (int slot = home(key); packedIds[slot] != EMPTY; slot = next(slot)) {
+            if (keys[slot] == key && (result == EMPTY || packedIds[slot] < result)) {
+                result = packedIds[slot];
+            }
+        }
+        return result == EMPTY ? NOT_FOUND : unpack(result);
+    }
+
+    @Override
+    public long getEntryCount() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots in the table.
+     *
+     * @return The table capacity.
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the memory held by the table's arrays.
+     *
+     * @return The size of the key and record ID arrays in bytes.
+     */
+    public long getMemoryUsage() {
+        return (long) keys.length * Integer.BYTES * 2;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(packedIds, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Does nothing: the index lives only in memory.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Does nothing: the index lives only in memory.
+     */
+    @Override
+    public void close() {
+    }
+
+    // Removes the entry in a slot and shifts later entries of the probe run back into the gap
+    private void removeAt(int slot) {
+        int gap = slot;
+        for (int next = next(slot); packedIds[next] != EMPTY; next = next(next)) {
+            int home = home(keys[next]);
+            // The entry may fill the gap only if the gap lies between its home slot and its current slot
+            if (distance(home, next) >= distance(gap, next)) {
+                keys[gap] = keys[next];
+                packedIds[gap] = packedIds[next];
+                gap = next;
+            }
+        }
+        packedIds[gap] = EMPTY;
+        size--;
+    }
+
+    // Rehashes every entry into a table of the given capacity
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldPackedIds = packedIds;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldPackedIds[i] != EMPTY) {
+                int slot = home(oldKeys[i]);
+                while (packedIds[slot] != EMPTY) {
+                    slot = next(slot);
+                }
+                keys[slot] = oldKeys[i];
+                packedIds[slot] = oldPackedIds[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        packedIds = new int[capacity];
+        Arrays.fill(packedIds, EMPTY);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int grownCapacity() {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Too many entries for an in-memory index: " + size);
+        }
+        return (int) Math.min(MAX_CAPACITY, (long) (keys.length * (double) GROWTH_FACTOR));
+    }
+
+    // Smallest capacity that holds the entries below the load factor
+    private static int capacityFor(long entries) {
+        long needed = (long) Math.ceil(entries / LOAD_FACTOR) + 1;
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Too many entries for an in-memory index: " + entries);
+        }
+        return (int) Math.max(MIN_CAPACITY, needed);
+    }
+
+    // Packs a record ID into the page index times the slots per page plus the slot, which keeps the order of IDs
+    private int pack(long recordId) {
+        int slot = RecordIndex.slot(recordId, pageSize);
+        if (recordId < 0 || slot >= slotsPerPage) {
+            throw new IllegalArgumentException("Invalid record ID: " + recordId);
+        }
+        long packed = RecordIndex.pageOffset(recordId, pageSize) / pageSize * slotsPerPage + slot;
+        if (packed > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Record " + recordId + " lies beyond the data an in-memory index can address");
+        }
+        return (int) packed;
+    }
+
+    private long unpack(int packed) {
+        return RecordIndex.recordId((long) (packed / slotsPerPage) * pageSize, packed % slotsPerPage);
+    }
+
+    // Home slot of a key: its hash scaled to the capacity, so any capacity spreads keys evenly
+    private int home(int key) {
+        return (int) (((hash(key) & 0xFFFFFFFFL) * keys.length) >>> 32);
+    }
+
+    private int next(int slot) {
+        return slot + 1 == keys.length ? 0 : slot + 1;
+    }
+
+    // Number of probe steps from one slot forward to another, wrapping at the end of the table
+    private int distance(int from, int to) {
+        return to >= from ? to - from : to - from + keys.length;
+    }
+
+    // Mixes the key bits so that sequential keys do not form long probe runs
+    private static int hash(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * A test class for the `MemoryHashIndex`. It starts from the smallest table, so the table resizes several times, and
+ * runs a random mix of inserts, deletes and reinserts. Most keys are chosen so that their hashes share many high bits,
+ * putting them in one long probe run; a second group hashes to the last slot, so its run wraps around the end of
+ * the table into the first group. Deletes then have to shift entries back across both runs and the wrap.
+ * Every lookup is checked against a `HashMap` model of the entries, and the table must stay within 16 bytes per
+ * entry once it has grown, and within 11 bytes per entry when it is sized for its entries up front.
+ * The test exits with an exception if any check fails.
+ */
+public class MemoryHashIndexTest {
+    private static final int COLLIDING_BITS = 16; // High hash bits shared within each colliding group
+    private static final int GROUP_SIZE = 200; // Keys in each colliding group
+    private static final int OTHER_KEYS = 2000; // Keys with well spread hashes
+    private static final int OPERATIONS = 200000; // Random inserts, deletes and reinserts
+    private static final long SEED = 20240611L; // Fixed seed so that a failure can be reproduced
+    private static final int PAGE_SIZE = Page.DEFAULT_PAGE_SIZE; // Page size the record IDs refer to
+    private static final int PRESIZED_ENTRIES = 1_000_000; // Entries of the index sized up front
+
+    public static void main(String[] args) {
+        Random random = new Random(SEED);
+        int highest = (1 << COLLIDING_BITS) - 1;
+        List<Integer> keys = new ArrayList<>();
+        keys.addAll(keysWithHashBits(0, GROUP_SIZE, 0)); // Home slot 0 while the table has at most 2^16 slots
+        keys.addAll(keysWithHashBits(0, GROUP_SIZE, highest)); // Home slot is the last slot, so probes wrap to slot 0
+        for (int i = 0; i < OTHER_KEYS; i++) {
+            keys.add(random.nextInt());
+        }
+
+        MemoryHashIndex index = new MemoryHashIndex(0, PAGE_SIZE);
+        int initialCapacity = index.getCapacity();
+        Map<Integer, TreeSet<Long>> model = new HashMap<>(); // Record IDs of each key
+        List<long[]> live = new ArrayList<>(); // Entries currently in the index
+        List<long[]> deleted = new ArrayList<>(); // Entries removed from the index, candidates for reinsertion
+        long nextRecordId = 0;
+        long peakEntries = 0; // Most entries held at once; deletes never shrink the table
+
+        for (int op = 1; op <= OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            long[] entry;
+            if (choice < 4 || live.isEmpty()) {
+                // --- Insert a new entry; keys repeat, so some get several record IDs ---
+                entry = new long[]{keys.get(random.nextInt(keys.size())), recordId(nextRecordId++)};
+                index.insert((int) entry[0], entry[1]);
+                add(model, entry);
+                live.add(entry);
+            } else if (choice < 8) {
+                // --- Delete a live entry, which shifts later entries of its probe run back ---
+                entry = removeRandom(live, random);
+                check(index.delete((int) entry[0], entry[1]), "delete of key " + entry[0] + " missed the entry");
+                check(!index.delete((int) entry[0], entry[1]), "second delete of key " + entry[0] + " succeeded");
+                remove(model, entry);
+                deleted.add(entry);
+            } else if (!deleted.isEmpty()) {
+                // --- Reinsert a deleted entry into the shifted run ---
+                entry = removeRandom(deleted, random);
+                index.insert((int) entry[0], entry[1]);
+                add(model, entry);
+                live.add(entry);
+            } else {
+                continue;
+            }
+            peakEntries = Math.max(peakEntries, index.getEntryCount());
+            checkKey(index, model, (int) entry[0], "operation " + op);
+            if (op % 5000 == 0) {
+                checkAll(index, model, keys, "operation " + op);
+            }
+        }
+        check(index.getCapacity() > initialCapacity * 64, "expected several resizes, capacity is " + index.getCapacity());
+        double bytesPerEntry = (double) index.getMemoryUsage() / peakEntries;
+        check(bytesPerEntry <= 16, "grown table uses " + bytesPerEntry + " bytes per entry at its peak");
+
+        // --- Delete every remaining entry; the table must end up empty ---
+        while (!live.isEmpty()) {
+            long[] entry = removeRandom(live, random);
+            check(index.delete((int) entry[0], entry[1]), "delete of key " + entry[0] + " missed the entry");
+            remove(model, entry);
+            checkKey(index, model, (int) entry[0], "final deletes");
+        }
+        checkAll(index, model, keys, "final deletes");
+        check(index.getEntryCount() == 0, "index is not empty after deleting every entry");
+
+        // --- An index sized for its entries holds them in about 10.7 bytes each, with the record IDs intact ---
+        MemoryHashIndex presized = new MemoryHashIndex(PRESIZED_ENTRIES, PAGE_SIZE);
+        int capacity = presized.getCapacity();
+        for (int i = 0; i < PRESIZED_ENTRIES; i++) {
+            presized.insert(i, recordId(i));
+        }
+        check(presized.getCapacity() == capacity, "index sized for its entries resized");
+        double presizedBytes = (double) presized.getMemoryUsage() / PRESIZED_ENTRIES;
+        check(presizedBytes < 11, "index sized for its entries uses " + presizedBytes + " bytes per entry");
+        for (int i = 0; i < PRESIZED_ENTRIES; i += 997) {
+            check(presized.search(i) == recordId(i), "search for key " + i + " returned " + presized.search(i));
+        }
+        System.out.println("MemoryHashIndexTest passed, final capacity " + index.getCapacity() + ", "
+                + String.format("%.1f", presizedBytes) + " bytes per entry when sized up front");
+    }
+
+    // The n-th valid record ID: pages are filled slot by slot up to the most slots a page can have
+    private static long recordId(long n) {
+        int slotsPerPage = Page.maxSlots(PAGE_SIZE);
+        return RecordIndex.recordId(n / slotsPerPage * PAGE_SIZE, (int) (n % slotsPerPage));
+    }
+
+    private static void add(Map<Integer, TreeSet<Long>> model, long[] entry) {
+        model.computeIfAbsent((int) entry[0], k -> new TreeSet<>()).add(entry[1]);
+    }
+
+    private static void remove(Map<Integer, TreeSet<Long>> model, long[] entry) {
+        TreeSet<Long> recordIds = model.get((int) entry[0]);
+        recordIds.remove(entry[1]);
+        if (recordIds.isEmpty()) {
+            model.remove((int) entry[0]);
+        }
+    }
+
+    // Removes a random element in constant time by moving the last element into its place
+    private static long[] removeRandom(List<long[]> entries, Random random) {
+        int i = random.nextInt(entries.size());
+        long[] entry = entries.get(i);
+        entries.set(i, entries.get(entries.size() - 1));
+        entries.remove(entries.size() - 1);
+        return entry;
+    }
+
+    // A key must return its lowest record ID, or NOT_FOUND once its last entry is gone
+    private static void checkKey(MemoryHashIndex index, Map<Integer, TreeSet<Long>> model, int key, String step) {
+        TreeSet<Long> recordIds = model.get(key);
+        long expected = recordIds == null ? RecordIndex.NOT_FOUND : recordIds.first();
+        long actual = index.search(key);
+        check(actual == expected, step + ": search for key " + key + " returned " + actual + ", expected " + expected);
+    }
+
+    private static void checkAll(MemoryHashIndex index, Map<Integer, TreeSet<Long>> model, List<Integer> keys, String step) {
+        long entryCount = 0;
+        for (TreeSet<Long> recordIds : model.values()) {
+            entryCount += recordIds.size();
+        }
+        check(index.getEntryCount() == entryCount, step + ": entry count " + index.getEntryCount() + ", expected " + entryCount);
+        for (int key : keys) {
+            checkKey(index, model, key, step);
+        }
+    }
+
+    // Keys from the start value upward whose hashes have the given high bits; the index scales a hash to its
+    // capacity, so these keys share a home slot in every table of at most 2^COLLIDING_BITS slots
+    private static List<Integer> keysWithHashBits(int start, int count, int bits) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = start; keys.size() < count; key++) {
+            if (hash(key) >>> (Integer.SIZE - COLLIDING_BITS) == bits) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    // Same mix as MemoryHashIndex, so that the keys of a group share their home slot in the index
+    private static int hash(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
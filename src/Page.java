@@ -1,59 +1,125 @@
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- * Represents a page in a storage system, containing a header to track used slots
- * and an array of records.
- * Each page has a fixed size of 4KB, and can store a fixed number of records (16 in this case).
- * The header uses a bitmap to track which slots are occupied by records.
+ * Represents a page in a storage system using a slotted-page layout.
+ * A small header is followed by a slot directory that grows from the front of the page, while
+ * variable-length record bodies are packed from the end of the page towards the directory.
+ * Each slot entry holds the offset and length of one record body, so a record keeps its slot
+ * number while its bytes move, and an entry with offset 0 marks an empty slot.
+ * <p>
+ * Deleting a record leaves its bytes as a hole in the record area; holes are reclaimed by
+ * compacting the record area when an insert needs the space. The page holds as many records as
+ * fit, up to {@link #maxSlots(int)} slots.
+ * <p>
+ * The page size is chosen per file, from 4KB to 64KB; the header has a fixed size and the slot
+ * limit and usable space are derived from the page size.
+ * <p>
+ * The page wraps its raw serialized bytes: keys are read straight from the buffer and a
+ * Record object is only materialized when its payload is requested.
  */
 public class Page {
-    public static final int PAGE_SIZE = 4096; // 4KB page size
-    public static final int RECORD_SIZE = Record.RECORD_SIZE;
-    public static final int SLOT_COUNT = 16; // Number of record slots
-    public static final int HEADER_SIZE = (int) Math.ceil(SLOT_COUNT / 8.0); // Header size in bytes
-    private byte[] header; // Bitmap to track used slots
-    private Record[] records; // Array to store records in the page
+    public static final int DEFAULT_PAGE_SIZE = 4096; // 4KB page size
+    public static final int MIN_PAGE_SIZE = 4 * 1024; // Smallest supported page size
+    public static final int MAX_PAGE_SIZE = 64 * 1024; // Largest page size whose offsets fit the 16-bit slot entries
+    public static final int HEADER_SIZE = Short.BYTES * 2 + Integer.BYTES * 2; // Slot count, record count, record area start and hole bytes
+    public static final int SLOT_ENTRY_SIZE = Short.BYTES * 2; // Offset and length of one record body
+    private static final int SLOT_COUNT_POSITION = 0;      // Number of slot entries, used or not
+    private static final int RECORD_COUNT_POSITION = 2;    // Number of used slots
+    private static final int RECORD_START_POSITION = 4;    // Offset of the lowest record body; 0 in a page never written
+    private static final int HOLE_BYTES_POSITION = 8;      // Bytes of deleted bodies inside the record area
+    private static final byte[] ZEROS = new byte[Record.RECORD_SIZE]; // Written over the bodies of deleted records
+    private final int pageSize; // Size of the page in bytes
+    private final int maxSlots; // Most slots the page can have
+    private ByteBuffer data; // Raw page bytes: header, slot directory, free space and record bodies
+    private Record[] records = new Record[0]; // Records materialized so far, null for slots not yet decoded
 
     /**
-     * Constructs an empty page with initialized header and record array.
+     * Constructs an empty page of the default size.
      */
     public Page() {
-        header = new byte[HEADER_SIZE]; // Initialize the header
-        records = new Record[SLOT_COUNT]; // Initialize the record array
+        this(DEFAULT_PAGE_SIZE);
     }
 
     /**
-     * Deserializes a byte array into a Page object, reconstructing the header and records.
+     * Constructs an empty page of the given size.
+     *
+     * @param pageSize The page size in bytes.
+     * @throws IllegalArgumentException if the page size is not supported.
+     */
+    public Page(int pageSize) {
+        this(ByteBuffer.allocate(checkPageSize(pageSize)));
+    }
+
+    // Wraps serialized page bytes without copying them
+    private Page(ByteBuffer data) {
+        this.data = data;
+        this.pageSize = data.capacity();
+        this.maxSlots = maxSlots(pageSize);
+    }
+
+    /**
+     * Checks whether pages of the given size are supported: a power of two from 4KB to 64KB.
+     *
+     * @param pageSize The page size in bytes.
+     * @return True if the size is supported.
+     */
+    public static boolean isValidPageSize(int pageSize) {
+        return pageSize >= MIN_PAGE_SIZE && pageSize <= MAX_PAGE_SIZE && Integer.bitCount(pageSize) == 1;
+    }
+
+    // Returns the page size if it is supported, and throws otherwise
+    private static int checkPageSize(int pageSize) {
+        if (!isValidPageSize(pageSize)) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        return pageSize;
+    }
+
+    /**
+     * Returns the free space of an empty page of the given size.
+     *
+     * @param pageSize The page size in bytes.
+     * @return The bytes available for records and their slot entries.
+     */
+    public static int usableSpace(int pageSize) {
+        return pageSize - HEADER_SIZE;
+    }
+
+    /**
+     * Returns the most slots a page of the given size can have, reached when every record is empty.
+     *
+     * @param pageSize The page size in bytes.
+     * @return The slot limit.
+     */
+    public static int maxSlots(int pageSize) {
+        return usableSpace(pageSize) / (SLOT_ENTRY_SIZE + Record.MIN_STORED_SIZE);
+    }
+
+    /**
+     * Deserializes a byte array into a Page object. The array is wrapped, not copied,
+     * so the caller must not modify it afterwards. The page size is the array length.
      *
      * @param bytes The byte array containing the serialized page data.
-     * @return A Page object reconstructed from the byte array.
+     * @return A Page object backed by the byte array.
      * @throws IllegalArgumentException if the byte array size is invalid.
      */
     public static Page fromByteArray(byte[] bytes) {
-        if (bytes.length != PAGE_SIZE) {
-            throw new IllegalArgumentException("Invalid page size: " + bytes.length);
-        }
-
-        Page page = new Page(); // Create a new page instance
-        ByteBuffer buffer = ByteBuffer.wrap(bytes); // Wrap the byte array for reading
-
-        // Read the header from the buffer
-        buffer.get(page.header);
-
-        // Read each record from the buffer
-        for (int i = 0; i < SLOT_COUNT; i++) {
-            byte[] recordBytes = new byte[RECORD_SIZE]; // Allocate space for a record
-            buffer.get(recordBytes); // Read the record data
-            if (page.isSlotUsed(i)) {
-                try {
-                    page.records[i] = Record.fromByteArray(recordBytes); // Deserialize the record
-                } catch (Exception e) {
-                    throw new RuntimeException("Failed to deserialize record at slot " + i, e);
-                }
-            }
-        }
+        checkPageSize(bytes.length);
+        return new Page(ByteBuffer.wrap(bytes)); // Wrap the byte array for reading
+    }
 
-        return page; // Return the reconstructed Page object
+    /**
+     * Wraps a buffer, such as a view of a memory-mapped file, as a page without copying it.
+     * Read-only buffers are copied the first time the page is modified.
+     *
+     * @param buffer A buffer whose remaining bytes hold exactly one serialized page; their number is the page size.
+     * @return A Page object backed by the buffer.
+     * @throws IllegalArgumentException if the buffer size is invalid.
+     */
+    public static Page fromByteBuffer(ByteBuffer buffer) {
+        checkPageSize(buffer.remaining());
+        return new Page(buffer.slice());
     }
 
     /**
@@ -63,55 +129,217 @@ public class Page {
      * @throws IllegalArgumentException if the slot index is out of range.
      */
     private void validateSlotIndex(int slotIndex) {
-        if (slotIndex < 0 || slotIndex >= SLOT_COUNT) {
+        if (slotIndex < 0 || slotIndex >= maxSlots) {
             throw new IllegalArgumentException("Invalid slot index: " + slotIndex);
         }
     }
 
+    // Returns the position of a slot's entry within the page
+    private static int entryPosition(int slotIndex) {
+        return HEADER_SIZE + slotIndex * SLOT_ENTRY_SIZE;
+    }
+
+    // Returns the offset of a slot's record body, or 0 if the slot is empty
+    private int recordOffset(int slotIndex) {
+        return Short.toUnsignedInt(data.getShort(entryPosition(slotIndex)));
+    }
+
+    // Returns the length of a slot's record body
+    private int recordLength(int slotIndex) {
+        return Short.toUnsignedInt(data.getShort(entryPosition(slotIndex) + Short.BYTES));
+    }
+
+    // Points a slot's entry at a record body; offset 0 empties the slot
+    private void setEntry(int slotIndex, int offset, int length) {
+        data.putShort(entryPosition(slotIndex), (short) offset);
+        data.putShort(entryPosition(slotIndex) + Short.BYTES, (short) length);
+    }
+
+    // Returns the offset of the lowest record body, which is the end of the free space
+    private int recordStart() {
+        int start = data.getInt(RECORD_START_POSITION);
+        return start == 0 ? pageSize : start; // A page of zeros is an empty page
+    }
+
+    // Returns the bytes between the end of the slot directory and the record area
+    private int contiguousFreeSpace() {
+        return recordStart() - entryPosition(getSlotCount());
+    }
+
+    // Copies a read-only backing buffer into a private heap buffer before the first modification
+    private void ensureWritable() {
+        if (data.isReadOnly()) {
+            ByteBuffer copy = ByteBuffer.allocate(pageSize);
+            copy.put(data.duplicate());
+            data = copy;
+        }
+    }
+
     /**
-     * Checks whether a specific slot is marked as used in the header bitmap.
+     * Returns the size of the page.
+     *
+     * @return The page size in bytes.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the number of entries in the slot directory, including empty slots between used ones.
+     * Every used slot has an index below this number.
+     *
+     * @return The slot directory size.
+     */
+    public int getSlotCount() {
+        return Short.toUnsignedInt(data.getShort(SLOT_COUNT_POSITION));
+    }
+
+    /**
+     * Checks whether a specific slot holds a record.
      *
      * @param slotIndex The index of the slot to check.
      * @return True if the slot is used, false otherwise.
      */
     public boolean isSlotUsed(int slotIndex) {
         validateSlotIndex(slotIndex); // Ensure the slot index is valid
-        int byteIndex = slotIndex / 8; // Determine which byte in the header
-        int bitIndex = slotIndex % 8; // Determine which bit in the byte
-        return (header[byteIndex] & (1 << bitIndex)) != 0; // Check if the bit is set
+        return slotIndex < getSlotCount() && recordOffset(slotIndex) != 0;
     }
 
     /**
-     * Marks a specific slot in the bitmap as used or unused.
+     * Finds the first unused slot: an empty entry of the slot directory, or else the entry just past it.
      *
-     * @param slotIndex The index of the slot to mark.
-     * @param used      True to mark the slot as used, false to mark it as unused.
+     * @return The index of the first free slot, or -1 if the slot directory is full.
      */
-    public void setSlotUsed(int slotIndex, boolean used) {
-        validateSlotIndex(slotIndex); // Ensure the slot index is valid
-        int byteIndex = slotIndex / 8; // Determine which byte in the header
-        int bitIndex = slotIndex % 8; // Determine which bit in the byte
-        if (used) {
-            header[byteIndex] |= (1 << bitIndex); // Set the bit to 1
-        } else {
-            header[byteIndex] &= ~(1 << bitIndex); // Clear the bit to 0
+    public int findFreeSlot() {
+        int slotCount = getSlotCount();
+        for (int i = 0; i < slotCount; i++) {
+            if (recordOffset(i) == 0) {
+                return i;
+            }
         }
+        return slotCount < maxSlots ? slotCount : -1; // Every slot is used
+    }
+
+    /**
+     * Returns the number of bytes available for new records and their slot entries,
+     * counting the holes left by deleted records.
+     *
+     * @return The free space in bytes.
+     */
+    public int getFreeSpace() {
+        return contiguousFreeSpace() + data.getInt(HOLE_BYTES_POSITION);
     }
 
     /**
-     * Inserts a record into a specified slot.
+     * Checks whether a record fits into the first free slot of the page.
+     *
+     * @param record The record to check.
+     * @return True if {@link #insertRecord(int, Record)} into {@link #findFreeSlot()} would succeed.
+     */
+    public boolean hasRoomFor(Record record) {
+        int slot = findFreeSlot();
+        if (slot == -1) {
+            return false;
+        }
+        int entryBytes = slot < getSlotCount() ? 0 : SLOT_ENTRY_SIZE;
+        return getFreeSpace() >= record.getStoredSize() + entryBytes;
+    }
+
+    /**
+     * Inserts a record into a specified slot. A slot past the end of the slot directory extends it,
+     * leaving the slots in between empty.
      *
      * @param slotIndex The index of the slot to insert the record into.
      * @param record    The record to insert.
      * @throws IllegalArgumentException if the slot index is invalid or already used.
+     * @throws IllegalStateException    if the page has no room for the record.
      */
     public void insertRecord(int slotIndex, Record record) {
         validateSlotIndex(slotIndex); // Ensure the slot index is valid
         if (isSlotUsed(slotIndex)) {
             throw new IllegalArgumentException("Slot " + slotIndex + " is already used.");
         }
-        records[slotIndex] = record; // Insert the record into the specified slot
-        setSlotUsed(slotIndex, true); // Mark the slot as used
+        int offset = allocateBody(slotIndex, record.getStoredSize());
+        record.writeStoredBytes(data, offset); // Serialize the record without its padding straight into the page
+        cacheRecord(slotIndex, record);
+    }
+
+    // Reserves room for a record body in the record area and points an empty slot at it, compacting the area
+    // if needed, and returns the body's offset for the caller to fill
+    private int allocateBody(int slotIndex, int length) {
+        ensureWritable();
+        int newEntries = Math.max(0, slotIndex + 1 - getSlotCount());
+        int needed = length + newEntries * SLOT_ENTRY_SIZE;
+        if (getFreeSpace() < needed) {
+            throw new IllegalStateException("Page has no room for a record of " + length + " bytes");
+        }
+        extendSlotDirectory(slotIndex);
+        if (contiguousFreeSpace() < length) {
+            compact(); // Holes add up to enough space, so gather them into one
+        }
+        int offset = recordStart() - length;
+        data.putInt(RECORD_START_POSITION, offset);
+        setEntry(slotIndex, offset, length);
+        data.putShort(RECORD_COUNT_POSITION, (short) (getNumberOfRecords() + 1));
+        return offset;
+    }
+
+    // Grows the slot directory with empty entries until it covers the slot, compacting the record area if needed
+    private void extendSlotDirectory(int slotIndex) {
+        int slotCount = getSlotCount();
+        if (slotIndex < slotCount) {
+            return;
+        }
+        if (contiguousFreeSpace() < (slotIndex + 1 - slotCount) * SLOT_ENTRY_SIZE) {
+            compact();
+        }
+        for (int i = slotCount; i <= slotIndex; i++) {
+            setEntry(i, 0, 0); // The free space may hold stale bytes
+        }
+        data.putShort(SLOT_COUNT_POSITION, (short) (slotIndex + 1));
+    }
+
+    // Empties a used slot, returning its body's bytes to the free space, and drops trailing empty entries
+    private void removeEntry(int slotIndex) {
+        int offset = recordOffset(slotIndex);
+        int length = recordLength(slotIndex);
+        data.put(offset, ZEROS, 0, length); // Clear the record bytes
+        if (offset == recordStart()) {
+            data.putInt(RECORD_START_POSITION, offset + length); // The lowest body borders the free space
+        } else {
+            data.putInt(HOLE_BYTES_POSITION, data.getInt(HOLE_BYTES_POSITION) + length);
+        }
+        setEntry(slotIndex, 0, 0);
+        data.putShort(RECORD_COUNT_POSITION, (short) (getNumberOfRecords() - 1));
+        if (getNumberOfRecords() == 0) {
+            data.putInt(RECORD_START_POSITION, 0); // Without records every hole is free space again
+            data.putInt(HOLE_BYTES_POSITION, 0);
+        }
+        int slotCount = getSlotCount();
+        while (slotCount > 0 && recordOffset(slotCount - 1) == 0) {
+            slotCount--;
+        }
+        data.putShort(SLOT_COUNT_POSITION, (short) slotCount);
+    }
+
+    // Packs the record bodies against the end of the page so that all free space is contiguous
+    private void compact() {
+        byte[] packed = new byte[pageSize];
+        int start = pageSize;
+        int slotCount = getSlotCount();
+        for (int i = 0; i < slotCount; i++) {
+            int offset = recordOffset(i);
+            if (offset != 0) {
+                int length = recordLength(i);
+                start -= length;
+                data.get(offset, packed, start, length);
+                setEntry(i, start, length);
+            }
+        }
+        int directoryEnd = entryPosition(slotCount);
+        data.put(directoryEnd, packed, directoryEnd, pageSize - directoryEnd); // Zeros up to the new record area
+        data.putInt(RECORD_START_POSITION, start);
+        data.putInt(HOLE_BYTES_POSITION, 0);
     }
 
     /**
@@ -125,23 +353,157 @@ public class Page {
         if (!isSlotUsed(slotIndex)) {
             throw new IllegalArgumentException("Slot " + slotIndex + " is already empty.");
         }
-        records[slotIndex] = null; // Remove the record
-        setSlotUsed(slotIndex, false); // Mark the slot as unused
+        ensureWritable();
+        removeEntry(slotIndex);
+        cacheRecord(slotIndex, null); // Remove the record
+    }
+
+    /**
+     * Moves a record from one slot to an empty slot. Within a page only the slot entry moves,
+     * and the record is never materialized.
+     *
+     * @param fromSlot The used slot to move the record from.
+     * @param toSlot   The empty slot to move the record to.
+     * @throws IllegalArgumentException if a slot index is invalid, the source is empty or the target is used.
+     */
+    public void moveRecord(int fromSlot, int toSlot) {
+        moveRecord(fromSlot, this, toSlot);
     }
 
     /**
-     * Retrieves a record from a specified slot.
+     * Moves a record from one of this page's slots to an empty slot of another page by copying
+     * its raw bytes, without materializing the record.
+     *
+     * @param fromSlot The used slot of this page to move the record from.
+     * @param target   The page receiving the record, which may be this page.
+     * @param toSlot   The empty slot of the target page to move the record to.
+     * @throws IllegalArgumentException if a slot index is invalid, the source is empty or the target is used.
+     * @throws IllegalStateException    if the target page has no room for the record.
+     */
+    public void moveRecord(int fromSlot, Page target, int toSlot) {
+        validateSlotIndex(fromSlot);
+        target.validateSlotIndex(toSlot);
+        if (!isSlotUsed(fromSlot)) {
+            throw new IllegalArgumentException("Slot " + fromSlot + " is empty.");
+        }
+        if (target.isSlotUsed(toSlot)) {
+            throw new IllegalArgumentException("Slot " + toSlot + " is already used.");
+        }
+        ensureWritable();
+        Record record = cachedRecord(fromSlot);
+        if (target == this) {
+            int newEntries = Math.max(0, toSlot + 1 - getSlotCount());
+            if (getFreeSpace() < newEntries * SLOT_ENTRY_SIZE) {
+                throw new IllegalStateException("Page has no room for slot " + toSlot);
+            }
+            extendSlotDirectory(toSlot); // May compact, so the source entry is read afterwards
+            setEntry(toSlot, recordOffset(fromSlot), recordLength(fromSlot));
+            setEntry(fromSlot, 0, 0);
+            int slotCount = getSlotCount();
+            while (slotCount > 0 && recordOffset(slotCount - 1) == 0) {
+                slotCount--;
+            }
+            data.putShort(SLOT_COUNT_POSITION, (short) slotCount);
+        } else {
+            int length = recordLength(fromSlot);
+            int offset = target.allocateBody(toSlot, length);
+            target.data.put(offset, data, recordOffset(fromSlot), length);
+            removeEntry(fromSlot);
+        }
+        cacheRecord(fromSlot, null);
+        target.cacheRecord(toSlot, record);
+    }
+
+    /**
+     * Swaps the records stored in two used slots.
+     *
+     * @param slotA The first slot.
+     * @param slotB The second slot.
+     * @throws IllegalArgumentException if a slot index is invalid or unused.
+     */
+    public void swapRecords(int slotA, int slotB) {
+        validateSlotIndex(slotA);
+        validateSlotIndex(slotB);
+        if (!isSlotUsed(slotA) || !isSlotUsed(slotB)) {
+            throw new IllegalArgumentException("Slots " + slotA + " and " + slotB + " must both be used.");
+        }
+        ensureWritable();
+        int offsetA = recordOffset(slotA);
+        int lengthA = recordLength(slotA);
+        setEntry(slotA, recordOffset(slotB), recordLength(slotB));
+        setEntry(slotB, offsetA, lengthA);
+        Record temp = cachedRecord(slotA);
+        cacheRecord(slotA, cachedRecord(slotB));
+        cacheRecord(slotB, temp);
+    }
+
+    /**
+     * Reads the key of the record in a specified slot directly from the page bytes.
+     *
+     * @param slotIndex The index of the slot.
+     * @return The key of the record at the specified slot.
+     * @throws IllegalArgumentException if the slot index is invalid or unused.
+     */
+    public int getKey(int slotIndex) {
+        if (!isSlotUsed(slotIndex)) {
+            throw new IllegalArgumentException("Slot " + slotIndex + " is empty.");
+        }
+        return data.getInt(recordOffset(slotIndex));
+    }
+
+    /**
+     * Returns the number of bytes the record in a slot occupies, excluding its slot entry.
+     *
+     * @param slotIndex The index of the slot.
+     * @return The record's stored size.
+     * @throws IllegalArgumentException if the slot index is invalid or unused.
+     */
+    public int getRecordSize(int slotIndex) {
+        if (!isSlotUsed(slotIndex)) {
+            throw new IllegalArgumentException("Slot " + slotIndex + " is empty.");
+        }
+        return recordLength(slotIndex);
+    }
+
+    /**
+     * Retrieves a record from a specified slot, decoding it on first access.
+     * Decoding fills the page's record cache, so the method is synchronized to let threads that
+     * only read the page call it concurrently.
      *
      * @param slotIndex The index of the slot to retrieve the record from.
      * @return The record at the specified slot.
      * @throws IllegalArgumentException if the slot index is invalid or unused.
      */
-    public Record getRecord(int slotIndex) {
-        validateSlotIndex(slotIndex); // Ensure the slot index is valid
+    public synchronized Record getRecord(int slotIndex) {
         if (!isSlotUsed(slotIndex)) {
             throw new IllegalArgumentException("Slot " + slotIndex + " is empty.");
         }
-        return records[slotIndex]; // Return the record
+        Record record = cachedRecord(slotIndex);
+        if (record == null) {
+            try {
+                record = Record.fromStoredBytes(data, recordOffset(slotIndex), recordLength(slotIndex)); // Deserialize the record
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to deserialize record at slot " + slotIndex, e);
+            }
+            cacheRecord(slotIndex, record);
+        }
+        return record; // Return the record
+    }
+
+    // Returns the decoded record of a slot, or null if it has not been decoded
+    private Record cachedRecord(int slotIndex) {
+        return slotIndex < records.length ? records[slotIndex] : null;
+    }
+
+    // Stores a decoded record, growing the cache to cover the slot
+    private void cacheRecord(int slotIndex, Record record) {
+        if (slotIndex >= records.length) {
+            if (record == null) {
+                return;
+            }
+            records = Arrays.copyOf(records, Math.max(slotIndex + 1, records.length * 2));
+        }
+        records[slotIndex] = record;
     }
 
     /**
@@ -150,28 +512,23 @@ public class Page {
      * @return The count of used slots in the page.
      */
     public int getNumberOfRecords() {
-        int count = 0;
-        for (int i = 0; i < SLOT_COUNT; i++) {
-            if (isSlotUsed(i)) {
-                count++;
-            }
-        }
-        return count; // Return the total count of used slots
+        return Short.toUnsignedInt(data.getShort(RECORD_COUNT_POSITION));
     }
 
     /**
      * Prints all keys currently stored in the page.
-     * Unused slots are represented by 'X'.
+     * Empty slots of the slot directory are represented by 'X'.
      */
     public void printAllRecords() {
         StringBuilder result = new StringBuilder();
-        for (int i = 0; i < SLOT_COUNT; i++) {
+        int slotCount = getSlotCount();
+        for (int i = 0; i < slotCount; i++) {
             if (isSlotUsed(i)) {
-                result.append(records[i].getKey());
+                result.append(getKey(i));
             } else {
                 result.append("X");
             }
-            if (i < SLOT_COUNT - 1) {
+            if (i < slotCount - 1) {
                 result.append(",");
             }
         }
@@ -184,38 +541,43 @@ public class Page {
      * @return A byte array representation of the page.
      */
     public byte[] toByteArray() {
-        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE); // Allocate buffer for serialization
-
-        // Write the header to the buffer
-        buffer.put(header);
-
-        // Write each record to the buffer
-        for (int i = 0; i < SLOT_COUNT; i++) {
-            if (isSlotUsed(i)) {
-                buffer.put(records[i].toByteArray()); // Serialize and add the record data
-            } else {
-                buffer.put(new byte[RECORD_SIZE]); // Fill empty slots with zeros
-            }
-        }
+        byte[] bytes = new byte[pageSize];
+        data.duplicate().clear().get(bytes);
+        return bytes; // Return a copy of the page bytes
+    }
 
-        return buffer.array(); // Return the serialized byte array
+    /**
+     * Returns a read-only view of the serialized page, suitable for writing without copying.
+     *
+     * @return A buffer holding the page bytes, positioned at the start of the page.
+     */
+    public ByteBuffer toByteBuffer() {
+        return data.asReadOnlyBuffer().clear();
     }
 
     /**
-     * Retrieves the array of records stored in the page.
+     * Retrieves the records stored in the page, materializing every used slot.
      *
-     * @return An array of records.
+     * @return An array with one element per slot directory entry, null for empty slots.
      */
-    public Record[] getRecords() {
-        return records;
+    public synchronized Record[] getRecords() {
+        Record[] result = new Record[getSlotCount()];
+        for (int i = 0; i < result.length; i++) {
+            if (isSlotUsed(i)) {
+                result[i] = getRecord(i);
+            }
+        }
+        return result;
     }
 
     /**
-     * Retrieves the header bitmap of the page.
+     * Retrieves the header of the page.
      *
-     * @return A byte array representing the header bitmap.
+     * @return A copy of the header bytes.
      */
     public byte[] getHeader() {
+        byte[] header = new byte[HEADER_SIZE];
+        data.get(0, header);
         return header;
     }
 }
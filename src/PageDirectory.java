@@ -1,18 +1,42 @@
-import java.io.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * PageDirectory is a class that manages a collection of PageInfo objects,
  * providing functionality to add, update, and serialize page information.
+ * On disk the directory is a small header followed by a fixed-width array of PageInfo entries,
+ * where the entry of a page is stored at a position derived from the page's offset. This lets a
+ * single entry be rewritten in place and a new page's entry be appended without rewriting the rest.
+ * The header also records the page size of the data file and the size of the entries' Bloom filters,
+ * both fixed when the file is created; the filter size sets the width of every entry.
  */
 public class PageDirectory {
+    public static final int MAGIC = 0x50474452; // "PGDR", identifies a binary page directory file
+    public static final int VERSION = 6; // Format version of the directory file (2 adds page key ranges, 3 page Bloom filters, 4 free space in bytes, 5 the page size, 6 the filter size)
+    public static final int HEADER_SIZE = Integer.BYTES * 4; // Magic number, version, page size and Bloom filter size
+    private static final int SERIALIZED_MAGIC = 0xACED0005; // Stream header of the object-serialized format of the first version
+    private final int pageSize; // Size of the data file's pages in bytes
+    private final int bloomFilterBits; // Size of each entry's Bloom filter in bits
+    private final int entrySize; // Size of each serialized entry in bytes
     private List<PageInfo> pages; // List to store page metadata
 
     /**
-     * Constructs an empty PageDirectory.
+     * Constructs an empty PageDirectory for a data file with the given page size, with Bloom filters
+     * sized for that page size.
+     *
+     * @param pageSize The page size of the data file in bytes.
+     * @throws IllegalArgumentException if the page size is not supported.
      */
-    public PageDirectory() {
+    public PageDirectory(int pageSize) {
+        this(checkPageSize(pageSize), PageInfo.bloomFilterBits(pageSize));
+    }
+
+    private PageDirectory(int pageSize, int bloomFilterBits) {
+        this.pageSize = pageSize;
+        this.bloomFilterBits = bloomFilterBits;
+        this.entrySize = PageInfo.bytes(bloomFilterBits);
         pages = new ArrayList<>();
     }
 
@@ -21,26 +45,118 @@ public class PageDirectory {
      *
      * @param data The byte array containing the serialized PageDirectory.
      * @return A PageDirectory object reconstructed from the byte array.
-     * @throws IOException            If an I/O error occurs during deserialization.
-     * @throws ClassNotFoundException If the serialized object class is not found.
+     * @throws IOException If the data is not a valid page directory, or was written by an earlier format version.
      */
-    public static PageDirectory fromByteArray(byte[] data) throws IOException, ClassNotFoundException {
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(data);
-             ObjectInputStream ois = new ObjectInputStream(bais)) {
-            @SuppressWarnings("unchecked")
-            List<PageInfo> pages = (List<PageInfo>) ois.readObject();
-            PageDirectory pageDirectory = new PageDirectory();
-            pageDirectory.pages = pages;
-            return pageDirectory;
+    public static PageDirectory fromByteArray(byte[] data) throws IOException {
+        if (data.length >= Integer.BYTES && ByteBuffer.wrap(data).getInt() == SERIALIZED_MAGIC) {
+            // The data pages changed along with the directory, so the old files cannot be converted in place
+            throw new IOException("Page directory was written in the serialized format of an earlier version; "
+                    + "rebuild the data and directory files");
+        }
+        if (data.length < HEADER_SIZE) {
+            throw new IOException("Invalid page directory size: " + data.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Unsupported page directory format");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported page directory version: " + version
+                    + "; files from an earlier version must be rebuilt");
         }
+        int pageSize = buffer.getInt();
+        if (!Page.isValidPageSize(pageSize)) {
+            throw new IOException("Invalid page size in page directory: " + pageSize);
+        }
+        int bloomFilterBits = buffer.getInt();
+        if (!PageInfo.isValidBloomFilterBits(bloomFilterBits)) {
+            throw new IOException("Invalid Bloom filter size in page directory: " + bloomFilterBits);
+        }
+        PageDirectory pageDirectory = new PageDirectory(pageSize, bloomFilterBits);
+        if ((data.length - HEADER_SIZE) % pageDirectory.entrySize != 0) {
+            throw new IOException("Invalid page directory size: " + data.length);
+        }
+        byte[] entry = new byte[pageDirectory.entrySize];
+        while (buffer.hasRemaining()) {
+            buffer.get(entry);
+            pageDirectory.pages.add(PageInfo.fromByteArray(entry));
+        }
+        return pageDirectory;
+    }
+
+    /**
+     * Serializes the directory header.
+     *
+     * @return A byte array holding the magic number, version, page size and Bloom filter size.
+     */
+    public byte[] headerToByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(pageSize);
+        buffer.putInt(bloomFilterBits);
+        return buffer.array();
+    }
+
+    /**
+     * Retrieves the page size of the data file.
+     *
+     * @return The page size in bytes.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Retrieves the size of the Bloom filter in each entry; new entries must be created with this size.
+     *
+     * @return The filter size in bits.
+     */
+    public int getBloomFilterBits() {
+        return bloomFilterBits;
+    }
+
+    /**
+     * Retrieves the size of each serialized entry.
+     *
+     * @return The entry size in bytes.
+     */
+    public int getEntrySize() {
+        return entrySize;
+    }
+
+    /**
+     * Computes the position of a page's entry within the directory file.
+     *
+     * @param pageInfo The page whose entry position is computed.
+     * @return The byte position of the entry in the directory file.
+     */
+    public long entryPosition(PageInfo pageInfo) {
+        return entryPosition(pageInfo.getOffset());
+    }
+
+    /**
+     * Computes the position of the entry of the page at a data file offset within the directory file.
+     *
+     * @param pageOffset The offset of the page in the data file.
+     * @return The byte position of the entry in the directory file.
+     */
+    public long entryPosition(long pageOffset) {
+        return HEADER_SIZE + (pageOffset / pageSize) * entrySize;
     }
 
     /**
      * Adds a new page to the directory.
      *
      * @param pageInfo The PageInfo object representing the page to add.
+     * @throws IllegalArgumentException if the entry's Bloom filter does not have the directory's size.
      */
     public void addPage(PageInfo pageInfo) {
+        if (pageInfo.getBloomFilterBits() != bloomFilterBits) {
+            throw new IllegalArgumentException("Bloom filter size " + pageInfo.getBloomFilterBits()
+                    + " does not match the directory's " + bloomFilterBits);
+        }
         pages.add(pageInfo);
     }
 
@@ -69,16 +185,24 @@ public class PageDirectory {
     }
 
     /**
-     * Serializes the PageDirectory into a byte array.
+     * Serializes the PageDirectory into a byte array, with every entry at its fixed position.
      *
      * @return A byte array representation of the PageDirectory.
-     * @throws IOException If an I/O error occurs during serialization.
      */
-    public byte[] toByteArray() throws IOException {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos)) {
-            oos.writeObject(pages); // Serialize the list of PageInfo objects
-            return baos.toByteArray();
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pages.size() * entrySize);
+        buffer.put(headerToByteArray());
+        for (PageInfo pageInfo : pages) {
+            buffer.put((int) entryPosition(pageInfo), pageInfo.toByteArray());
+        }
+        return buffer.array();
+    }
+
+    // Returns the page size if it is supported, and throws otherwise
+    private static int checkPageSize(int pageSize) {
+        if (!Page.isValidPageSize(pageSize)) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
         }
+        return pageSize;
     }
 }
@@ -1,39 +1,124 @@
-import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- * PageInfo represents metadata for a page, including its offset in the file
- * and the number of free slots available.
+ * PageInfo represents metadata for a page, including its offset in the file,
+ * the free space and number of records in the page, the smallest and largest key stored in the page,
+ * and a small Bloom filter of the page's keys.
+ * It serializes to a fixed-width entry so that the page directory can be updated in place. The filter size is
+ * chosen from the page size when the file is created, so that larger pages, which hold more keys, keep about the
+ * same false positive rate; the page directory records it, and every entry of a directory has the same size.
+ * A page without records has an empty key range (minKey greater than maxKey).
+ * The Bloom filter answers "definitely not in this page" for most keys the page does not hold,
+ * so point lookups can skip the page without reading it. A filter cannot forget a key, so it is
+ * rebuilt from the page's remaining keys whenever records are removed.
  */
-public class PageInfo implements Serializable {
+public class PageInfo {
+    public static final int BITS_PER_KEY = 8; // Filter bits per expected key, for a false positive rate of about 2%
+    public static final int BLOOM_FILTER_HASHES = 6; // Bits set per key, near optimal for 8 bits per key
+    public static final int MIN_BLOOM_FILTER_BITS = Long.SIZE; // Smallest filter, one word
+    public static final int MAX_BLOOM_FILTER_BITS = 1 << 20; // Largest filter a directory may declare
+    private static final int EXPECTED_RECORD_BYTES = 32; // Stored size and slot entry of a short record, to estimate keys per page
+    private static final int FIXED_BYTES = Long.BYTES + Integer.BYTES * 4; // Serialized size of the fields before the filter
     private long offset;     // Starting offset of the page in the data file
-    private int freeSlots;   // Number of free slots in the page
+    private int freeSpace;   // Bytes available in the page for records and their slot entries
+    private int recordCount; // Number of records in the page
+    private int minKey;      // Smallest key in the page, Integer.MAX_VALUE if the page is empty
+    private int maxKey;      // Largest key in the page, Integer.MIN_VALUE if the page is empty
+    private final long[] bloomFilter; // Bloom filter bits of the page's keys
 
     /**
-     * Constructs a PageInfo object with the specified offset and free slot count.
+     * Constructs a PageInfo object for a page without records, with the specified offset and free space,
+     * an empty key range and an empty filter.
      *
-     * @param offset    The starting offset of the page in the file.
-     * @param freeSlots The number of free slots in the page.
+     * @param offset          The starting offset of the page in the file.
+     * @param freeSpace       The free space of the page in bytes.
+     * @param bloomFilterBits The size of the Bloom filter, as recorded in the page directory.
      */
-    public PageInfo(long offset, int freeSlots) {
+    public PageInfo(long offset, int freeSpace, int bloomFilterBits) {
+        this(offset, freeSpace, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, bloomFilterBits);
+    }
+
+    /**
+     * Constructs a PageInfo object with the specified offset, free space, record count and key range.
+     * The Bloom filter starts empty; keys are added with {@link #addKey(int)}.
+     *
+     * @param offset          The starting offset of the page in the file.
+     * @param freeSpace       The free space of the page in bytes.
+     * @param recordCount     The number of records in the page.
+     * @param minKey          The smallest key stored in the page.
+     * @param maxKey          The largest key stored in the page.
+     * @param bloomFilterBits The size of the Bloom filter, as recorded in the page directory.
+     * @throws IllegalArgumentException if the filter size is not supported.
+     */
+    public PageInfo(long offset, int freeSpace, int recordCount, int minKey, int maxKey, int bloomFilterBits) {
+        if (!isValidBloomFilterBits(bloomFilterBits)) {
+            throw new IllegalArgumentException("Invalid Bloom filter size: " + bloomFilterBits);
+        }
+        this.bloomFilter = new long[bloomFilterBits / Long.SIZE];
         this.offset = offset;
-        this.freeSlots = freeSlots;
+        this.freeSpace = freeSpace;
+        this.recordCount = recordCount;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+    }
+
+    /**
+     * Returns the Bloom filter size for pages of the given size: a power of two of about
+     * {@link #BITS_PER_KEY} bits for each short record the page can hold.
+     *
+     * @param pageSize The page size in bytes.
+     * @return The filter size in bits.
+     */
+    public static int bloomFilterBits(int pageSize) {
+        int expectedKeys = Page.usableSpace(pageSize) / EXPECTED_RECORD_BYTES;
+        int bits = Math.max(MIN_BLOOM_FILTER_BITS, BITS_PER_KEY * expectedKeys);
+        return Math.min(MAX_BLOOM_FILTER_BITS, Integer.highestOneBit(bits - 1) << 1); // Rounded up to a power of two
     }
 
     /**
-     * Deserializes a byte array to create a PageInfo object.
+     * Checks whether a filter size is supported: a power of two between the smallest and the largest filter.
+     *
+     * @param bloomFilterBits The filter size in bits.
+     * @return True if the size is supported.
+     */
+    public static boolean isValidBloomFilterBits(int bloomFilterBits) {
+        return bloomFilterBits >= MIN_BLOOM_FILTER_BITS && bloomFilterBits <= MAX_BLOOM_FILTER_BITS
+                && Integer.bitCount(bloomFilterBits) == 1;
+    }
+
+    /**
+     * Returns the size of a serialized entry with a filter of the given size.
+     *
+     * @param bloomFilterBits The filter size in bits.
+     * @return The entry size in bytes.
+     */
+    public static int bytes(int bloomFilterBits) {
+        return FIXED_BYTES + bloomFilterBits / Byte.SIZE;
+    }
+
+    /**
+     * Deserializes a byte array to create a PageInfo object. The filter size follows from the array length.
      *
      * @param bytes A byte array containing the serialized PageInfo data.
      * @return A PageInfo object reconstructed from the byte array.
      */
     public static PageInfo fromByteArray(byte[] bytes) {
-        if (bytes.length != Long.BYTES + Integer.BYTES) {
+        int bloomFilterBits = (bytes.length - FIXED_BYTES) * Byte.SIZE;
+        if (bytes.length < FIXED_BYTES || !isValidBloomFilterBits(bloomFilterBits)) {
             throw new IllegalArgumentException("Invalid byte array length for PageInfo.");
         }
         ByteBuffer buffer = ByteBuffer.wrap(bytes); // Wrap byte array for reading
         long offset = buffer.getLong(); // Extract offset
-        int freeSlots = buffer.getInt(); // Extract freeSlots
-        return new PageInfo(offset, freeSlots); // Create and return PageInfo
+        int freeSpace = buffer.getInt(); // Extract freeSpace
+        int recordCount = buffer.getInt(); // Extract recordCount
+        int minKey = buffer.getInt(); // Extract minKey
+        int maxKey = buffer.getInt(); // Extract maxKey
+        PageInfo pageInfo = new PageInfo(offset, freeSpace, recordCount, minKey, maxKey, bloomFilterBits);
+        for (int i = 0; i < pageInfo.bloomFilter.length; i++) {
+            pageInfo.bloomFilter[i] = buffer.getLong(); // Extract the Bloom filter words
+        }
+        return pageInfo; // Return the reconstructed PageInfo
     }
 
     /**
@@ -46,21 +131,158 @@ public class PageInfo implements Serializable {
     }
 
     /**
-     * Retrieves the number of free slots in the page.
+     * Retrieves the size of the page's Bloom filter.
+     *
+     * @return The filter size in bits.
+     */
+    public int getBloomFilterBits() {
+        return bloomFilter.length * Long.SIZE;
+    }
+
+    /**
+     * Retrieves the free space of the page.
+     *
+     * @return The bytes available for records and their slot entries.
+     */
+    public int getFreeSpace() {
+        return freeSpace;
+    }
+
+    /**
+     * Updates the free space of the page.
+     *
+     * @param freeSpace The updated free space in bytes.
+     */
+    public void setFreeSpace(int freeSpace) {
+        this.freeSpace = freeSpace;
+    }
+
+    /**
+     * Retrieves the number of records in the page.
+     *
+     * @return The record count.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Updates the number of records in the page.
+     *
+     * @param recordCount The updated record count.
+     */
+    public void setRecordCount(int recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Retrieves the smallest key stored in the page.
+     *
+     * @return The minimum key, or Integer.MAX_VALUE if the page is empty.
+     */
+    public int getMinKey() {
+        return minKey;
+    }
+
+    /**
+     * Retrieves the largest key stored in the page.
+     *
+     * @return The maximum key, or Integer.MIN_VALUE if the page is empty.
+     */
+    public int getMaxKey() {
+        return maxKey;
+    }
+
+    /**
+     * Updates the key range of the page.
+     *
+     * @param minKey The smallest key stored in the page.
+     * @param maxKey The largest key stored in the page.
+     */
+    public void setKeyRange(int minKey, int maxKey) {
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+    }
+
+    /**
+     * Marks the page as holding no keys, emptying both the key range and the Bloom filter.
+     */
+    public void clearKeyRange() {
+        setKeyRange(Integer.MAX_VALUE, Integer.MIN_VALUE);
+        Arrays.fill(bloomFilter, 0L);
+    }
+
+    /**
+     * Records a key stored in the page, widening the key range and adding the key to the Bloom filter.
      *
-     * @return The number of free slots.
+     * @param key The key of a record in the page.
      */
-    public int getFreeSlots() {
-        return freeSlots;
+    public void addKey(int key) {
+        setKeyRange(Math.min(minKey, key), Math.max(maxKey, key));
+        int hash1 = mix(key);
+        int hash2 = mix(hash1) | 1; // Odd step, so the probes never repeat a position early
+        int mask = getBloomFilterBits() - 1;
+        for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+            int bit = (hash1 + i * hash2) & mask;
+            bloomFilter[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether the page may hold the key. A false result is definite; a true result
+     * may be a false positive.
+     *
+     * @param key The key to test.
+     * @return False if the page certainly does not hold the key.
+     */
+    public boolean mightContain(int key) {
+        if (key < minKey || key > maxKey) {
+            return false;
+        }
+        int hash1 = mix(key);
+        int hash2 = mix(hash1) | 1;
+        int mask = getBloomFilterBits() - 1;
+        for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+            int bit = (hash1 + i * hash2) & mask;
+            if ((bloomFilter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the chance that {@link #mightContain(int)} returns true for a key the page does not hold,
+     * from the fraction of filter bits that are set.
+     *
+     * @return The estimated false positive rate of the filter, between 0 and 1.
+     */
+    public double estimatedFalsePositiveRate() {
+        int setBits = 0;
+        for (long word : bloomFilter) {
+            setBits += Long.bitCount(word);
+        }
+        return Math.pow((double) setBits / getBloomFilterBits(), BLOOM_FILTER_HASHES);
     }
 
     /**
-     * Updates the number of free slots in the page.
+     * Checks whether the page holds any keys.
      *
-     * @param freeSlots The updated number of free slots.
+     * @return True if the key range is not empty.
      */
-    public void setFreeSlots(int freeSlots) {
-        this.freeSlots = freeSlots;
+    public boolean hasKeys() {
+        return minKey <= maxKey;
+    }
+
+    /**
+     * Checks whether the page's key range overlaps the given inclusive range.
+     *
+     * @param lowerBound The lower bound of the range (inclusive).
+     * @param upperBound The upper bound of the range (inclusive).
+     * @return True if the page may hold keys in the range.
+     */
+    public boolean overlaps(int lowerBound, int upperBound) {
+        return minKey <= upperBound && maxKey >= lowerBound;
     }
 
     /**
@@ -69,9 +291,26 @@ public class PageInfo implements Serializable {
      * @return A byte array representation of the PageInfo.
      */
     public byte[] toByteArray() {
-        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES); // Allocate buffer for offset and freeSlots
+        ByteBuffer buffer = ByteBuffer.allocate(bytes(getBloomFilterBits())); // Allocate buffer for all fields
         buffer.putLong(offset); // Add offset to the buffer
-        buffer.putInt(freeSlots); // Add freeSlots to the buffer
+        buffer.putInt(freeSpace); // Add freeSpace to the buffer
+        buffer.putInt(recordCount); // Add recordCount to the buffer
+        buffer.putInt(minKey); // Add minKey to the buffer
+        buffer.putInt(maxKey); // Add maxKey to the buffer
+        for (long word : bloomFilter) {
+            buffer.putLong(word); // Add the Bloom filter words to the buffer
+        }
         return buffer.array(); // Return serialized data
     }
+
+    // Scrambles the key bits to derive the filter's probe positions
+    private static int mix(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
 }
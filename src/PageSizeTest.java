@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A test class for per-file page sizes. For `HeapFile` and `SortedFile`, with and without a B+-tree index, it creates
+ * files with each supported page size from 8KB to 64KB, fills them, and checks that the page directory records the
+ * size, that the file reopens with its own size when the options leave the size unset or set the same size, and
+ * that opening it with a different size is rejected without changing the file. It also checks that the directory
+ * records a Bloom filter size that grows with the page size, and measures the filters' false positive rate over
+ * every key inside a page's key range that the page does not hold. The test exits with an exception if any check fails.
+ */
+public class PageSizeTest {
+    private static final String DATA_FILENAME = "page_size_test.dat";
+    private static final String DIRECTORY_FILENAME = "page_size_test.pd";
+    private static final int RECORD_COUNT = 3000; // Enough records to fill several pages of the largest size
+    private static final double MAX_FALSE_POSITIVE_RATE = 0.02; // Bound for filters of at least 8 bits per key
+
+    public static void main(String[] args) {
+        try {
+            for (int pageSize : new int[]{8 * 1024, 16 * 1024, Page.MAX_PAGE_SIZE}) {
+                for (FileOptions.IndexType indexType : new FileOptions.IndexType[]{FileOptions.IndexType.NONE, FileOptions.IndexType.BTREE}) {
+                    run(false, pageSize, indexType);
+                    run(true, pageSize, indexType);
+                }
+            }
+            deleteFiles();
+            System.out.println("PageSizeTest passed");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void run(boolean sorted, int pageSize, FileOptions.IndexType indexType) throws IOException {
+        String name = (sorted ? "SortedFile" : "HeapFile") + " with " + pageSize + "-byte pages and index " + indexType;
+        deleteFiles();
+
+        // --- Create the file with the page size and fill it, deleting some records again ---
+        TreeMap<Integer, String> model = new TreeMap<>();
+        FileOptions created = new FileOptions().setPageSize(pageSize).setIndexType(indexType);
+        if (sorted) {
+            SortedFile sortedFile = new SortedFile(DATA_FILENAME, DIRECTORY_FILENAME, created);
+            for (int i = 0; i < RECORD_COUNT; i++) {
+                int key = (i * 7919) % RECORD_COUNT; // Every key once, in scattered order
+                String data = "PageSizeData" + key + "-".repeat(key % 150);
+                sortedFile.insertRecord(new Record(key, data));
+                model.put(key, data);
+            }
+            for (int key = 0; key < RECORD_COUNT; key += 5) {
+                check(sortedFile.deleteRecord(key), name + ": delete of key " + key + " failed");
+                model.remove(key);
+            }
+            sortedFile.close();
+        } else {
+            HeapFile heapFile = new HeapFile(DATA_FILENAME, DIRECTORY_FILENAME, created);
+            for (int i = 0; i < RECORD_COUNT; i++) {
+                int key = (i * 7919) % RECORD_COUNT;
+                String data = "PageSizeData" + key + "-".repeat(key % 150);
+                heapFile.insertRecord(new Record(key, data));
+                model.put(key, data);
+            }
+            for (int key = 0; key < RECORD_COUNT; key += 5) {
+                check(heapFile.deleteRecord(key), name + ": delete of key " + key + " failed");
+                model.remove(key);
+            }
+            heapFile.close();
+        }
+
+        // --- The directory header records the size, and the data file holds whole pages of that size ---
+        PageDirectory pageDirectory = PageDirectory.fromByteArray(Files.readAllBytes(Paths.get(DIRECTORY_FILENAME)));
+        check(pageDirectory.getPageSize() == pageSize, name + ": directory records " + pageDirectory.getPageSize() + "-byte pages");
+        long dataSize = Files.size(Paths.get(DATA_FILENAME));
+        check(dataSize == (long) pageDirectory.getPages().size() * pageSize, name + ": data file has " + dataSize
+                + " bytes for " + pageDirectory.getPages().size() + " pages");
+        check(pageDirectory.getPages().size() > 1, name + ": records fit on a single page");
+
+        // --- The filters are sized for the page size and rarely accept a key their page does not hold ---
+        check(pageDirectory.getBloomFilterBits() == PageInfo.bloomFilterBits(pageSize), name + ": directory records "
+                + pageDirectory.getBloomFilterBits() + "-bit filters");
+        double falsePositiveRate = measureFalsePositiveRate(pageDirectory, Files.readAllBytes(Paths.get(DATA_FILENAME)), name);
+        check(falsePositiveRate <= MAX_FALSE_POSITIVE_RATE, name + ": filters have a false positive rate of " + falsePositiveRate);
+
+        // --- Reopen without a page size, then with the same page size ---
+        checkReopen(sorted, new FileOptions().setIndexType(indexType), model, name + ", size unset");
+        checkReopen(sorted, new FileOptions().setPageSize(pageSize).setIndexType(indexType), model, name + ", same size");
+
+        // --- Reopening with another page size fails and leaves both files unchanged ---
+        byte[] data = Files.readAllBytes(Paths.get(DATA_FILENAME));
+        byte[] directory = Files.readAllBytes(Paths.get(DIRECTORY_FILENAME));
+        int otherSize = pageSize == Page.MAX_PAGE_SIZE ? Page.DEFAULT_PAGE_SIZE : pageSize * 2;
+        FileOptions mismatched = new FileOptions().setPageSize(otherSize).setIndexType(indexType);
+        try {
+            if (sorted) {
+                new SortedFile(DATA_FILENAME, DIRECTORY_FILENAME, mismatched).close();
+            } else {
+                new HeapFile(DATA_FILENAME, DIRECTORY_FILENAME, mismatched).close();
+            }
+            throw new IllegalStateException(name + ": opening with " + otherSize + "-byte pages succeeded");
+        } catch (IOException e) {
+            check(e.getMessage().startsWith("Page size mismatch"), name + ": unexpected failure " + e.getMessage());
+        }
+        check(Arrays.equals(data, Files.readAllBytes(Paths.get(DATA_FILENAME))), name + ": rejected open changed the data file");
+        check(Arrays.equals(directory, Files.readAllBytes(Paths.get(DIRECTORY_FILENAME))), name + ": rejected open changed the directory");
+        checkReopen(sorted, new FileOptions().setIndexType(indexType), model, name + ", after the rejected open");
+        System.out.printf("%s: %d records on %d pages, %d-bit filters, false positive rate %.4f%n", name, model.size(),
+                pageDirectory.getPages().size(), pageDirectory.getBloomFilterBits(), falsePositiveRate);
+    }
+
+    // Tests every key inside each page's key range that the page does not hold; returns the fraction the filter accepts
+    private static double measureFalsePositiveRate(PageDirectory pageDirectory, byte[] data, String name) {
+        int pageSize = pageDirectory.getPageSize();
+        long absent = 0;
+        long accepted = 0;
+        for (PageInfo pageInfo : pageDirectory.getPages()) {
+            int start = (int) pageInfo.getOffset();
+            Page page = Page.fromByteArray(Arrays.copyOfRange(data, start, start + pageSize));
+            Set<Integer> keys = new HashSet<>();
+            for (int slot = 0; slot < page.getSlotCount(); slot++) {
+                if (page.isSlotUsed(slot)) {
+                    keys.add(page.getKey(slot));
+                }
+            }
+            for (int key = pageInfo.getMinKey(); pageInfo.hasKeys() && key <= pageInfo.getMaxKey(); key++) {
+                if (!keys.contains(key)) {
+                    absent++;
+                    if (pageInfo.mightContain(key)) {
+                        accepted++;
+                    }
+                }
+            }
+        }
+        check(absent > 0, name + ": no page range has a key the page does not hold");
+        return (double) accepted / absent;
+    }
+
+    // Opens the file with the options and compares a full range search and point searches with the model
+    private static void checkReopen(boolean sorted, FileOptions options, TreeMap<Integer, String> model, String step)
+            throws IOException {
+        SortedFile sortedFile = sorted ? new SortedFile(DATA_FILENAME, DIRECTORY_FILENAME, options) : null;
+        HeapFile heapFile = sorted ? null : new HeapFile(DATA_FILENAME, DIRECTORY_FILENAME, options);
+        List<Record> records = sorted ? sortedFile.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE)
+                : heapFile.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        TreeMap<Integer, String> actual = new TreeMap<>();
+        for (Record record : records) {
+            actual.put(record.getKey(), record.getData().trim());
+        }
+        check(actual.equals(model), step + ": file holds " + actual.size() + " records, expected " + model.size());
+        for (int key = 0; key < RECORD_COUNT; key++) {
+            Record record = sorted ? sortedFile.searchRecord(key) : heapFile.searchRecord(key);
+            check((record != null) == model.containsKey(key), step + ": search for key " + key + " returned " + record);
+        }
+        if (sorted) {
+            sortedFile.close();
+        } else {
+            heapFile.close();
+        }
+    }
+
+    private static void deleteFiles() {
+        new java.io.File(DATA_FILENAME).delete();
+        new java.io.File(DIRECTORY_FILENAME).delete();
+        new java.io.File(DATA_FILENAME + HeapFile.BTREE_INDEX_SUFFIX).delete();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
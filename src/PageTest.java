@@ -0,0 +1,171 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A test class for the slotted layout of `Page`. For the smallest and the largest page size it fills a page with
+ * records of varying length, deletes every other record to fragment the record area, and inserts records that only
+ * fit once the holes are compacted. After each step every record is compared with a model of the page's slots, and
+ * the page is checked to survive serialization unchanged. It also checks that a record the page has no room for is
+ * rejected without changing the page, that used and empty slots are rejected by insert and delete, and that
+ * records longer than the fixed record size are cut or refused. The test exits with an exception if any check fails.
+ */
+public class PageTest {
+    private static final long SEED = 20240611L; // Fixed seed so that a failure can be reproduced
+
+    public static void main(String[] args) {
+        for (int pageSize : new int[]{Page.MIN_PAGE_SIZE, Page.MAX_PAGE_SIZE}) {
+            testFragmentation(pageSize);
+        }
+        testOversizeRecords();
+        System.out.println("PageTest passed");
+    }
+
+    private static void testFragmentation(int pageSize) {
+        Random random = new Random(SEED);
+        Page page = new Page(pageSize);
+        Map<Integer, Record> model = new HashMap<>(); // Record expected in each used slot
+        check(page.getFreeSpace() == Page.usableSpace(pageSize), pageSize + ": new page does not have all usable space free");
+
+        // --- Fill the page with records of random length, then with empty records until nothing fits ---
+        int key = 0;
+        while (page.hasRoomFor(new Record(0, "x".repeat(Record.DATA_SIZE)))) {
+            insert(page, model, new Record(key++, "v".repeat(random.nextInt(Record.DATA_SIZE + 1))));
+        }
+        while (page.hasRoomFor(new Record(0, ""))) {
+            insert(page, model, new Record(key++, ""));
+        }
+        checkPage(page, model, pageSize + ": full page");
+        check(page.getFreeSpace() < Record.MIN_STORED_SIZE + Page.SLOT_ENTRY_SIZE,
+                pageSize + ": full page still has " + page.getFreeSpace() + " free bytes");
+
+        // --- A record that does not fit is rejected and leaves the page unchanged ---
+        byte[] before = page.toByteArray();
+        int slot = page.findFreeSlot();
+        try {
+            page.insertRecord(slot, new Record(-1, "does not fit"));
+            throw new IllegalStateException(pageSize + ": insert into a full page succeeded");
+        } catch (IllegalStateException e) {
+            check(e.getMessage().startsWith("Page has no room"), pageSize + ": unexpected failure " + e.getMessage());
+        }
+        check(Arrays.equals(before, page.toByteArray()), pageSize + ": rejected insert changed the page");
+
+        // --- Delete every other record, leaving holes between the remaining bodies ---
+        int freeBefore = page.getFreeSpace();
+        int freed = 0;
+        for (int i = 1; i < page.getSlotCount() - 1; i += 2) {
+            freed += page.getRecordSize(i);
+            page.deleteRecord(i);
+            model.remove(i);
+        }
+        check(page.getFreeSpace() == freeBefore + freed, pageSize + ": deletes freed " + (page.getFreeSpace() - freeBefore)
+                + " bytes, expected " + freed);
+        checkPage(page, model, pageSize + ": fragmented page");
+
+        // --- Insert the longest records into the holes; each needs more than the contiguous free space ---
+        Record longest = new Record(0, "L".repeat(Record.DATA_SIZE));
+        int inserted = 0;
+        while (page.hasRoomFor(longest)) {
+            insert(page, model, new Record(key++, "L".repeat(Record.DATA_SIZE)));
+            inserted++;
+        }
+        check(inserted > 0, pageSize + ": no long record fit after the deletes");
+        checkPage(page, model, pageSize + ": compacted page");
+
+        // --- Delete and reinsert at random, mixing compaction with holes ---
+        for (int i = 0; i < 2000; i++) {
+            int target = random.nextInt(page.getSlotCount() + 1);
+            if (model.containsKey(target) && random.nextBoolean()) {
+                page.deleteRecord(target);
+                model.remove(target);
+            } else {
+                Record record = new Record(key++, "r".repeat(random.nextInt(Record.DATA_SIZE + 1)));
+                if (page.hasRoomFor(record)) {
+                    insert(page, model, record);
+                }
+            }
+        }
+        checkPage(page, model, pageSize + ": random deletes and inserts");
+
+        // --- Used and empty slots are refused ---
+        int used = model.keySet().iterator().next();
+        expectIllegalArgument(() -> page.insertRecord(used, new Record(-2, "")), pageSize + ": insert into a used slot");
+        int empty = page.getSlotCount() + 1;
+        expectIllegalArgument(() -> page.deleteRecord(empty), pageSize + ": delete of an empty slot");
+
+        // --- Deleting everything makes the whole page free again ---
+        for (int i = 0; i < page.getSlotCount(); i++) {
+            if (model.containsKey(i)) {
+                page.deleteRecord(i);
+                model.remove(i);
+            }
+        }
+        checkPage(page, model, pageSize + ": empty page");
+        check(page.getFreeSpace() == Page.usableSpace(pageSize), pageSize + ": emptied page has "
+                + page.getFreeSpace() + " free bytes");
+        System.out.println(pageSize + ": " + key + " records inserted");
+    }
+
+    private static void testOversizeRecords() {
+        // --- Data longer than the record size is cut, at a character boundary for multi-byte text ---
+        Record ascii = new Record(1, "a".repeat(Record.DATA_SIZE + 10));
+        check(ascii.getStoredSize() == Record.RECORD_SIZE, "long ASCII record stores " + ascii.getStoredSize() + " bytes");
+        Record korean = new Record(2, "가".repeat(Record.DATA_SIZE)); // Three bytes per character in UTF-8
+        String kept = korean.getData().trim();
+        check(kept.equals("가".repeat(Record.DATA_SIZE / 3)), "long multi-byte record kept " + kept.length() + " characters");
+        check(korean.getStoredSize() == Integer.BYTES + kept.getBytes(StandardCharsets.UTF_8).length,
+                "long multi-byte record stores " + korean.getStoredSize() + " bytes");
+
+        // --- A stored size outside the record bounds is refused ---
+        ByteBuffer buffer = ByteBuffer.allocate(Record.RECORD_SIZE * 2);
+        expectIllegalArgument(() -> Record.fromStoredBytes(buffer, 0, Record.RECORD_SIZE + 1), "oversize stored record");
+        expectIllegalArgument(() -> Record.fromStoredBytes(buffer, 0, Integer.BYTES - 1), "undersize stored record");
+    }
+
+    private static void insert(Page page, Map<Integer, Record> model, Record record) {
+        int slot = page.findFreeSlot();
+        int freeBefore = page.getFreeSpace();
+        int entryBytes = slot < page.getSlotCount() ? 0 : Page.SLOT_ENTRY_SIZE;
+        page.insertRecord(slot, record);
+        model.put(slot, record);
+        check(page.getFreeSpace() == freeBefore - record.getStoredSize() - entryBytes, "insert into slot " + slot
+                + " used " + (freeBefore - page.getFreeSpace()) + " bytes");
+    }
+
+    // Compares every slot with the model, directly and after a round trip through the page's bytes
+    private static void checkPage(Page page, Map<Integer, Record> model, String step) {
+        check(page.getNumberOfRecords() == model.size(), step + ": page has " + page.getNumberOfRecords()
+                + " records, expected " + model.size());
+        Page copy = Page.fromByteArray(page.toByteArray());
+        check(copy.getFreeSpace() == page.getFreeSpace(), step + ": free space changed by serialization");
+        for (Page p : new Page[]{page, copy}) {
+            for (int slot = 0; slot < p.getSlotCount(); slot++) {
+                Record expected = model.get(slot);
+                check(p.isSlotUsed(slot) == (expected != null), step + ": slot " + slot + " use does not match");
+                if (expected != null) {
+                    check(p.getKey(slot) == expected.getKey(), step + ": slot " + slot + " holds key " + p.getKey(slot));
+                    check(p.getRecordSize(slot) == expected.getStoredSize(), step + ": slot " + slot + " has the wrong size");
+                    check(p.getRecord(slot).getData().equals(expected.getData()), step + ": slot " + slot + " has the wrong data");
+                }
+            }
+        }
+    }
+
+    private static void expectIllegalArgument(Runnable action, String what) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new IllegalStateException(what + " was not rejected");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -1,160 +1,449 @@
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Random;
 
 /**
- * A performance test class for comparing the performance of `HeapFile` and `SortedFile` file organizations.
- * This test measures the time taken for various operations, including inserting records, searching records by key,
- * and performing range searches. The results will help evaluate and compare the efficiency of both file organizations
- * under different types of operations, giving insights into their relative performance strengths and weaknesses.
+ * Benchmark harness for `HeapFile` and `SortedFile`, run as a plain main program.
+ * Every combination of file organization, key distribution, record count and operation is measured
+ * as a separate trial: a file holding the given number of records is built outside the timed region,
+ * the operation is run for a number of warmup iterations whose results are discarded, and then for a
+ * number of measured iterations. Files are rebuilt before every iteration of an operation that
+ * modifies them, so each iteration starts from the same state.
+ * <p>
+ * All keys come from seeded generators, so two runs with the same arguments perform the same
+ * operations. Loaded records have even keys; searches for misses and inserts use odd keys that fall
+ * between them. Keys are drawn uniformly, sequentially, or from a scrambled Zipfian distribution in
+ * which a few keys are hit far more often than the rest.
+ * <p>
+ * For each trial the harness reports the mean time per operation with its standard deviation across
+ * iterations, the bytes allocated per operation by the benchmark thread, and the disk reads and
+ * writes per operation. Organizations are not compared against each other: each row stands alone,
+ * so a regression shows up as a change in that row between runs.
+ * <p>
+ * Usage: {@code java PerformanceTest [--option=value ...]} with the options
+ * {@code --files=HEAP,SORTED}, {@code --distributions=UNIFORM,SEQUENTIAL,ZIPFIAN},
+ * {@code --records=1000,10000}, {@code --operations=INSERT,SEARCH_HIT,SEARCH_MISS,DELETE,RANGE_NARROW,RANGE_WIDE},
+ * {@code --ops=200} (operations per iteration), {@code --warmup=3}, {@code --iterations=5},
+ * {@code --seed=42}, {@code --index=NONE} and {@code --page-sizes=4096}. The defaults are shown; a wider
+ * sweep such as {@code --records=1000,10000,100000,1000000} or {@code --page-sizes=4096,16384,65536}
+ * takes correspondingly longer.
  */
 public class PerformanceTest {
+    private static final String DATA_FILENAME = "perf_test.dat";
+    private static final String DIRECTORY_FILENAME = "perf_test.pd";
+    private static final int NARROW_RANGE_RECORDS = 10; // Records covered by a narrow range search
+    private static final int WIDE_RANGE_PERCENT = 10;   // Percentage of the records covered by a wide range search
+    private static final double ZIPFIAN_CONSTANT = 0.99; // Skew of the Zipfian distribution, as in YCSB
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static long sink; // Consumes operation results so that the JIT cannot drop the operations
+
+    /**
+     * File organizations under test.
+     */
+    enum FileKind { HEAP, SORTED }
+
+    /**
+     * How the keys of the loaded records are ordered and how operation keys are chosen.
+     */
+    enum KeyDistribution { UNIFORM, SEQUENTIAL, ZIPFIAN }
+
+    /**
+     * Benchmarked operations. Mutating operations get a freshly built file for every iteration.
+     */
+    enum Operation {
+        INSERT(true), SEARCH_HIT(false), SEARCH_MISS(false), DELETE(true), RANGE_NARROW(false), RANGE_WIDE(false);
+
+        private final boolean mutating;
+
+        Operation(boolean mutating) {
+            this.mutating = mutating;
+        }
+    }
+
     public static void main(String[] args) {
         try {
-            // Define filenames for HeapFile and SortedFile (data and directory files)
-            String heapDataFilename = "hf_perf_test.dat";
-            String heapDirectoryFilename = "hf_perf_test.pd";
-            String sortedDataFilename = "sf_perf_test.dat";
-            String sortedDirectoryFilename = "sf_perf_test.pd";
-
-            // Clean up any existing files to ensure a fresh test environment
-            new java.io.File(heapDataFilename).delete();
-            new java.io.File(heapDirectoryFilename).delete();
-            new java.io.File(sortedDataFilename).delete();
-            new java.io.File(sortedDirectoryFilename).delete();
-
-            // Number of records to insert, searches to perform, and range searches
-            int numRecords = 1000;
-            int numSearches = 1000; // Number of searches to perform
-            int rangeSearches = 1000; // Number of range searches to perform
-
-            // Generate random keys for insertion (random key range for testing)
-            Random rand = new Random();
-            List<Integer> keys = new ArrayList<>();
-            for (int i = 0; i < numRecords; i++) {
-                keys.add(rand.nextInt(numRecords * 10)); // Generate random keys within a wide range
+            Settings settings = Settings.parse(args);
+            System.out.printf("Warmup: %d iterations, Measurement: %d iterations, %d ops each, seed %d, index %s%n",
+                    settings.warmup, settings.iterations, settings.opsPerIteration, settings.seed, settings.indexType);
+            System.out.printf("Allocation: %s%n%n", allocationSupported() ? "bytes allocated by the benchmark thread" : "not supported by this JVM");
+            System.out.printf("%-6s %-12s %-10s %9s %6s %12s %10s %10s %9s %9s%n",
+                    "File", "Operation", "Keys", "Records", "Page", "ns/op", "sd", "B/op", "reads/op", "writes/op");
+            for (FileKind kind : settings.files) {
+                for (KeyDistribution distribution : settings.distributions) {
+                    for (int records : settings.recordCounts) {
+                        for (int pageSize : settings.pageSizes) {
+                            for (Operation operation : settings.operations) {
+                                Result result = runTrial(settings, kind, distribution, records, pageSize, operation);
+                                System.out.printf("%-6s %-12s %-10s %9d %5dK %12.1f %10.1f %10s %9.2f %9.2f%n",
+                                        kind, operation, distribution, records, pageSize / 1024, result.meanNanos,
+                                        result.stdDevNanos, result.bytesPerOp < 0 ? "n/a" : String.format("%.0f", result.bytesPerOp),
+                                        result.readsPerOp, result.writesPerOp);
+                            }
+                        }
+                    }
+                }
             }
+            System.out.println("\n(checksum " + sink + ")");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            deleteFiles();
+        }
+    }
 
-            // Shuffle the keys to simulate random insertion order
-            java.util.Collections.shuffle(keys);
+    /**
+     * Measurements of one trial, averaged over its measured iterations.
+     */
+    private static class Result {
+        double meanNanos;   // Mean time per operation
+        double stdDevNanos; // Standard deviation of the per-iteration means
+        double bytesPerOp;  // Bytes allocated per operation, negative if not measurable
+        double readsPerOp;  // Disk reads per operation
+        double writesPerOp; // Disk writes per operation
+    }
+
+    // Runs the warmup and measured iterations of one benchmark and summarizes the measured ones
+    private static Result runTrial(Settings settings, FileKind kind, KeyDistribution distribution, int records,
+                                   int pageSize, Operation operation) throws IOException {
+        List<Record> loaded = loadedRecords(distribution, records, settings.seed);
+        KeyGenerator keys = new KeyGenerator(distribution, records, settings.seed ^ operation.ordinal());
+        double[] nanosPerOp = new double[settings.iterations];
+        long allocated = 0;
+        long reads = 0;
+        long writes = 0;
+        BenchmarkFile file = null;
+        try {
+            for (int iteration = 0; iteration < settings.warmup + settings.iterations; iteration++) {
+                if (file == null || operation.mutating) {
+                    if (file != null) {
+                        file.close();
+                    }
+                    file = openFile(kind, loaded, settings, pageSize);
+                }
+                // 연산에 쓸 키와 레코드는 시간 측정 전에 모두 만들어 둔다
+                int[] operationKeys = new int[settings.opsPerIteration];
+                for (int i = 0; i < operationKeys.length; i++) {
+                    operationKeys[i] = keys.next();
+                }
+                Record[] inserted = operation == Operation.INSERT ? newRecords(operationKeys) : null;
 
-            // Generate random keys for searches
-            List<Integer> searchKeys = new ArrayList<>();
-            for (int i = 0; i < numSearches; i++) {
-                searchKeys.add(rand.nextInt(numRecords * 10)); // Random keys for search
+                IoStatistics statistics = file.statistics();
+                long readsBefore = statistics.getPageReadRequests() + statistics.getDirectoryReads();
+                long writesBefore = statistics.getPageWriteRequests() + statistics.getDirectoryWrites();
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < operationKeys.length; i++) {
+                    sink += execute(file, operation, operationKeys[i], inserted == null ? null : inserted[i], records);
+                }
+                long elapsed = System.nanoTime() - start;
+                long allocatedAfter = allocatedBytes();
+
+                if (iteration >= settings.warmup) {
+                    nanosPerOp[iteration - settings.warmup] = (double) elapsed / operationKeys.length;
+                    allocated = allocatedBefore < 0 ? -1 : allocated + (allocatedAfter - allocatedBefore);
+                    reads += statistics.getPageReadRequests() + statistics.getDirectoryReads() - readsBefore;
+                    writes += statistics.getPageWriteRequests() + statistics.getDirectoryWrites() - writesBefore;
+                }
+            }
+        } finally {
+            if (file != null) {
+                file.close();
             }
+            deleteFiles();
+        }
+        long measuredOps = (long) settings.iterations * settings.opsPerIteration;
+        Result result = new Result();
+        result.meanNanos = Arrays.stream(nanosPerOp).average().orElse(0);
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - result.meanNanos) * (value - result.meanNanos);
+        }
+        result.stdDevNanos = nanosPerOp.length > 1 ? Math.sqrt(variance / (nanosPerOp.length - 1)) : 0;
+        result.bytesPerOp = allocated < 0 ? -1 : (double) allocated / measuredOps;
+        result.readsPerOp = (double) reads / measuredOps;
+        result.writesPerOp = (double) writes / measuredOps;
+        return result;
+    }
+
+    // Runs one operation on the key drawn for it and returns a value derived from its result
+    private static long execute(BenchmarkFile file, Operation operation, int index, Record record, int records) throws IOException {
+        switch (operation) {
+            case INSERT:
+                file.insert(record);
+                return record.getKey();
+            case SEARCH_HIT:
+                return resultOf(file.search(loadedKey(index)));
+            case SEARCH_MISS:
+                return resultOf(file.search(missingKey(index)));
+            case DELETE:
+                return file.delete(loadedKey(index)) ? 1 : 0; // 반복해서 뽑힌 키는 이미 지워져 실패한다
+            case RANGE_NARROW:
+                return file.range(loadedKey(index), loadedKey(index) + 2 * NARROW_RANGE_RECORDS - 1).size();
+            case RANGE_WIDE:
+                int width = Math.max(1, records * WIDE_RANGE_PERCENT / 100);
+                return file.range(loadedKey(index), loadedKey(index) + 2 * width - 1).size();
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private static long resultOf(Record record) {
+        return record == null ? 0 : record.getKey();
+    }
+
+    // Loaded records have even keys, so the odd key after each one is known to be absent
+    private static int loadedKey(int index) {
+        return 2 * index;
+    }
+
+    private static int missingKey(int index) {
+        return 2 * index + 1;
+    }
+
+    // Records loaded before a trial: ascending for sequential keys, otherwise in a seeded random order
+    private static List<Record> loadedRecords(KeyDistribution distribution, int records, long seed) {
+        List<Record> loaded = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            loaded.add(new Record(loadedKey(i), "Data" + i));
+        }
+        if (distribution != KeyDistribution.SEQUENTIAL) {
+            Collections.shuffle(loaded, new Random(seed));
+        }
+        return loaded;
+    }
 
-            // Generate random ranges for range searches
-            List<int[]> ranges = new ArrayList<>();
-            for (int i = 0; i < rangeSearches; i++) {
-                int lower = rand.nextInt(numRecords * 10); // Random lower bound
-                int upper = lower + rand.nextInt(1000); // Range width up to 1000
-                ranges.add(new int[]{lower, upper});
+    // New records inserted between the loaded ones
+    private static Record[] newRecords(int[] indexes) {
+        Record[] records = new Record[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int key = missingKey(indexes[i]);
+            records[i] = new Record(key, "Data" + key);
+        }
+        return records;
+    }
+
+    // Builds a fresh file holding the loaded records with the bulk loading paths
+    private static BenchmarkFile openFile(FileKind kind, List<Record> loaded, Settings settings, int pageSize) throws IOException {
+        deleteFiles();
+        FileOptions options = new FileOptions().setIndexType(settings.indexType).setPageSize(pageSize);
+        if (kind == FileKind.HEAP) {
+            HeapFile heapFile = new HeapFile(DATA_FILENAME, DIRECTORY_FILENAME, options);
+            heapFile.insertAll(loaded);
+            return new BenchmarkFile() {
+                public void insert(Record record) throws IOException { heapFile.insertRecord(record); }
+                public Record search(int key) throws IOException { return heapFile.searchRecord(key); }
+                public boolean delete(int key) throws IOException { return heapFile.deleteRecord(key); }
+                public List<Record> range(int lowerBound, int upperBound) throws IOException { return heapFile.rangeSearch(lowerBound, upperBound); }
+                public IoStatistics statistics() { return heapFile.getStatistics(); }
+                public void close() throws IOException { heapFile.close(); }
+            };
+        }
+        SortedFile sortedFile = new SortedFile(DATA_FILENAME, DIRECTORY_FILENAME, options);
+        sortedFile.bulkLoad(loaded.iterator(), ExternalMergeSort.DEFAULT_RUN_RECORDS);
+        return new BenchmarkFile() {
+            public void insert(Record record) throws IOException { sortedFile.insertRecord(record); }
+            public Record search(int key) throws IOException { return sortedFile.searchRecord(key); }
+            public boolean delete(int key) throws IOException { return sortedFile.deleteRecord(key); }
+            public List<Record> range(int lowerBound, int upperBound) throws IOException { return sortedFile.rangeSearch(lowerBound, upperBound); }
+            public IoStatistics statistics() { return sortedFile.getStatistics(); }
+            public void close() throws IOException { sortedFile.close(); }
+        };
+    }
+
+    private static void deleteFiles() {
+        for (String suffix : new String[]{"", SortedFile.BTREE_INDEX_SUFFIX, SortedFile.HASH_INDEX_SUFFIX, SortedFile.WAL_SUFFIX}) {
+            new File(DATA_FILENAME + suffix).delete();
+        }
+        new File(DIRECTORY_FILENAME).delete();
+    }
+
+    private static boolean allocationSupported() {
+        return THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+    }
+
+    // Bytes allocated so far by the current thread, or -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        if (!allocationSupported()) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * The operations of one benchmark on a file organization.
+     */
+    private interface BenchmarkFile extends AutoCloseable {
+        void insert(Record record) throws IOException;
+
+        Record search(int key) throws IOException;
+
+        boolean delete(int key) throws IOException;
+
+        List<Record> range(int lowerBound, int upperBound) throws IOException;
+
+        IoStatistics statistics();
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Draws record indexes in [0, records) for operations, from a seeded generator.
+     */
+    private static class KeyGenerator {
+        private final KeyDistribution distribution;
+        private final int records;
+        private final Random random;
+        private int nextSequential; // Next index for sequential keys, wrapping around
+        private double zetaN;       // Zipfian normalization constant for all records
+        private double eta;         // Zipfian constant derived from the first two records
+
+        KeyGenerator(KeyDistribution distribution, int records, long seed) {
+            this.distribution = distribution;
+            this.records = records;
+            this.random = new Random(seed);
+            if (distribution == KeyDistribution.ZIPFIAN) {
+                zetaN = zeta(records);
+                double zeta2 = zeta(2);
+                eta = (1 - Math.pow(2.0 / records, 1 - ZIPFIAN_CONSTANT)) / (1 - zeta2 / zetaN);
             }
+        }
 
-            // --- HeapFile Performance Test ---
-            System.out.println("HeapFile Performance Test:");
-            HeapFile heapFile = new HeapFile(heapDataFilename, heapDirectoryFilename);
+        int next() {
+            switch (distribution) {
+                case SEQUENTIAL:
+                    int index = nextSequential;
+                    nextSequential = (nextSequential + 1) % records;
+                    return index;
+                case ZIPFIAN:
+                    return scramble(nextZipfianRank());
+                default:
+                    return random.nextInt(records);
+            }
+        }
+
+        // Rank drawn with Gray et al.'s method, as in YCSB: rank 0 is the most popular
+        private long nextZipfianRank() {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, ZIPFIAN_CONSTANT)) {
+                return 1;
+            }
+            long rank = (long) (records * Math.pow(eta * u - eta + 1, 1 / (1 - ZIPFIAN_CONSTANT)));
+            return Math.min(rank, records - 1);
+        }
+
+        // Spreads popular ranks across the key space so that hot keys do not cluster on the first pages
+        private int scramble(long rank) {
+            long hash = 0xcbf29ce484222325L; // FNV-1a over the rank's bytes
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash ^= (rank >>> (8 * i)) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return (int) Long.remainderUnsigned(hash, records);
+        }
 
-            // Measure insertion time for HeapFile
-            long heapInsertStart = System.nanoTime();
-            for (int key : keys) {
-                String data = "HeapData" + key;
-                Record record = new Record(key, data);
-                heapFile.insertRecord(record); // Insert record into HeapFile
+        private static double zeta(long n) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, ZIPFIAN_CONSTANT);
             }
-            long heapInsertEnd = System.nanoTime();
-            double heapInsertTime = (heapInsertEnd - heapInsertStart) / 1e6; // Convert to milliseconds
-            System.out.printf("HeapFile Insert Time: %.2f ms\n", heapInsertTime);
-            System.out.println("Disk Reads: " + HeapFile.getDiskReadCount());
-            System.out.println("Disk Writes: " + HeapFile.getDiskWriteCount());
-
-            // Reset disk I/O counters for further tests
-            HeapFile.resetDiskIOCounters();
-
-            // Measure search time for HeapFile
-            long heapSearchStart = System.nanoTime();
-            for (int key : searchKeys) {
-                heapFile.searchRecord(key); // Search for records by key
+            return sum;
+        }
+    }
+
+    /**
+     * Command-line settings of a run.
+     */
+    private static class Settings {
+        EnumSet<FileKind> files = EnumSet.allOf(FileKind.class);
+        EnumSet<KeyDistribution> distributions = EnumSet.allOf(KeyDistribution.class);
+        EnumSet<Operation> operations = EnumSet.allOf(Operation.class);
+        int[] recordCounts = {1000, 10000};
+        int[] pageSizes = {Page.DEFAULT_PAGE_SIZE};
+        int opsPerIteration = 200;
+        int warmup = 3;
+        int iterations = 5;
+        long seed = 42;
+        FileOptions.IndexType indexType = FileOptions.IndexType.NONE;
+
+        static Settings parse(String[] args) {
+            Settings settings = new Settings();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (!arg.startsWith("--") || equals < 0) {
+                    throw new IllegalArgumentException("Expected --option=value but got: " + arg);
+                }
+                String name = arg.substring(2, equals);
+                String value = arg.substring(equals + 1);
+                switch (name) {
+                    case "files":
+                        settings.files = parseEnums(FileKind.class, value);
+                        break;
+                    case "distributions":
+                        settings.distributions = parseEnums(KeyDistribution.class, value);
+                        break;
+                    case "operations":
+                        settings.operations = parseEnums(Operation.class, value);
+                        break;
+                    case "records":
+                        settings.recordCounts = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "ops":
+                        settings.opsPerIteration = Integer.parseInt(value);
+                        break;
+                    case "warmup":
+                        settings.warmup = Integer.parseInt(value);
+                        break;
+                    case "iterations":
+                        settings.iterations = Integer.parseInt(value);
+                        break;
+                    case "seed":
+                        settings.seed = Long.parseLong(value);
+                        break;
+                    case "index":
+                        settings.indexType = FileOptions.IndexType.valueOf(value);
+                        break;
+                    case "page-sizes":
+                        settings.pageSizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: --" + name);
+                }
             }
-            long heapSearchEnd = System.nanoTime();
-            double heapSearchTime = (heapSearchEnd - heapSearchStart) / 1e6;
-            System.out.printf("HeapFile Search Time for %d searches: %.2f ms\n", numSearches, heapSearchTime);
-
-            // Measure range search time for HeapFile
-            long heapRangeSearchStart = System.nanoTime();
-            for (int[] range : ranges) {
-                heapFile.rangeSearch(range[0], range[1]); // Perform range search
+            if (settings.iterations <= 0 || settings.opsPerIteration <= 0 || settings.warmup < 0) {
+                throw new IllegalArgumentException("Iterations and operations per iteration must be positive.");
             }
-            long heapRangeSearchEnd = System.nanoTime();
-            double heapRangeSearchTime = (heapRangeSearchEnd - heapRangeSearchStart) / 1e6;
-            System.out.printf("HeapFile Range Search Time for %d ranges: %.2f ms\n", rangeSearches, heapRangeSearchTime);
-            System.out.println("Disk Reads: " + HeapFile.getDiskReadCount());
-            System.out.println("Disk Writes: " + HeapFile.getDiskWriteCount());
-
-            // --- SortedFile Performance Test ---
-            System.out.println("\nSortedFile Performance Test:");
-            SortedFile sortedFile = new SortedFile(sortedDataFilename, sortedDirectoryFilename);
-
-            // Measure insertion time for SortedFile
-            long sortedInsertStart = System.nanoTime();
-            for (int key : keys) {
-                String data = "SortedData" + key;
-                Record record = new Record(key, data);
-                sortedFile.insertRecord(record); // Insert record into SortedFile
+            for (int records : settings.recordCounts) {
+                if (records < 2) {
+                    throw new IllegalArgumentException("Record counts must be at least 2: " + records);
+                }
             }
-            long sortedInsertEnd = System.nanoTime();
-            double sortedInsertTime = (sortedInsertEnd - sortedInsertStart) / 1e6;
-            System.out.printf("SortedFile Insert Time: %.2f ms\n", sortedInsertTime);
-            System.out.println("Disk Reads: " + SortedFile.getDiskReadCount());
-            System.out.println("Disk Writes: " + SortedFile.getDiskWriteCount());
-
-            // Reset disk I/O counters for further tests
-            SortedFile.resetDiskIOCounters();
-
-            // Measure search time for SortedFile
-            long sortedSearchStart = System.nanoTime();
-            for (int key : searchKeys) {
-                sortedFile.searchRecord(key); // Search for records by key
+            for (int pageSize : settings.pageSizes) {
+                if (!Page.isValidPageSize(pageSize)) {
+                    throw new IllegalArgumentException("Page sizes must be powers of two from 4096 to 65536: " + pageSize);
+                }
             }
-            long sortedSearchEnd = System.nanoTime();
-            double sortedSearchTime = (sortedSearchEnd - sortedSearchStart) / 1e6;
-            System.out.printf("SortedFile Search Time for %d searches: %.2f ms\n", numSearches, sortedSearchTime);
-
-            // Measure range search time for SortedFile
-            long sortedRangeSearchStart = System.nanoTime();
-            for (int[] range : ranges) {
-                sortedFile.rangeSearch(range[0], range[1]); // Perform range search
+            return settings;
+        }
+
+        private static <E extends Enum<E>> EnumSet<E> parseEnums(Class<E> type, String value) {
+            EnumSet<E> result = EnumSet.noneOf(type);
+            for (String name : value.split(",")) {
+                result.add(Enum.valueOf(type, name.trim()));
             }
-            long sortedRangeSearchEnd = System.nanoTime();
-            double sortedRangeSearchTime = (sortedRangeSearchEnd - sortedRangeSearchStart) / 1e6;
-            System.out.printf("SortedFile Range Search Time for %d ranges: %.2f ms\n", rangeSearches, sortedRangeSearchTime);
-            System.out.println("Disk Reads: " + SortedFile.getDiskReadCount());
-            System.out.println("Disk Writes: " + SortedFile.getDiskWriteCount());
-
-            // --- Performance Comparison Summary ---
-            System.out.println("\nPerformance Comparison Summary:");
-
-            // Insertion time comparison
-            double insertSpeedup = heapInsertTime / sortedInsertTime;
-            System.out.printf("Insertion Time: SortedFile is %.2f times faster than HeapFile\n", insertSpeedup);
-
-            // Search time comparison
-            double searchSpeedup = heapSearchTime / sortedSearchTime;
-            System.out.printf("Search Time: SortedFile is %.2f times faster than HeapFile\n", searchSpeedup);
-
-            // Range search time comparison
-            double rangeSearchSpeedup = heapRangeSearchTime / sortedRangeSearchTime;
-            System.out.printf("Range Search Time: SortedFile is %.2f times faster than HeapFile\n", rangeSearchSpeedup);
-
-            // Clean up
-            new java.io.File(heapDataFilename).delete();
-            new java.io.File(heapDirectoryFilename).delete();
-            new java.io.File(sortedDataFilename).delete();
-            new java.io.File(sortedDirectoryFilename).delete();
-        } catch (IOException e) {
-            e.printStackTrace();
+            return result;
         }
     }
 }
@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PeriodicTask runs an I/O action at a fixed interval on its own daemon thread, as for background
+ * checkpoints. An action that fails is not retried: the failure is kept and rethrown by
+ * {@link #checkFailure()}, so the owning file can report it from its next foreground call.
+ */
+public class PeriodicTask implements AutoCloseable {
+    /**
+     * The work run on each tick.
+     */
+    public interface Action {
+        /**
+         * Performs one round of background work.
+         *
+         * @throws IOException If an I/O error occurs.
+         */
+        void run() throws IOException;
+    }
+
+    private final ScheduledExecutorService executor; // Single daemon thread running the action
+    private volatile IOException failure;            // First failure of the action, null if none
+
+    /**
+     * Starts running the action at a fixed delay between the end of one run and the start of the next.
+     *
+     * @param name           The name of the background thread.
+     * @param intervalMillis The delay between runs in milliseconds.
+     * @param action         The action to run.
+     */
+    public PeriodicTask(String name, long intervalMillis, Action action) {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true); // Never keeps the JVM alive
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                action.run();
+            } catch (IOException e) {
+                failure = e;
+                executor.shutdown(); // Stop after the first failure
+            } catch (RuntimeException e) {
+                failure = new IOException("Background task " + name + " failed", e);
+                executor.shutdown();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rethrows the failure of a previous run, if any.
+     *
+     * @throws IOException The failure raised by the action.
+     */
+    public void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Background task failed", e);
+        }
+    }
+
+    /**
+     * Stops scheduling runs and waits for a run in progress to finish.
+     * Calling close more than once has no effect.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.IOException;
+
+/**
+ * ReadAhead detects sequential page access by one scan and has the buffer pool read the pages that
+ * follow before the scan asks for them. Once the scan has read a few pages at consecutive offsets,
+ * the next window of pages is read with one large request, and a new window is read each time the
+ * scan reaches the end of the previous one, so a sequential scan issues one read per window instead
+ * of one per page. A scan that jumps to another offset starts a new run and reads no pages ahead
+ * until it is sequential again.
+ * <p>
+ * The window is capped at a quarter of the buffer pool so that read-ahead cannot flush the pages
+ * other operations are using. An instance belongs to a single scan and is not thread-safe.
+ */
+public class ReadAhead {
+    public static final int DEFAULT_WINDOW_PAGES = 16; // Pages read ahead per window
+    private static final int SEQUENTIAL_TRIGGER = 2; // Consecutive pages read before read-ahead starts
+
+    private final BufferPool bufferPool; // Pool the pages are read into
+    private final int windowPages;       // Pages read per window, after the cap
+    private long nextOffset = -1;        // Offset that continues the current sequential run
+    private int runLength;               // Pages read in the current sequential run
+    private long prefetchedUntil;        // Offset just past the last page read ahead
+
+    /**
+     * Constructs a read-ahead detector for one scan.
+     *
+     * @param bufferPool  The buffer pool the scan reads pages through.
+     * @param windowPages The number of pages to read ahead at a time, 0 to disable read-ahead.
+     */
+    public ReadAhead(BufferPool bufferPool, int windowPages) {
+        this.bufferPool = bufferPool;
+        this.windowPages = Math.min(windowPages, bufferPool.getFrameCount() / 4);
+    }
+
+    /**
+     * Notes that the scan is about to read the page at the given offset, and reads the pages from that
+     * offset onwards with one request if the scan is sequential and has used up the previous window.
+     *
+     * @param offset    The offset of the page the scan reads next.
+     * @param endOffset The offset just past the last page of the file; no page at or beyond it is read.
+     * @throws IOException If an I/O error occurs while reading ahead.
+     */
+    public void access(long offset, long endOffset) throws IOException {
+        runLength = offset == nextOffset ? runLength + 1 : 1;
+        int pageSize = bufferPool.getPageSize();
+        nextOffset = offset + pageSize;
+        if (windowPages < 2 || runLength < SEQUENTIAL_TRIGGER || offset < prefetchedUntil) {
+            return;
+        }
+        int pages = (int) Math.min(windowPages, (endOffset - offset) / pageSize);
+        if (pages > 1) {
+            bufferPool.prefetch(offset, pages);
+            prefetchedUntil = offset + (long) pages * pageSize;
+        }
+    }
+}
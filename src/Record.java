@@ -1,15 +1,25 @@
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Represents a record in a heap or sorted file with a unique key and fixed-length data.
  * Each record consists of an integer key and a fixed-length data string (250 bytes).
+ * Pages store records in a variable-length form without the padding, see {@link #toStoredBytes()}.
+ * <p>
+ * The data is kept as its UTF-8 bytes, padded with spaces to the fixed length, so a record is
+ * serialized and deserialized by copying bytes; the string form is only decoded when
+ * {@link #getData()} is called, and then cached.
  */
 public class Record {
     public static final int DATA_SIZE = 250; // Fixed size of data in bytes
     public static final int RECORD_SIZE = Integer.BYTES + DATA_SIZE; // Total record size in bytes
+    public static final int MIN_STORED_SIZE = Integer.BYTES; // Stored size of a record with empty data
+    private static final byte PADDING = ' '; // Byte filling the data after its content
     private int key; // Unique identifier for the record
-    private String data; // Fixed-length string (250 bytes)
+    private final byte[] data = new byte[DATA_SIZE]; // UTF-8 data bytes, padded with spaces to DATA_SIZE
+    private int length; // Number of data bytes before the trailing padding
+    private String decoded; // Data string decoded on first access, null until then
 
     // Constructor to initialize a record with a key and data
     public Record(int key, String data) {
@@ -17,7 +27,12 @@ public class Record {
             throw new IllegalArgumentException("Data cannot be null");
         }
         this.key = key;
-        this.data = padOrTrimData(data);
+        setDataBytes(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Constructor for deserialization; the caller fills the data bytes
+    private Record(int key) {
+        this.key = key;
     }
 
     /**
@@ -30,35 +45,66 @@ public class Record {
         if (bytes.length != RECORD_SIZE) {
             throw new IllegalArgumentException("Invalid byte array size");
         }
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        int key = buffer.getInt(); // Deserialize the key
-        byte[] dataBytes = new byte[DATA_SIZE];
-        buffer.get(dataBytes); // Deserialize the data
-        String data = new String(dataBytes, StandardCharsets.UTF_8).trim();
-        return new Record(key, data);
+        return fromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Deserializes a record from the current position of a buffer and advances the position past it.
+     *
+     * @param buffer Buffer with at least RECORD_SIZE remaining bytes.
+     * @return A Record object reconstructed from the buffer.
+     */
+    public static Record fromByteBuffer(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid byte buffer size");
+        }
+        Record record = new Record(buffer.getInt()); // Deserialize the key
+        buffer.get(record.data); // Deserialize the data, padding included
+        record.length = contentLength(record.data, DATA_SIZE);
+        return record;
     }
 
     /**
-     * Ensures the data is exactly 250 bytes long by padding or trimming as necessary.
+     * Deserializes a record stored by {@link #toStoredBytes()} at an absolute position of a buffer,
+     * padding the data again. The buffer's position is not changed.
      *
-     * @param data The input string to adjust.
-     * @return A fixed-length string of 250 bytes.
+     * @param buffer   Buffer holding the stored record.
+     * @param position Position of the record within the buffer.
+     * @param length   Stored size of the record.
+     * @return A Record object reconstructed from the buffer.
      */
-    private String padOrTrimData(String data) {
-        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
-        if (bytes.length > DATA_SIZE) {
-            // Trim the data to fit within 250 bytes
-            return new String(bytes, 0, DATA_SIZE, StandardCharsets.UTF_8);
-        } else if (bytes.length < DATA_SIZE) {
-            // Pad the data with spaces to make it exactly 250 bytes
-            StringBuilder paddedData = new StringBuilder(data);
-            while (paddedData.toString().getBytes(StandardCharsets.UTF_8).length < DATA_SIZE) {
-                paddedData.append(' ');
+    public static Record fromStoredBytes(ByteBuffer buffer, int position, int length) {
+        if (length < MIN_STORED_SIZE || length > RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid stored record size: " + length);
+        }
+        Record record = new Record(buffer.getInt(position)); // Deserialize the key
+        record.length = length - Integer.BYTES;
+        buffer.get(position + Integer.BYTES, record.data, 0, record.length); // Deserialize the data
+        Arrays.fill(record.data, record.length, DATA_SIZE, PADDING);
+        return record;
+    }
+
+    // Copies encoded data into the padded data array, cutting it at a character boundary if it is too long
+    private void setDataBytes(byte[] bytes) {
+        int size = bytes.length;
+        if (size > DATA_SIZE) {
+            size = DATA_SIZE;
+            while (size > 0 && (bytes[size] & 0xC0) == 0x80) {
+                size--; // Do not split a multi-byte character
             }
-            return paddedData.toString();
-        } else {
-            return data; // Data is already 250 bytes
         }
+        System.arraycopy(bytes, 0, data, 0, size);
+        Arrays.fill(data, size, DATA_SIZE, PADDING); // Pad the data with spaces to make it exactly 250 bytes
+        length = contentLength(data, size);
+        decoded = null;
+    }
+
+    // Returns the number of leading bytes that remain after stripping trailing padding
+    private static int contentLength(byte[] bytes, int size) {
+        while (size > 0 && bytes[size - 1] == PADDING) {
+            size--;
+        }
+        return size;
     }
 
     // Getter for the key
@@ -66,9 +112,14 @@ public class Record {
         return key;
     }
 
-    // Getter for the data
+    // Getter for the data, padded to 250 bytes
     public String getData() {
-        return data;
+        String result = decoded;
+        if (result == null) {
+            result = new String(data, StandardCharsets.UTF_8);
+            decoded = result; // Strings are immutable, so a racing thread at worst decodes twice
+        }
+        return result;
     }
 
     // Setter for the data
@@ -76,7 +127,7 @@ public class Record {
         if (data == null) {
             throw new IllegalArgumentException("Data cannot be null");
         }
-        this.data = padOrTrimData(data);
+        setDataBytes(data.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -87,7 +138,40 @@ public class Record {
     public byte[] toByteArray() {
         ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
         buffer.putInt(key); // Serialize the key
-        buffer.put(data.getBytes(StandardCharsets.UTF_8)); // Serialize the data
+        buffer.put(data); // Serialize the data
         return buffer.array();
     }
+
+    /**
+     * Serializes the record in the variable-length form used inside pages:
+     * the key followed by the data without its trailing padding spaces.
+     *
+     * @return Byte array of between MIN_STORED_SIZE and RECORD_SIZE bytes.
+     */
+    public byte[] toStoredBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(getStoredSize());
+        writeStoredBytes(buffer, 0);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the record in the form of {@link #toStoredBytes()} directly into a buffer at an absolute position.
+     * The buffer's position is not changed.
+     *
+     * @param buffer   Buffer with at least {@link #getStoredSize()} bytes from the position.
+     * @param position Position within the buffer to write the record at.
+     */
+    public void writeStoredBytes(ByteBuffer buffer, int position) {
+        buffer.putInt(position, key); // Serialize the key
+        buffer.put(position + Integer.BYTES, data, 0, length); // Serialize the data without padding
+    }
+
+    /**
+     * Returns the number of bytes the record occupies inside a page.
+     *
+     * @return The length of {@link #toStoredBytes()}.
+     */
+    public int getStoredSize() {
+        return Integer.BYTES + length;
+    }
 }
@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * RecordCursor iterates over the results of a scan lazily, one page at a time.
+ * When the records of the current page run out, the next page is read, its matching records are
+ * copied into a small buffer, and the page is unpinned again before any record is returned, so a
+ * cursor holds no page pins or latches between calls and an abandoned cursor blocks nothing.
+ * Closing a cursor ends the scan early and drops the buffered records.
+ * <p>
+ * I/O errors raised while advancing are rethrown as UncheckedIOException, except by
+ * {@link #toList()} and {@link #toList(int)}, which unwrap them.
+ */
+public abstract class RecordCursor implements Iterator<Record>, AutoCloseable {
+    private final List<Record> buffer = new ArrayList<>(); // Matching records of the page read last
+    private int position;   // Next record within the buffer
+    private boolean closed; // True once the scan has ended or the cursor was closed
+
+    /**
+     * Reads the next page of the scan and adds its matching records to the given list.
+     * A page without matching records adds nothing but still counts as read.
+     *
+     * @param records The list to add the page's matching records to.
+     * @return True if a page was read, false if the scan has no pages left.
+     * @throws IOException If an I/O error occurs while reading the page.
+     */
+    protected abstract boolean readNextPage(List<Record> records) throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        while (position == buffer.size()) {
+            if (closed) {
+                return false;
+            }
+            buffer.clear();
+            position = 0;
+            boolean pageRead;
+            try {
+                pageRead = readNextPage(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (!pageRead) {
+                close();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return buffer.get(position++);
+    }
+
+    /**
+     * Collects every remaining record into a list.
+     *
+     * @return The remaining records, in cursor order.
+     * @throws IOException If an I/O error occurs while reading pages.
+     */
+    public List<Record> toList() throws IOException {
+        return toList(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Collects at most the given number of remaining records into a list.
+     * Pages beyond the last collected record are not read.
+     *
+     * @param maxRecords The maximum number of records to collect.
+     * @return The collected records, in cursor order.
+     * @throws IOException If an I/O error occurs while reading pages.
+     */
+    public List<Record> toList(int maxRecords) throws IOException {
+        List<Record> result = new ArrayList<>();
+        try {
+            while (result.size() < maxRecords && hasNext()) {
+                result.add(next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return result;
+    }
+
+    /**
+     * Returns a sequential stream over the remaining records. Closing the stream closes the cursor,
+     * and short-circuiting operations such as limit stop reading pages once they are satisfied.
+     *
+     * @return A stream of the remaining records.
+     */
+    public Stream<Record> stream() {
+        Spliterator<Record> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Ends the scan. Records already buffered are dropped and no further pages are read.
+     * Calling close more than once has no effect.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        buffer.clear();
+        position = 0;
+    }
+}
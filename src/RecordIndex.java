@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.util.PrimitiveIterator;
+
+/**
+ * RecordIndex maps record keys to the locations of the records in a data file.
+ * A location is a record ID that packs a data page offset and a slot number into a single long;
+ * {@link SortedFile} packs a position among equal keys instead of the slot, so that its IDs stay fixed
+ * while records shift within a page.
+ * Duplicate keys are allowed; each (key, record ID) pair is one entry.
+ */
+public interface RecordIndex extends AutoCloseable {
+    long NOT_FOUND = -1; // Returned by search when no entry has the key
+
+    /**
+     * Packs a data page offset and a slot number into a record ID.
+     * Page offsets are multiples of the page size, so the slot fits in the low bits.
+     *
+     * @param pageOffset The offset of the data page.
+     * @param slot       The slot within the page.
+     * @return The record ID.
+     */
+    static long recordId(long pageOffset, int slot) {
+        return pageOffset + slot;
+    }
+
+    /**
+     * Extracts the data page offset from a record ID.
+     *
+     * @param recordId The record ID.
+     * @param pageSize The page size of the data file.
+     * @return The offset of the data page.
+     */
+    static long pageOffset(long recordId, int pageSize) {
+        return recordId - recordId % pageSize;
+    }
+
+    /**
+     * Extracts the slot number from a record ID.
+     *
+     * @param recordId The record ID.
+     * @param pageSize The page size of the data file.
+     * @return The slot within the data page.
+     */
+    static int slot(long recordId, int pageSize) {
+        return (int) (recordId % pageSize);
+    }
+
+    /**
+     * Adds an entry to the index.
+     *
+     * @param key      The record key.
+     * @param recordId The ID of the record holding the key.
+     * @throws IOException If an I/O error occurs while updating the index.
+     */
+    void insert(int key, long recordId) throws IOException;
+
+    /**
+     * Removes one entry from the index.
+     *
+     * @param key      The record key.
+     * @param recordId The ID of the record holding the key.
+     * @return True if the entry was found and removed.
+     * @throws IOException If an I/O error occurs while updating the index.
+     */
+    boolean delete(int key, long recordId) throws IOException;
+
+    /**
+     * Replaces the record ID of an entry, as when a record moves to another slot.
+     *
+     * @param key         The record key.
+     * @param oldRecordId The record's previous ID.
+     * @param newRecordId The record's new ID.
+     * @throws IOException If an I/O error occurs while updating the index.
+     * @throws IllegalStateException if the index has no entry for the old record ID.
+     */
+    default void update(int key, long oldRecordId, long newRecordId) throws IOException {
+        if (!delete(key, oldRecordId)) {
+            throw new IllegalStateException("No index entry for key " + key + " at record " + oldRecordId);
+        }
+        insert(key, newRecordId);
+    }
+
+    /**
+     * Finds the record ID of an entry with the given key.
+     * When the key is duplicated, the entry with the lowest record ID is returned.
+     *
+     * @param key The key to search for.
+     * @return The record ID, or {@link #NOT_FOUND} if no entry has the key.
+     * @throws IOException If an I/O error occurs while reading the index.
+     */
+    long search(int key) throws IOException;
+
+    /**
+     * Checks whether the index keeps entries in key order and supports {@link #rangeScan(int, int)}.
+     *
+     * @return True if range scans are supported.
+     */
+    default boolean isOrdered() {
+        return false;
+    }
+
+    /**
+     * Returns the record IDs of all entries with keys in the given range, in key order.
+     *
+     * @param lowerBound The lower bound of the range (inclusive).
+     * @param upperBound The upper bound of the range (inclusive).
+     * @return An iterator over the matching record IDs.
+     * @throws IOException If an I/O error occurs while reading the index.
+     * @throws UnsupportedOperationException if the index is not ordered.
+     */
+    default PrimitiveIterator.OfLong rangeScan(int lowerBound, int upperBound) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support range scans.");
+    }
+
+    /**
+     * Checks whether the index was closed cleanly the last time it was used, so that its entries
+     * can be trusted without rebuilding it from the data file. An index that is not persistent,
+     * or that cannot tell, reports false.
+     *
+     * @return True if the index was closed cleanly before it was opened.
+     */
+    default boolean wasClosedCleanly() {
+        return false;
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     *
+     * @return The entry count.
+     */
+    long getEntryCount();
+
+    /**
+     * Removes every entry, leaving an empty index.
+     *
+     * @throws IOException If an I/O error occurs while resetting the index file.
+     */
+    void clear() throws IOException;
+
+    /**
+     * Writes all pending changes to disk.
+     *
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Flushes the index and closes its file. Calling close more than once has no effect.
+     *
+     * @throws IOException If an I/O error occurs while flushing or closing.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -1,310 +1,1131 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.management.ObjectName;
 
-public class SortedFile {
-    // Static counters for disk I/O statistics
-    private static int diskReadCount = 0;
-    private static int diskWriteCount = 0;
-    private PageDirectory pageDirectory;
+/**
+ * SortedFile keeps records in global key order across pages.
+ * Records within a page occupy slots 0..n-1 in key order, and the pages form a key-ordered
+ * sequence whose ranges do not overlap. A full page is split in half, with the new page placed
+ * right after it in key order. The directory records each page's min and max key, so searches
+ * pick pages by binary search over the directory and range scans touch only overlapping pages.
+ * <p>
+ * An insert or delete may shift records across several pages and reorder the page list, so the
+ * file is guarded by a single read-write lock: searches and range scans share it and run in
+ * parallel, while inserts, deletes and bulk loads hold it exclusively.
+ * <p>
+ * With the write-ahead log enabled, every page an insert or delete changes is logged together with
+ * its directory entry, and the operation returns once the log is forced, after releasing the lock so
+ * that concurrent operations share forces. Checkpoints write the logged directory entries in place
+ * and truncate the log; a log left behind by a crash is replayed when the file is opened.
+ * <p>
+ * With write-behind enabled, inserts and deletes leave modified pages in the buffer pool and defer
+ * their directory entries; a background flusher writes them in offset order once the dirty-page
+ * threshold or the maximum age is reached, and flush and close write everything still pending.
+ */
+public class SortedFile implements AutoCloseable {
+    public static final int BULK_WRITE_PAGES = 64; // Pages written per sequential write during bulk load
+    public static final String BTREE_INDEX_SUFFIX = ".idx"; // Appended to the data filename to name a B+-tree index file
+    public static final String HASH_INDEX_SUFFIX = ".hidx"; // Appended to the data filename to name a hash index file
+    public static final String WAL_SUFFIX = ".wal"; // Appended to the data filename to name the write-ahead log
+    // Static counters for disk I/O statistics, shared by every file
+    private static final AtomicInteger diskReadCount = new AtomicInteger();
+    private static final AtomicInteger diskWriteCount = new AtomicInteger();
+    private PageDirectory pageDirectory; // All pages, in file offset order
+    private final int pageSize; // Size of the file's pages in bytes, recorded in the page directory
+    private List<PageInfo> orderedPages; // Pages holding records, in global key order
+    private ArrayDeque<PageInfo> freePages; // Empty pages reused by later splits
     private String dataFilename;
     private String directoryFilename;
+    private BufferPool bufferPool;
+    private FileChannel dataChannel;
+    private FileChannel directoryChannel;
+    private MappedPageReader mappedReader;
+    private RecordIndex keyIndex; // Key index, null unless enabled in the options
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // Shared by readers, exclusive for writers
+    private WriteAheadLog wal; // Write-ahead log, null unless enabled in the options
+    private final TreeMap<Long, byte[]> dirtyEntries = new TreeMap<>(); // Bytes of logged or deferred directory entries not yet written in place, by page offset
+    private final Object checkpointMonitor = new Object(); // Keeps checkpoints from overlapping under the read lock
+    private PeriodicTask checkpointer; // Background checkpoints, null unless the log is enabled
+    private PeriodicTask flusher; // Background write-behind flusher, null unless enabled in the options
+    private int dirtyPageThreshold; // Dirty pages or deferred entries that trigger a background flush
+    private long maxDirtyAgeMillis; // Longest a change waits for a background flush
+    private long entriesWrittenAt; // System.nanoTime() of the flusher's last entry write, used only by the flusher
+    private final int readAheadPages; // Pages sequential scans read ahead at a time, 0 if disabled
+    private final IoStatistics statistics; // I/O counters and operation latencies of this file
+    private ObjectName mbeanName; // Name the statistics are registered under, null unless JMX is enabled
+    private boolean closed;
 
     public SortedFile(String dataFilename, String directoryFilename) throws IOException {
+        this(dataFilename, directoryFilename, new FileOptions());
+    }
+
+    /**
+     * Constructs a SortedFile with the given buffer pool and I/O options.
+     */
+    public SortedFile(String dataFilename, String directoryFilename, FileOptions options) throws IOException {
         this.dataFilename = dataFilename;
         this.directoryFilename = directoryFilename;
-        this.pageDirectory = readDirectoryFromDisk();
+        this.statistics = options.getStatistics() != null ? options.getStatistics() : new IoStatistics();
+        this.directoryChannel = FileChannel.open(Paths.get(directoryFilename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.dataChannel = FileChannel.open(Paths.get(dataFilename),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException | RuntimeException e) {
+            directoryChannel.close();
+            throw e;
+        }
+        try {
+            this.pageDirectory = readDirectoryFromDisk(options.getPageSize());
+            this.pageSize = pageDirectory.getPageSize(); // 기존 파일은 만들 때 정한 페이지 크기로 연다
+            if (options.isPageSizeSet() && options.getPageSize() != pageSize) {
+                // 명시한 페이지 크기가 기존 파일과 다르면 파일의 크기로 조용히 여는 대신 거부한다
+                throw new IOException("Page size mismatch: " + dataFilename + " was created with " + pageSize
+                        + "-byte pages, but " + options.getPageSize() + "-byte pages were requested");
+            }
+            // 로그 파일이 남아 있으면 지난번에 정상적으로 닫히지 않은 것이므로 로그를 재적용한다
+            boolean crashed = recoverFromLog(options);
+            buildPageOrder();
+            if (options.isMemoryMapped()) {
+                this.mappedReader = new MappedPageReader(dataChannel, pageSize);
+            }
+            this.bufferPool = new BufferPool(new BufferPool.PageStore() {
+                @Override
+                public Page readPage(long offset) throws IOException {
+                    return readPageFromDisk(offset);
+                }
+
+                @Override
+                public Page[] readPages(long offset, int count) throws IOException {
+                    return readPagesFromDisk(offset, count);
+                }
+
+                @Override
+                public void writePage(long offset, Page page) throws IOException {
+                    if (wal != null) {
+                        wal.sync(); // 페이지가 자신의 로그 레코드보다 먼저 디스크에 기록되지 않게 한다
+                    }
+                    writePageToDisk(page, offset);
+                }
+            }, options.getBufferPoolFrames(), pageSize, statistics);
+            this.readAheadPages = options.getReadAheadPages();
+            this.keyIndex = openIndex(options);
+            // 인덱스가 정상적으로 닫히지 않았거나 데이터 파일과 레코드 수가 다르면 전체를 읽어 다시 만든다.
+            // 인덱스 노드는 강제 기록되지 않고 로그에도 남지 않으므로, 비정상 종료 뒤의 인덱스는 믿을 수 없다
+            if (keyIndex != null && (crashed || !keyIndex.wasClosedCleanly() || keyIndex.getEntryCount() != countRecords())) {
+                rebuildIndex();
+            }
+            if (wal != null && options.getCheckpointIntervalMillis() > 0) {
+                this.checkpointer = new PeriodicTask("checkpoint " + dataFilename, options.getCheckpointIntervalMillis(), () -> {
+                    if (wal.size() > 0) {
+                        checkpoint();
+                    }
+                });
+            }
+            if (options.isWriteBehind()) {
+                this.dirtyPageThreshold = options.getDirtyPageThreshold();
+                this.maxDirtyAgeMillis = options.getMaxDirtyAgeMillis();
+                this.entriesWrittenAt = System.nanoTime();
+                bufferPool.setWriteBehind(true);
+                // 최대 대기 시간보다 자주 확인해야 오래된 변경이 제때 기록된다
+                this.flusher = new PeriodicTask("flusher " + dataFilename, Math.max(1, maxDirtyAgeMillis / 4), this::writeBehind);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAfterFailedOpen(e); // 여기까지 연 파일을 닫아야 다시 열거나 지울 수 있다
+            throw e;
+        }
+        if (options.isJmxEnabled()) {
+            try {
+                this.mbeanName = statistics.registerMBean("SortedFile", dataFilename);
+            } catch (IOException e) {
+                close(); // 같은 파일이 이미 열려 있으면 등록에 실패하므로 연 자원을 모두 닫는다
+                throw e;
+            }
+        }
     }
 
-    // Methods to access disk I/O statistics
+    /**
+     * Returns the number of disk reads issued by all sorted files since the last reset.
+     * @deprecated The count mixes every open file; use {@link #getStatistics()} instead.
+     */
+    @Deprecated
     public static int getDiskReadCount() {
-        return diskReadCount;
+        return diskReadCount.get();
     }
 
+    /**
+     * Returns the number of disk writes issued by all sorted files since the last reset.
+     * @deprecated The count mixes every open file; use {@link #getStatistics()} instead.
+     */
+    @Deprecated
     public static int getDiskWriteCount() {
-        return diskWriteCount;
+        return diskWriteCount.get();
     }
 
+    /**
+     * Resets the counters shared by all sorted files.
+     * @deprecated Compare two {@link #getStatistics()} snapshots instead.
+     */
+    @Deprecated
     public static void resetDiskIOCounters() {
-        diskReadCount = 0;
-        diskWriteCount = 0;
+        diskReadCount.set(0);
+        diskWriteCount.set(0);
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
     }
 
     /**
-     * Inserts a record into the sorted file.
-     * 페이지를 정렬된 상태로 유지하면서 레코드를 삽입한다.
+     * Returns the live I/O counters and operation latencies of this file.
+     * Insert, bulk load, search, delete, range search and flush calls are timed, including lock waits and commits.
      */
-    public void insertRecord(Record record) throws IOException {
-        // 기존 페이지들을 순차적으로 확인하여 빈 슬롯을 찾는다
-        for (PageInfo pageInfo : pageDirectory.getPages()) {
-            Page page = readPageFromDisk(pageInfo.getOffset());
-            // 빈 슬롯을 찾고, 그 위치에 레코드를 삽입
-            for (int i = 0; i < Page.SLOT_COUNT; i++) {
-                if (!page.isSlotUsed(i) || page.getRecord(i).getKey() > record.getKey()) {
-                    if (page.isSlotUsed(Page.SLOT_COUNT - 1)) {
-                        break;
-                    }
-                    for (int j = Page.SLOT_COUNT - 1; j > i; j--) {
-                        if (page.isSlotUsed(j - 1)) {
-                            page.insertRecord(j, page.getRecord(j - 1));
-                            page.deleteRecord(j - 1);
-                        }
-                    }
-                    page.insertRecord(i, record);
-                    pageInfo.setFreeSlots(pageInfo.getFreeSlots() - 1);
+    public IoStatistics getStatistics() {
+        return statistics;
+    }
 
-                    // 페이지 내부 레코드를 정렬 (빈 슬롯 이후까지 정렬)
-                    sortPageRecords(page); // 추가된 정렬 메서드 호출
+    /**
+     * Returns the key index maintained alongside this file, or null if no index is enabled.
+     * Records move between slots as pages are kept in order, so a record ID locates a page rather than a slot:
+     * it packs the page offset with the record's position among the records with the same key on that page.
+     * Shifts within a page leave every ID unchanged, and only records that a split moves to a new page are
+     * updated in the index; the slot is found by binary search within the page.
+     */
+    public RecordIndex getKeyIndex() {
+        return keyIndex;
+    }
 
-                    writePageToDisk(page, pageInfo);
-                    writeDirectoryToDisk();
-                    return;
+    /**
+     * Returns the write-ahead log of this file, or null if the write-ahead log is not enabled.
+     */
+    public WriteAheadLog getWriteAheadLog() {
+        return wal;
+    }
+
+    /**
+     * Writes all modified pages held in the buffer pool, and the index if enabled, to disk.
+     * With the write-ahead log enabled, this is a checkpoint: logged directory entries are written
+     * in place, the data and directory files are forced, and the log is truncated.
+     * With write-behind enabled, this is a barrier: every change made before the call is written
+     * when it returns, including pages a background flush is writing at the time.
+     */
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        if (checkpointer != null) {
+            checkpointer.checkFailure();
+        }
+        if (flusher != null) {
+            flusher.checkFailure();
+        }
+        checkpoint();
+        statistics.recordLatency(IoStatistics.Operation.FLUSH, start);
+    }
+
+    // Helper method to write every change in place; with the log enabled, also forces the files and truncates the log
+    private void checkpoint() throws IOException {
+        lock.readLock().lock(); // 쓰기 작업만 막으면 되므로 읽기 잠금으로 충분하다
+        try {
+            synchronized (checkpointMonitor) {
+                bufferPool.flushAll();
+                writeDirtyEntries();
+                if (keyIndex != null) {
+                    keyIndex.flush();
+                }
+                if (wal != null) {
+                    dataChannel.force(false);
+                    directoryChannel.force(false);
+                    wal.truncate(); // 로그의 모든 변경이 제자리에 기록되었으므로 버린다
                 }
             }
+        } finally {
+            lock.readLock().unlock();
         }
-        // 새로운 페이지 생성
-        Page newPage = new Page();
-        newPage.insertRecord(0, record);
-        long offset = new File(dataFilename).length();
-        PageInfo newPageInfo = new PageInfo(offset, Page.SLOT_COUNT - 1);
-        pageDirectory.addPage(newPageInfo);
-        writePageToDisk(newPage, newPageInfo);
-        writeDirectoryToDisk();
-    }
-
-    // 페이지 내 레코드들을 정렬하는 메서드
-    private void sortPageRecords(Page page) {
-        // 삽입된 레코드들이 들어간 페이지 내에서 레코드들을 정렬 (이진 탐색을 통한 정렬)
-        for (int i = 0; i < Page.SLOT_COUNT - 1; i++) {
-            for (int j = i + 1; j < Page.SLOT_COUNT; j++) {
-                if (page.isSlotUsed(i) && page.isSlotUsed(j) && page.getRecord(i).getKey() > page.getRecord(j).getKey()) {
-                    // 두 레코드의 키가 순서대로 정렬되지 않은 경우, 교환
-                    Record temp = page.getRecord(i);
-                    page.insertRecord(i, page.getRecord(j));
-                    page.insertRecord(j, temp);
+    }
+
+    /**
+     * Flushes modified pages and closes the data file. Calling close more than once has no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        if (checkpointer != null) {
+            checkpointer.close(); // 체크포인트가 잠금을 기다리고 있을 수 있으므로 잠금 밖에서 멈춘다
+        }
+        if (flusher != null) {
+            flusher.close();
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                checkpoint();
+                if (keyIndex != null) {
+                    keyIndex.close();
+                }
+                if (wal != null) {
+                    // 정상적으로 닫혔다는 표시로 로그 파일을 지운다
+                    wal.close();
+                    Files.delete(Paths.get(dataFilename + WAL_SUFFIX));
+                }
+            } finally {
+                mappedReader = null;
+                dataChannel.close();
+                directoryChannel.close();
+                if (mbeanName != null) {
+                    IoStatistics.unregisterMBean(mbeanName);
                 }
             }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
+    // Releases what the constructor opened before it failed; later failures are attached to the first
+    private void closeAfterFailedOpen(Exception failure) {
+        for (AutoCloseable resource : new AutoCloseable[]{checkpointer, flusher, keyIndex, wal, dataChannel, directoryChannel}) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                failure.addSuppressed(e);
+            }
+        }
+        mappedReader = null;
+    }
+
     /**
-     * Searches for a record by its key using binary search inside pages.
-     * 페이지 내부에서 이진 탐색을 사용하여 레코드를 검색한다.
+     * Inserts a record into the sorted file.
+     * 키 범위가 맞는 페이지에 정렬 순서대로 삽입하고, 페이지에 레코드가 들어갈 공간이 없으면 분할한다.
+     * With the write-ahead log enabled, returns once the insert is durable.
      */
-    public Record searchRecord(int key) throws IOException {
-        // 페이지 레벨에서 이진 탐색을 통해 검색할 페이지를 선택
-        int left = 0;
-        int right = pageDirectory.getPages().size() - 1;
+    public void insertRecord(Record record) throws IOException {
+        long start = System.nanoTime();
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            if (orderedPages.isEmpty()) {
+                orderedPages.add(allocatePage());
+            }
+            int index = findInsertPage(record.getKey());
+            PageInfo pageInfo = orderedPages.get(index);
+            Page page = bufferPool.fetchPage(pageInfo.getOffset());
+            try {
+                if (page.hasRoomFor(record)) {
+                    insertIntoPage(pageInfo.getOffset(), page, record);
+                    updatePageInfo(pageInfo, page);
+                    lsn = recordPageChange(pageInfo, page);
+                } else {
+                    lsn = splitAndInsert(index, page, record);
+                }
+            } finally {
+                bufferPool.unpinPage(pageInfo.getOffset(), true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(lsn); // 잠금을 푼 뒤에 기다려야 다른 스레드의 커밋과 한 번의 force로 묶인다
+        statistics.recordLatency(IoStatistics.Operation.INSERT, start);
+    }
 
-        while (left <= right) {
-            int mid = left + (right - left) / 2;
-            PageInfo pageInfo = pageDirectory.getPages().get(mid);
-            Page page = readPageFromDisk(pageInfo.getOffset());
-
-            // 페이지의 첫 번째 키와 마지막 키를 계산하여 검색 범위를 좁힘
-            int firstKey = Integer.MAX_VALUE;
-            int lastKey = Integer.MIN_VALUE;
-
-            for (int i = 0; i < Page.SLOT_COUNT; i++) {
-                if (page.isSlotUsed(i)) {
-                    int currentKey = page.getRecord(i).getKey();
-                    firstKey = Math.min(firstKey, currentKey);
-                    lastKey = Math.max(lastKey, currentKey);
+    // 가득 찬 페이지에서 사용 중인 바이트의 위쪽 절반을 새 페이지로 옮기고, 새 페이지를 키 순서상 바로 뒤에 둔다
+    private long splitAndInsert(int index, Page page, Record record) throws IOException {
+        PageInfo pageInfo = orderedPages.get(index);
+        PageInfo rightInfo = allocatePage();
+        orderedPages.add(index + 1, rightInfo);
+        Page right = bufferPool.fetchPage(rightInfo.getOffset());
+        try {
+            // 레코드 길이가 다르므로 슬롯 수가 아니라 바이트 수로 나눌 위치를 정한다
+            int count = page.getNumberOfRecords();
+            int leftUsed = Page.usableSpace(pageSize) - page.getFreeSpace();
+            int split = count;
+            while (split > 1 && leftUsed > Page.usableSpace(pageSize) / 2) {
+                split--;
+                leftUsed -= page.getRecordSize(split) + Page.SLOT_ENTRY_SIZE;
+            }
+            long[] oldIds = new long[count - split];
+            for (int i = split; i < count; i++) {
+                oldIds[i - split] = recordId(pageInfo.getOffset(), page, i);
+            }
+            for (int i = split; i < count; i++) {
+                page.moveRecord(i, right, i - split);
+            }
+            if (keyIndex != null) {
+                // 다른 페이지로 옮겨진 레코드만 인덱스 항목을 바꾼다
+                for (int i = 0; i < oldIds.length; i++) {
+                    keyIndex.update(right.getKey(i), oldIds[i], recordId(rightInfo.getOffset(), right, i));
                 }
             }
+            // 오른쪽 페이지의 첫 키보다 작으면 왼쪽, 아니면 오른쪽 페이지에 삽입
+            if (record.getKey() < right.getKey(0)) {
+                insertIntoPage(pageInfo.getOffset(), page, record);
+            } else {
+                insertIntoPage(rightInfo.getOffset(), right, record);
+            }
+            updatePageInfo(pageInfo, page);
+            updatePageInfo(rightInfo, right);
+            return recordPageChanges(new PageInfo[]{pageInfo, rightInfo}, new Page[]{page, right});
+        } finally {
+            bufferPool.unpinPage(rightInfo.getOffset(), true);
+        }
+    }
 
-            // 찾고자 하는 키가 현재 페이지의 범위 안에 있으면, 페이지 내 이진 탐색
-            if (key >= firstKey && key <= lastKey) {
-                int pageLeft = 0;
-                int pageRight = Page.SLOT_COUNT - 1;
+    // Inserts a record after any equal keys, shifting later records one slot to the right
+    private void insertIntoPage(long offset, Page page, Record record) throws IOException {
+        int count = page.getNumberOfRecords();
+        int position = upperBound(page, count, record.getKey());
+        for (int j = count - 1; j >= position; j--) {
+            page.moveRecord(j, j + 1); // 같은 페이지 안의 이동은 레코드 ID를 바꾸지 않는다
+        }
+        page.insertRecord(position, record);
+        if (keyIndex != null) {
+            keyIndex.insert(record.getKey(), recordId(offset, page, position));
+        }
+    }
 
-                // 페이지 내 이진 탐색
-                while (pageLeft <= pageRight) {
-                    int pageMid = pageLeft + (pageRight - pageLeft) / 2;
-                    if (!page.isSlotUsed(pageMid)) {
-                        pageRight = pageMid - 1;
-                        continue;
-                    }
+    // Record ID of the record in the slot: the page offset and the number of records with the same key before it
+    private static long recordId(long offset, Page page, int slot) {
+        return RecordIndex.recordId(offset, slot - lowerBound(page, slot, page.getKey(slot)));
+    }
 
-                    Record midRecord = page.getRecord(pageMid);
+    // Returns an empty page, reusing one emptied by deletes before growing the file
+    private PageInfo allocatePage() throws IOException {
+        if (!freePages.isEmpty()) {
+            return freePages.poll();
+        }
+        long offset = (long) pageDirectory.getPages().size() * pageSize;
+        PageInfo pageInfo = new PageInfo(offset, Page.usableSpace(pageSize), pageDirectory.getBloomFilterBits());
+        pageDirectory.addPage(pageInfo);
+        bufferPool.newPage(offset, new Page(pageSize));
+        bufferPool.unpinPage(offset, true);
+        return pageInfo;
+    }
 
-                    if (midRecord.getKey() == key) {
-                        return midRecord;
-                    } else if (midRecord.getKey() > key) {
-                        pageRight = pageMid - 1;
-                    } else {
-                        pageLeft = pageMid + 1;
-                    }
-                }
+    // Refreshes a page's free space, record count, key range and Bloom filter from its contents
+    private void updatePageInfo(PageInfo pageInfo, Page page) {
+        int count = page.getNumberOfRecords();
+        pageInfo.setFreeSpace(page.getFreeSpace());
+        pageInfo.setRecordCount(count);
+        pageInfo.clearKeyRange();
+        for (int slot = 0; slot < count; slot++) {
+            pageInfo.addKey(page.getKey(slot));
+        }
+    }
 
-                // 페이지 내에서 해당 키를 찾을 수 없으면 null 반환
-                return null;
+    // 디렉토리는 오프셋 순서로 저장되므로, 열 때 키 범위로 정렬해 페이지의 논리적 순서를 복원한다
+    private void buildPageOrder() {
+        orderedPages = new ArrayList<>();
+        freePages = new ArrayDeque<>();
+        for (PageInfo pageInfo : pageDirectory.getPages()) {
+            if (pageInfo.hasKeys()) {
+                orderedPages.add(pageInfo);
+            } else {
+                freePages.add(pageInfo);
             }
+        }
+        orderedPages.sort(Comparator.comparingInt(PageInfo::getMinKey).thenComparingInt(PageInfo::getMaxKey));
+    }
 
-            // 키가 현재 페이지의 범위보다 작은 경우, 왼쪽 페이지로 범위 좁히기
-            if (key < firstKey) {
+    // Index of the last page whose min key is at most the key, or 0 if the key precedes every page
+    private int findInsertPage(int key) {
+        int left = 0;
+        int right = orderedPages.size() - 1;
+        int result = 0;
+        while (left <= right) {
+            int mid = left + (right - left) / 2;
+            if (orderedPages.get(mid).getMinKey() <= key) {
+                result = mid;
+                left = mid + 1;
+            } else {
                 right = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    // Index of the first page whose max key is at least the key, or the page count if there is none
+    private int findFirstPage(int key) {
+        int left = 0;
+        int right = orderedPages.size();
+        while (left < right) {
+            int mid = left + (right - left) / 2;
+            if (orderedPages.get(mid).getMaxKey() < key) {
+                left = mid + 1;
             } else {
-                // 키가 현재 페이지의 범위보다 큰 경우, 오른쪽 페이지로 범위 좁히기
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    // First slot among the first count slots whose key is at least the given key
+    private static int lowerBound(Page page, int count, int key) {
+        int left = 0;
+        int right = count;
+        while (left < right) {
+            int mid = left + (right - left) / 2;
+            if (page.getKey(mid) < key) {
                 left = mid + 1;
+            } else {
+                right = mid;
             }
         }
+        return left;
+    }
 
-        // 페이지를 모두 검색했는데도 없으면 null 반환
-        return null;
+    // First slot among the first count slots whose key is greater than the given key
+    private static int upperBound(Page page, int count, int key) {
+        int left = 0;
+        int right = count;
+        while (left < right) {
+            int mid = left + (right - left) / 2;
+            if (page.getKey(mid) <= key) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Searches for a record by its key using binary search over the directory and inside the page.
+     * 디렉토리의 키 범위로 페이지를 고르므로 최대 한 페이지만 읽는다.
+     */
+    public Record searchRecord(int key) throws IOException {
+        long start = System.nanoTime();
+        Record record = findRecord(key);
+        statistics.recordLatency(IoStatistics.Operation.SEARCH, start);
+        return record;
+    }
+
+    private Record findRecord(int key) throws IOException {
+        lock.readLock().lock();
+        try {
+            int index = findFirstPage(key);
+            if (index == orderedPages.size() || !orderedPages.get(index).mightContain(key)) {
+                return null; // 키가 들어갈 수 있는 페이지가 없거나 블룸 필터가 배제하면 페이지를 읽지 않는다
+            }
+            PageInfo pageInfo = orderedPages.get(index);
+            Page page = bufferPool.fetchPage(pageInfo.getOffset());
+            try {
+                int count = page.getNumberOfRecords();
+                int slot = lowerBound(page, count, key);
+                if (slot < count && page.getKey(slot) == key) {
+                    return page.getRecord(slot);
+                }
+                return null;
+            } finally {
+                bufferPool.unpinPage(pageInfo.getOffset(), false);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Deletes a record by its key and shifts remaining records.
-     * 삭제 후, 페이지 내부의 레코드를 이동시켜 빈 슬롯을 메운다.
+     * 삭제 후, 페이지 내부의 레코드를 이동시켜 빈 슬롯을 메운다. 비게 된 페이지는 재사용 목록으로 옮긴다.
+     * With the write-ahead log enabled, returns once the delete is durable.
      */
     public boolean deleteRecord(int key) throws IOException {
-        for (PageInfo pageInfo : pageDirectory.getPages()) {
-            Page page = readPageFromDisk(pageInfo.getOffset());
-            for (int i = 0; i < Page.SLOT_COUNT; i++) {
-                if (page.isSlotUsed(i) && page.getRecord(i).getKey() == key) {
-                    page.deleteRecord(i);
+        long start = System.nanoTime();
+        boolean deleted = deleteByKey(key);
+        statistics.recordLatency(IoStatistics.Operation.DELETE, start);
+        return deleted;
+    }
+
+    private boolean deleteByKey(int key) throws IOException {
+        long lsn = 0;
+        lock.writeLock().lock();
+        try {
+            int index = findFirstPage(key);
+            if (index == orderedPages.size() || !orderedPages.get(index).mightContain(key)) {
+                return false;
+            }
+            PageInfo pageInfo = orderedPages.get(index);
+            Page page = bufferPool.fetchPage(pageInfo.getOffset());
+            boolean deleted = false;
+            try {
+                int count = page.getNumberOfRecords();
+                int slot = lowerBound(page, count, key);
+                if (slot < count && page.getKey(slot) == key) {
+                    if (keyIndex != null) {
+                        // 같은 키의 레코드는 같은 페이지를 가리키므로, 마지막 것의 항목을 지워야 나머지 ID가 그대로 남는다
+                        int last = upperBound(page, count, key) - 1;
+                        keyIndex.delete(key, recordId(pageInfo.getOffset(), page, last));
+                    }
+                    page.deleteRecord(slot);
                     // 레코드 삭제 후, 나머지 레코드를 한 칸씩 당긴다.
-                    for (int j = i; j < Page.SLOT_COUNT - 1; j++) {
-                        if (page.isSlotUsed(j + 1)) {
-                            page.insertRecord(j, page.getRecord(j + 1));
-                            page.deleteRecord(j + 1);
-                        }
+                    for (int j = slot + 1; j < count; j++) {
+                        page.moveRecord(j, j - 1);
                     }
-                    sortPageRecords(page); // 삭제 후 페이지 정렬
-                    pageInfo.setFreeSlots(pageInfo.getFreeSlots() + 1);
-                    writePageToDisk(page, pageInfo);
-                    writeDirectoryToDisk();
-                    return true;
+                    updatePageInfo(pageInfo, page);
+                    lsn = recordPageChange(pageInfo, page);
+                    deleted = true;
                 }
+            } finally {
+                bufferPool.unpinPage(pageInfo.getOffset(), deleted);
+            }
+            if (!deleted) {
+                return false;
+            }
+            if (!pageInfo.hasKeys()) {
+                orderedPages.remove(index);
+                freePages.add(pageInfo);
             }
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
+        commit(lsn);
+        return true;
     }
 
     /**
      * Range search using binary search within pages.
-     * 범위 검색을 위해 페이지 내에서 이진 탐색을 수행하고 해당 범위에 맞는 레코드를 반환한다.
+     * 키 범위가 겹치는 페이지만 순서대로 읽고, 결과는 키 순서로 반환된다.
      */
     public List<Record> rangeSearch(int lowerBound, int upperBound) throws IOException {
-        List<Record> result = new ArrayList<>();
+        long start = System.nanoTime();
+        List<Record> result;
+        try (RecordCursor cursor = rangeCursor(lowerBound, upperBound)) {
+            result = cursor.toList();
+        }
+        statistics.recordLatency(IoStatistics.Operation.RANGE_SEARCH, start);
+        return result;
+    }
 
-        // 페이지를 순차적으로 순회
-        for (PageInfo pageInfo : pageDirectory.getPages()) {
-            Page page = readPageFromDisk(pageInfo.getOffset());
-
-            // 첫 번째 이진 탐색: lowerBound가 위치한 첫 번째 슬롯을 찾기 위해 검색
-            int left = 0;
-            int right = Page.SLOT_COUNT - 1;
-            int startIdx = -1;
-
-            while (left <= right) {
-                int mid = left + (right - left) / 2;
-                if (!page.isSlotUsed(mid)) {
-                    right = mid - 1;
-                    continue;
-                }
+    /**
+     * Opens a cursor over the records with keys within the specified bounds, in key order.
+     * Each step takes the read lock, reads the next page holding keys in the range, and releases
+     * the lock again, so writers can run between steps. The cursor resumes from the last key it
+     * returned rather than from a page position, which stays valid when pages split or empty;
+     * records inserted or deleted behind or ahead of the cursor may or may not be returned.
+     */
+    public RecordCursor rangeCursor(int lowerBound, int upperBound) {
+        return new RecordCursor() {
+            private int nextKey = lowerBound; // Smallest key not yet passed
+            private int returnedAtNextKey = 0; // Records with nextKey already returned, skipped on resume
+            private boolean finished = upperBound < lowerBound;
+            private final ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages); // 벌크 로드한 파일은 키 순서와 오프셋 순서가 같다
 
-                Record record = page.getRecord(mid);
+            @Override
+            protected boolean readNextPage(List<Record> records) throws IOException {
+                if (finished) {
+                    return false;
+                }
+                lock.readLock().lock();
+                try {
+                    int toSkip = returnedAtNextKey;
+                    for (int index = findFirstPage(nextKey); index < orderedPages.size(); index++) {
+                        PageInfo pageInfo = orderedPages.get(index);
+                        if (pageInfo.getMinKey() > upperBound) {
+                            break; // 이후 페이지는 모두 범위를 벗어난다
+                        }
+                        readAhead.access(pageInfo.getOffset(), directoryEndOffset());
+                        Page page = bufferPool.fetchPage(pageInfo.getOffset());
+                        boolean reachedUpperBound;
+                        try {
+                            int count = page.getNumberOfRecords();
+                            int slot = lowerBound(page, count, nextKey);
+                            // 이미 반환한 같은 키의 레코드를 건너뛴다. 중복 키는 다음 페이지로 이어질 수 있다
+                            for (; slot < count && toSkip > 0 && page.getKey(slot) == nextKey; slot++) {
+                                toSkip--;
+                            }
+                            for (; slot < count && page.getKey(slot) <= upperBound; slot++) {
+                                records.add(page.getRecord(slot)); // 범위 안의 레코드만 역직렬화
+                            }
+                            reachedUpperBound = slot < count;
+                        } finally {
+                            bufferPool.unpinPage(pageInfo.getOffset(), false);
+                        }
+                        if (!records.isEmpty() || reachedUpperBound) {
+                            finished = reachedUpperBound;
+                            advancePast(records);
+                            return true;
+                        }
+                    }
+                    finished = true;
+                    return false;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
 
-                if (record.getKey() >= lowerBound) {
-                    right = mid - 1;
-                    startIdx = mid; // lowerBound보다 크거나 같은 첫 번째 레코드를 찾음
-                } else {
-                    left = mid + 1;
+            // 마지막으로 반환한 키와 그 키를 가진 레코드 수를 기억해 두었다가 다음 단계에서 이어 읽는다
+            private void advancePast(List<Record> records) {
+                if (records.isEmpty()) {
+                    return;
                 }
+                int lastKey = records.get(records.size() - 1).getKey();
+                int sameKey = 0;
+                for (int i = records.size() - 1; i >= 0 && records.get(i).getKey() == lastKey; i--) {
+                    sameKey++;
+                }
+                returnedAtNextKey = lastKey == nextKey ? returnedAtNextKey + sameKey : sameKey;
+                nextKey = lastKey;
+            }
+        };
+    }
+
+    /**
+     * Builds this empty sorted file from the records of an unsorted heap file.
+     */
+    public void bulkLoad(HeapFile source) throws IOException {
+        bulkLoad(source.scan(), ExternalMergeSort.DEFAULT_RUN_RECORDS);
+    }
+
+    /**
+     * Builds this empty sorted file from unsorted records with an external merge sort.
+     * 정렬된 레코드를 페이지에 빈틈없이 채워 순차적으로 기록하고, 디렉토리는 마지막에 한 번만 기록한다.
+     *
+     * With the write-ahead log enabled, the pages are forced to the data file and only their
+     * directory entries are logged, so after a crash the file is either loaded in full or empty.
+     *
+     * @param records    The unsorted input records.
+     * @param runRecords The number of records sorted in memory per run.
+     */
+    public void bulkLoad(Iterator<Record> records, int runRecords) throws IOException {
+        long start = System.nanoTime();
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            if (!pageDirectory.getPages().isEmpty()) { // 빈 페이지가 남아 있어도 오프셋이 겹치므로 허용하지 않는다
+                throw new IllegalStateException("Bulk load requires an empty SortedFile.");
             }
+            File tempDirectory = new File(dataFilename).getAbsoluteFile().getParentFile();
+            BulkPageWriter writer = new BulkPageWriter();
+            new ExternalMergeSort(runRecords, tempDirectory).sort(records, writer);
+            lsn = writer.finish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(lsn);
+        statistics.recordLatency(IoStatistics.Operation.BULK_INSERT, start);
+    }
 
-            if (startIdx == -1) {
-                continue; // 범위에 해당하는 레코드가 없다면 다음 페이지로 이동
+    /**
+     * Packs sorted records into consecutive pages and appends them to the data file in large chunks.
+     */
+    private class BulkPageWriter implements ExternalMergeSort.RecordSink {
+        private final ByteBuffer chunk = ByteBuffer.allocate(BULK_WRITE_PAGES * pageSize);
+        private long chunkOffset = (long) pageDirectory.getPages().size() * pageSize;
+        private Page page = new Page(pageSize);
+        private int slot = 0;
+
+        @Override
+        public void accept(Record record) throws IOException {
+            if (!page.hasRoomFor(record)) {
+                addPage(); // 레코드가 들어가지 않으면 현재 페이지를 닫고 새 페이지에 넣는다
+            }
+            page.insertRecord(slot, record);
+            if (keyIndex != null) {
+                keyIndex.insert(record.getKey(), recordId(chunkOffset + chunk.position(), page, slot));
+            }
+            slot++;
+        }
+
+        // 마지막 페이지와 남은 청크, 새 페이지들의 디렉토리 항목을 기록하고 커밋할 LSN을 돌려준다
+        long finish() throws IOException {
+            if (slot > 0) {
+                addPage();
+            }
+            if (chunk.position() > 0) {
+                writeChunk();
+            }
+            if (wal == null) {
+                writeDirectoryEntries(pageDirectory.getPages());
+                return 0;
+            }
+            // 페이지는 디렉토리에 오르기 전까지 보이지 않으므로, 데이터를 먼저 force하고 항목만 로그에 남긴다
+            dataChannel.force(false);
+            WriteAheadLog.Operation operation = new WriteAheadLog.Operation(); // 복구는 적재한 페이지를 모두 보이게 하거나 하나도 보이지 않게 한다
+            for (PageInfo pageInfo : pageDirectory.getPages()) {
+                addDirectoryEntry(operation, pageInfo);
+            }
+            return wal.append(operation);
+        }
+
+        private void addPage() throws IOException {
+            chunk.put(page.toByteBuffer());
+            PageInfo pageInfo = new PageInfo(chunkOffset + chunk.position() - pageSize, page.getFreeSpace(),
+                    slot, Integer.MAX_VALUE, Integer.MIN_VALUE, pageDirectory.getBloomFilterBits());
+            for (int i = 0; i < slot; i++) {
+                pageInfo.addKey(page.getKey(i));
+            }
+            pageDirectory.addPage(pageInfo);
+            orderedPages.add(pageInfo); // 정렬된 순서로 채우므로 뒤에 붙이면 키 순서가 유지된다
+            if (!chunk.hasRemaining()) {
+                writeChunk();
+            }
+            page = new Page(pageSize);
+            slot = 0;
+        }
+
+        private void writeChunk() throws IOException {
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                dataChannel.write(chunk, chunkOffset + chunk.position());
+            }
+            diskWriteCount.incrementAndGet();
+            statistics.recordPageWrite(chunk.limit() / pageSize, chunk.limit());
+            chunkOffset += chunk.limit();
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Prints all pages and their records in the sorted file.
+     */
+    public void printAllPages() throws IOException {
+        lock.readLock().lock();
+        try {
+            System.out.println("\nSortedFile Pages:");
+            List<PageInfo> pages = orderedPages; // 키 순서대로 출력
+            ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages);
+            for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+                PageInfo pageInfo = pages.get(pageIndex);
+                readAhead.access(pageInfo.getOffset(), directoryEndOffset());
+                Page page = bufferPool.fetchPage(pageInfo.getOffset());
+                try {
+                    System.out.print("Page " + pageIndex + ": ");
+                    page.printAllRecords();
+                } finally {
+                    bufferPool.unpinPage(pageInfo.getOffset(), false);
+                }
             }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-            // 두 번째 이진 탐색: upperBound가 위치한 마지막 슬롯을 찾기 위해 검색
-            left = startIdx;
-            right = Page.SLOT_COUNT - 1;
-            int endIdx = -1;
+    private RecordIndex openIndex(FileOptions options) throws IOException {
+        switch (options.getIndexType()) {
+            case BTREE:
+                return new BPlusTree(dataFilename + BTREE_INDEX_SUFFIX, options.getBufferPoolFrames());
+            case HASH:
+                return new ExtendibleHashIndex(dataFilename + HASH_INDEX_SUFFIX, options.getBufferPoolFrames());
+            case MEMORY:
+                return new MemoryHashIndex(countRecords(), pageSize); // 빈 상태로 만들고 열 때 한 번 스캔해서 채운다
+            default:
+                return null;
+        }
+    }
+
+    // Offset just past the last page in the directory; the caller holds the lock
+    private long directoryEndOffset() {
+        return (long) pageDirectory.getPages().size() * pageSize;
+    }
 
-            while (left <= right) {
-                int mid = left + (right - left) / 2;
-                if (!page.isSlotUsed(mid)) {
-                    right = mid - 1;
-                    continue;
+    private long countRecords() {
+        long count = 0;
+        for (PageInfo pageInfo : pageDirectory.getPages()) {
+            count += pageInfo.getRecordCount();
+        }
+        return count;
+    }
+
+    private void rebuildIndex() throws IOException {
+        keyIndex.clear();
+        ReadAhead readAhead = new ReadAhead(bufferPool, readAheadPages);
+        for (PageInfo pageInfo : orderedPages) {
+            readAhead.access(pageInfo.getOffset(), directoryEndOffset());
+            Page page = bufferPool.fetchPage(pageInfo.getOffset());
+            try {
+                int count = page.getNumberOfRecords();
+                for (int slot = 0; slot < count; slot++) {
+                    keyIndex.insert(page.getKey(slot), recordId(pageInfo.getOffset(), page, slot));
                 }
+            } finally {
+                bufferPool.unpinPage(pageInfo.getOffset(), false);
+            }
+        }
+        keyIndex.flush();
+    }
 
-                Record record = page.getRecord(mid);
+    private PageDirectory readDirectoryFromDisk(int newPageSize) throws IOException {
+        long size = directoryChannel.size();
+        if (size == 0) {
+            PageDirectory pageDirectory = new PageDirectory(newPageSize);
+            // 새 디렉토리 파일에는 헤더만 기록한다
+            ByteBuffer header = ByteBuffer.wrap(pageDirectory.headerToByteArray());
+            while (header.hasRemaining()) {
+                directoryChannel.write(header, header.position());
+            }
+            diskWriteCount.incrementAndGet();
+            statistics.recordDirectoryWrite(header.capacity());
+            return pageDirectory;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (directoryChannel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of page directory");
+            }
+        }
+        diskReadCount.incrementAndGet();
+        statistics.recordDirectoryRead(size);
+        return PageDirectory.fromByteArray(buffer.array());
+    }
+
+    // Records a change to a page: without the log, its directory entry is written in place, or left to
+    // the flusher in write-behind mode; with the log, the page image and the entry are logged as one operation.
+    // Returns the LSN to commit.
+    private long recordPageChange(PageInfo pageInfo, Page page) throws IOException {
+        return recordPageChanges(new PageInfo[]{pageInfo}, new Page[]{page});
+    }
 
-                if (record.getKey() <= upperBound) {
-                    left = mid + 1;
-                    endIdx = mid; // upperBound보다 작거나 같은 마지막 레코드를 찾음
+    // Records changes to several pages made by one insert or delete. With the log, all page images and
+    // entries form one operation, so recovery never applies half of a split.
+    private long recordPageChanges(PageInfo[] pageInfos, Page[] pages) throws IOException {
+        if (wal == null) {
+            for (PageInfo pageInfo : pageInfos) {
+                if (flusher != null) {
+                    dirtyEntries.put(pageInfo.getOffset(), pageInfo.toByteArray()); // 같은 페이지의 항목이 여러 번 바뀌어도 한 번만 기록된다
                 } else {
-                    right = mid - 1;
+                    writeDirectoryEntry(pageInfo);
                 }
             }
+            return 0;
+        }
+        WriteAheadLog.Operation operation = new WriteAheadLog.Operation();
+        for (int i = 0; i < pageInfos.length; i++) {
+            operation.add(WriteAheadLog.DATA_PAGE, pageInfos[i].getOffset(), pages[i].toByteArray());
+            addDirectoryEntry(operation, pageInfos[i]);
+        }
+        return wal.append(operation);
+    }
 
-            // 범위에 해당하는 레코드를 result 리스트에 추가
-            if (startIdx != -1 && endIdx != -1) {
-                for (int i = startIdx; i <= endIdx; i++) {
-                    if (page.isSlotUsed(i)) {
-                        Record record = page.getRecord(i);
-                        result.add(record);
-                    }
+    // Adds a directory entry to a logged operation; the entry is written in place by the next checkpoint
+    private void addDirectoryEntry(WriteAheadLog.Operation operation, PageInfo pageInfo) {
+        byte[] entry = pageInfo.toByteArray();
+        dirtyEntries.put(pageInfo.getOffset(), entry);
+        operation.add(WriteAheadLog.DIRECTORY_ENTRY, pageDirectory.entryPosition(pageInfo), entry);
+    }
+
+    // Waits until the log records up to the LSN are durable
+    private void commit(long lsn) throws IOException {
+        if (wal != null) {
+            wal.commit(lsn);
+        }
+    }
+
+    // Runs one round of the write-behind flusher
+    private void writeBehind() throws IOException {
+        bufferPool.flushDirtyPages(dirtyPageThreshold, maxDirtyAgeMillis);
+        if (wal != null) {
+            return; // 로그가 켜져 있으면 디렉토리 항목은 체크포인트가 기록한다
+        }
+        lock.readLock().lock(); // 항목은 쓰기 작업이 바꾸므로 쓰기 작업만 막는다
+        try {
+            synchronized (checkpointMonitor) {
+                long now = System.nanoTime();
+                if (dirtyEntries.size() >= dirtyPageThreshold
+                        || (!dirtyEntries.isEmpty() && now - entriesWrittenAt >= maxDirtyAgeMillis * 1_000_000L)) {
+                    writeDirtyEntries();
+                    entriesWrittenAt = now;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writes the deferred directory entries in offset order, merging adjacent entries.
+    // The caller holds the read lock and the checkpoint monitor. The entries are bytes serialized under the
+    // write lock when the page changed, so they are never torn even if a page's entry is being rebuilt.
+    private void writeDirtyEntries() throws IOException {
+        TreeMap<Long, byte[]> entries = new TreeMap<>(dirtyEntries);
+        dirtyEntries.clear();
+        try {
+            List<byte[]> run = new ArrayList<>();
+            long runStart = 0;
+            for (Map.Entry<Long, byte[]> entry : entries.entrySet()) {
+                if (!run.isEmpty() && entry.getKey() != runStart + (long) run.size() * pageSize) {
+                    writeEntryRun(runStart, run); // 연속된 항목은 한 번에 기록
+                    run.clear();
+                }
+                if (run.isEmpty()) {
+                    runStart = entry.getKey();
                 }
+                run.add(entry.getValue());
             }
+            writeEntryRun(runStart, run);
+        } catch (IOException e) {
+            dirtyEntries.putAll(entries); // 다음 기록 때 다시 시도한다
+            throw e;
         }
+    }
 
-        return result;
+    // Replays the write-ahead log left by a crash, then opens the log if it is enabled.
+    // Returns true if a log was found, which means the file was not closed cleanly.
+    private boolean recoverFromLog(FileOptions options) throws IOException {
+        File logFile = new File(dataFilename + WAL_SUFFIX);
+        boolean crashed = logFile.exists();
+        if (!crashed && !options.isWriteAheadLog()) {
+            return false;
+        }
+        WriteAheadLog log = new WriteAheadLog(logFile.getPath());
+        try {
+            Set<Long> replayedPages = new HashSet<>();
+            int replayed = log.replay((type, position, bytes) -> {
+                FileChannel channel = type == WriteAheadLog.DATA_PAGE ? dataChannel : directoryChannel;
+                if (type == WriteAheadLog.DATA_PAGE) {
+                    replayedPages.add(position);
+                }
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, position + bytes.position());
+                }
+            });
+            if (replayed > 0) {
+                // 로그는 완료된 작업만 재적용하므로 페이지와 항목이 맞지만, 항목은 페이지에서 다시 계산해 확인한다
+                pageDirectory = readDirectoryFromDisk(pageSize);
+                repairPageInfo(replayedPages);
+                dataChannel.force(false);
+                directoryChannel.force(false);
+            }
+            log.truncate();
+        } catch (IOException | RuntimeException e) {
+            try {
+                log.close(); // 재적용에 실패하면 로그를 지우지 않고 닫기만 한다
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        if (options.isWriteAheadLog()) {
+            wal = log;
+        } else {
+            log.close();
+            Files.delete(logFile.toPath());
+        }
+        return crashed;
     }
 
-    /**
-     * Prints all pages and their records in the sorted file.
-     */
-    public void printAllPages() throws IOException {
-        System.out.println("\nSortedFile Pages:");
+    // Recomputes the free space, record count, key range and Bloom filter of replayed pages from their contents,
+    // since the page search relies on them
+    private void repairPageInfo(Set<Long> offsets) throws IOException {
         List<PageInfo> pages = pageDirectory.getPages();
-        for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+        for (long offset : offsets) {
+            int pageIndex = (int) (offset / pageSize);
+            if (pageIndex >= pages.size()) {
+                continue; // 디렉토리 항목이 로그에 남지 않은 페이지는 보이지 않는다
+            }
             PageInfo pageInfo = pages.get(pageIndex);
-            Page page = readPageFromDisk(pageInfo.getOffset());
-            System.out.print("Page " + pageIndex + ": ");
-            page.printAllRecords();
+            updatePageInfo(pageInfo, readPageFromDisk(offset));
+            writeDirectoryEntry(pageInfo);
+        }
+    }
+
+    private void writeDirectoryEntry(PageInfo pageInfo) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(pageInfo.toByteArray());
+        long position = pageDirectory.entryPosition(pageInfo);
+        while (buffer.hasRemaining()) {
+            directoryChannel.write(buffer, position + buffer.position());
         }
+        diskWriteCount.incrementAndGet();
+        statistics.recordDirectoryWrite(buffer.limit());
     }
 
-    private PageDirectory readDirectoryFromDisk() throws IOException {
-        File dirFile = new File(directoryFilename);
-        if (!dirFile.exists()) {
-            return new PageDirectory();
+    private void writeDirectoryEntries(List<PageInfo> newPages) throws IOException {
+        if (newPages.isEmpty()) {
+            return;
         }
-        try (FileInputStream fis = new FileInputStream(directoryFilename)) {
-            byte[] data = fis.readAllBytes();
-            diskReadCount++;
-            return PageDirectory.fromByteArray(data);
-        } catch (ClassNotFoundException e) {
-            throw new IOException("Failed to load page directory", e);
+        List<byte[]> run = new ArrayList<>();
+        for (PageInfo pageInfo : newPages) {
+            run.add(pageInfo.toByteArray());
         }
+        writeEntryRun(newPages.get(0).getOffset(), run);
     }
 
-    private void writeDirectoryToDisk() throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(directoryFilename)) {
-            fos.write(pageDirectory.toByteArray());
-            diskWriteCount++;
+    // Writes the serialized entries of adjacent pages, starting with the page at the offset, in one write
+    private void writeEntryRun(long firstPageOffset, List<byte[]> run) throws IOException {
+        if (run.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(run.size() * pageDirectory.getEntrySize());
+        for (byte[] entry : run) {
+            buffer.put(entry);
         }
+        buffer.flip();
+        long position = pageDirectory.entryPosition(firstPageOffset);
+        while (buffer.hasRemaining()) {
+            directoryChannel.write(buffer, position + buffer.position());
+        }
+        diskWriteCount.incrementAndGet();
+        statistics.recordDirectoryWrite(buffer.limit());
     }
 
     private Page readPageFromDisk(long offset) throws IOException {
-        byte[] bytes = new byte[Page.PAGE_SIZE];
-        try (RandomAccessFile raf = new RandomAccessFile(dataFilename, "r")) {
-            raf.seek(offset);
-            raf.readFully(bytes);
-            diskReadCount++;
+        if (mappedReader != null) {
+            // 매핑된 영역에서 바로 역직렬화하므로 페이지 크기의 배열을 새로 만들지 않는다
+            Page page = Page.fromByteBuffer(mappedReader.pageSlice(offset));
+            diskReadCount.incrementAndGet();
+            statistics.recordPageRead(1, pageSize);
+            return page;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        // 위치 지정 읽기는 채널의 position을 바꾸지 않으므로 여러 스레드가 공유할 수 있다
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at offset " + offset);
+            }
+        }
+        diskReadCount.incrementAndGet();
+        statistics.recordPageRead(1, pageSize);
+        return Page.fromByteArray(buffer.array());
+    }
+
+    // Reads consecutive pages from disk with one request
+    private Page[] readPagesFromDisk(long offset, int count) throws IOException {
+        Page[] pages = new Page[count];
+        if (mappedReader != null) {
+            for (int i = 0; i < count; i++) {
+                pages[i] = readPageFromDisk(offset + (long) i * pageSize); // 매핑된 영역은 운영체제가 미리 읽는다
+            }
+            return pages;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(count * pageSize);
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at offset " + (offset + buffer.position()));
+            }
+        }
+        diskReadCount.incrementAndGet(); // 여러 페이지를 한 번의 요청으로 읽는다
+        statistics.recordPageRead(count, buffer.capacity());
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < count; i++) {
+            // 페이지마다 배열을 복사해, 캐시에 남은 페이지 하나가 큰 버퍼 전체를 붙잡지 않게 한다
+            pages[i] = Page.fromByteArray(Arrays.copyOfRange(bytes, i * pageSize, (i + 1) * pageSize));
         }
-        return Page.fromByteArray(bytes);
+        return pages;
     }
 
-    private void writePageToDisk(Page page, PageInfo pageInfo) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(dataFilename, "rw")) {
-            raf.seek(pageInfo.getOffset());
-            raf.write(page.toByteArray());
-            diskWriteCount++;
+    private void writePageToDisk(Page page, long offset) throws IOException {
+        ByteBuffer buffer = page.toByteBuffer();
+        while (buffer.hasRemaining()) {
+            dataChannel.write(buffer, offset + buffer.position());
         }
+        diskWriteCount.incrementAndGet();
+        statistics.recordPageWrite(1, buffer.limit());
     }
 }
@@ -86,7 +86,8 @@ public class SortedFileBasicTest {
                 System.out.println("  Record Key: " + record.getKey() + ", Data: " + record.getData());
             }
 
-            // Clean up
+            // Close files and clean up
+            sortedFile.close();
             new java.io.File(sortedDataFilename).delete();
             new java.io.File(sortedDirectoryFilename).delete();
         } catch (IOException e) {
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * A test class for page splits in the `SortedFile` file organization. It inserts keys in descending order and then
+ * in random order, so that full pages are split many times in the middle of the file, and checks that the pages
+ * still partition the key space: every page's key range, read back from the page directory file, lies strictly
+ * after the range of the page before it, and the records stored in each page are sorted and inside that range.
+ * It runs once without an index and once with a B+-tree index, whose entries must locate the page of every key
+ * after records have shifted within pages and moved to new pages. The test exits with an exception if any check fails.
+ */
+public class SortedFileSplitTest {
+    private static final int KEY_COUNT = 3000; // Keys per insert pass
+    private static final long SEED = 20240611L; // Fixed seed so that a failure can be reproduced
+
+    public static void main(String[] args) {
+        try {
+            for (FileOptions.IndexType indexType : new FileOptions.IndexType[]{FileOptions.IndexType.NONE, FileOptions.IndexType.BTREE}) {
+                run(indexType);
+            }
+            System.out.println("SortedFileSplitTest passed");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void run(FileOptions.IndexType indexType) throws IOException {
+        // Filenames for SortedFile (data file and metadata file)
+        String dataFilename = "sf_split_test.dat";
+        String directoryFilename = "sf_split_test.pd";
+        FileOptions options = new FileOptions().setIndexType(indexType);
+
+        // Clean up any existing files to ensure a fresh test environment
+        new java.io.File(dataFilename).delete();
+        new java.io.File(directoryFilename).delete();
+        new java.io.File(dataFilename + SortedFile.BTREE_INDEX_SUFFIX).delete();
+
+        TreeMap<Integer, String> model = new TreeMap<>(); // Expected contents, in key order
+        SortedFile sortedFile = new SortedFile(dataFilename, directoryFilename, options);
+
+        // --- Insert even keys in descending order: every split happens at the front of the file ---
+        for (int key = 2 * (KEY_COUNT - 1); key >= 0; key -= 2) {
+            insert(sortedFile, model, key);
+        }
+        checkPageOrder(sortedFile, model, "descending inserts");
+
+        // --- Insert odd keys in random order: splits happen between existing pages ---
+        List<Integer> oddKeys = new ArrayList<>();
+        for (int key = 1; key < 2 * KEY_COUNT; key += 2) {
+            oddKeys.add(key);
+        }
+        Collections.shuffle(oddKeys, new Random(SEED));
+        for (int key : oddKeys) {
+            insert(sortedFile, model, key);
+        }
+        checkPageOrder(sortedFile, model, "random inserts");
+
+        // --- Reopen the file and check that the page order is restored from the directory ---
+        sortedFile.close();
+        sortedFile = new SortedFile(dataFilename, directoryFilename, options);
+        checkPageOrder(sortedFile, model, "reopen");
+        sortedFile.close();
+
+        new java.io.File(dataFilename).delete();
+        new java.io.File(directoryFilename).delete();
+        new java.io.File(dataFilename + SortedFile.BTREE_INDEX_SUFFIX).delete();
+    }
+
+    // Inserts a record whose data length varies with the key, so that pages split at different slot counts
+    private static void insert(SortedFile sortedFile, TreeMap<Integer, String> model, int key) throws IOException {
+        String data = "SplitData" + key + "-".repeat(key % 97);
+        sortedFile.insertRecord(new Record(key, data));
+        model.put(key, data);
+    }
+
+    // Checks the directory ranges and page contents on disk, then the records returned by a full range search
+    private static void checkPageOrder(SortedFile sortedFile, TreeMap<Integer, String> model, String step) throws IOException {
+        sortedFile.flush();
+        PageDirectory pageDirectory = PageDirectory.fromByteArray(Files.readAllBytes(Paths.get("sf_split_test.pd")));
+        byte[] data = Files.readAllBytes(Paths.get("sf_split_test.dat"));
+        int pageSize = pageDirectory.getPageSize();
+
+        List<PageInfo> pages = new ArrayList<>();
+        for (PageInfo pageInfo : pageDirectory.getPages()) {
+            if (pageInfo.hasKeys()) {
+                pages.add(pageInfo);
+            }
+        }
+        pages.sort((a, b) -> Integer.compare(a.getMinKey(), b.getMinKey()));
+        check(pages.size() > 10, step + ": expected many pages after splits, found " + pages.size());
+
+        List<Integer> keys = new ArrayList<>();
+        RecordIndex keyIndex = sortedFile.getKeyIndex();
+        for (int i = 0; i < pages.size(); i++) {
+            PageInfo pageInfo = pages.get(i);
+            check(pageInfo.getMinKey() <= pageInfo.getMaxKey(), step + ": page at offset " + pageInfo.getOffset() + " has an empty range");
+            if (i > 0) {
+                PageInfo previous = pages.get(i - 1);
+                check(previous.getMaxKey() < pageInfo.getMinKey(), step + ": ranges of pages at offsets "
+                        + previous.getOffset() + " and " + pageInfo.getOffset() + " overlap");
+            }
+            byte[] pageBytes = new byte[pageSize];
+            System.arraycopy(data, (int) pageInfo.getOffset(), pageBytes, 0, pageSize);
+            Page page = Page.fromByteArray(pageBytes);
+            check(page.getNumberOfRecords() == pageInfo.getRecordCount(), step + ": record count of page at offset "
+                    + pageInfo.getOffset() + " does not match the directory");
+            for (int slot = 0; slot < page.getNumberOfRecords(); slot++) {
+                int key = page.getKey(slot);
+                check(key >= pageInfo.getMinKey() && key <= pageInfo.getMaxKey(), step + ": key " + key
+                        + " lies outside the range of its page");
+                check(keys.isEmpty() || keys.get(keys.size() - 1) < key, step + ": key " + key + " is out of order");
+                keys.add(key);
+                if (keyIndex != null) {
+                    // Keys are distinct, so each key's record ID is its page offset with no position among equal keys
+                    long recordId = keyIndex.search(key);
+                    check(recordId == RecordIndex.recordId(pageInfo.getOffset(), 0), step + ": index locates key " + key
+                            + " at record " + recordId + ", but it is on the page at offset " + pageInfo.getOffset());
+                }
+            }
+        }
+        check(keys.equals(new ArrayList<>(model.keySet())), step + ": pages hold " + keys.size()
+                + " keys, expected " + model.size());
+        check(keyIndex == null || keyIndex.getEntryCount() == model.size(), step + ": index holds "
+                + (keyIndex == null ? 0 : keyIndex.getEntryCount()) + " entries, expected " + model.size());
+
+        List<Record> records = sortedFile.rangeSearch(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        check(records.size() == model.size(), step + ": range search returned " + records.size() + " records");
+        int i = 0;
+        for (java.util.Map.Entry<Integer, String> entry : model.entrySet()) {
+            Record record = records.get(i++);
+            check(record.getKey() == entry.getKey() && record.getData().trim().equals(entry.getValue()),
+                    step + ": range search returned key " + record.getKey() + ", expected " + entry.getKey());
+        }
+        System.out.println(step + (keyIndex != null ? " with an index" : "") + ": " + pages.size() + " pages in key order");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * WriteAheadLog is an append-only redo log of the bytes a data file is about to change.
+ * Each record names a target (a data page or a page directory entry), the position it is written to,
+ * and the new bytes, so replaying the records in order repeats every logged change.
+ * <p>
+ * The records of one logical operation, such as the two pages and two directory entries of a page
+ * split, are appended together as an {@link Operation} and followed by an end-of-operation record.
+ * Replay applies an operation only once it has read its end record, so a crash that tears the log
+ * in the middle of an operation never leaves part of it applied.
+ * <p>
+ * Appends only copy the record into an in-memory buffer. {@link #commit(long)} makes every record
+ * up to a log sequence number (LSN) durable with group commit: the first committer to arrive writes
+ * all buffered records and forces the file once, while committers arriving during that force wait and
+ * are covered by the next one, so many concurrent operations share a single force.
+ * <p>
+ * After a checkpoint has written the logged changes in place, {@link #truncate()} discards the
+ * records. The log header carries a generation number that is mixed into every record checksum,
+ * so records left over from before a truncation are never replayed.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    public static final byte DATA_PAGE = 1;       // Record target: a page of the data file
+    public static final byte DIRECTORY_ENTRY = 2; // Record target: an entry of the page directory file
+    private static final byte END_OPERATION = 3;  // Marks the end of an operation's records; has no target
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 1000; // Default period of background checkpoints
+    private static final int MAGIC = 0x57414C47; // "WALG"
+    private static final int VERSION = 2;
+    private static final int UNGROUPED_VERSION = 1; // Logs without end-of-operation records, replayed record by record
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES; // Magic, version and generation
+    private static final int RECORD_HEADER_SIZE = 1 + Long.BYTES + Integer.BYTES; // Type, position and length
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Applies one logged change during recovery.
+     */
+    public interface Redo {
+        /**
+         * Writes the logged bytes to their target.
+         *
+         * @param type     The record target, {@link #DATA_PAGE} or {@link #DIRECTORY_ENTRY}.
+         * @param position The position in the target file.
+         * @param bytes    The bytes to write.
+         * @throws IOException If an I/O error occurs while writing.
+         */
+        void apply(byte type, long position, ByteBuffer bytes) throws IOException;
+    }
+
+    /**
+     * The records of one logical operation, appended to the log together by {@link #append(Operation)}.
+     */
+    public static class Operation {
+        private final List<byte[]> records = new ArrayList<>(); // Encoded type, position, length and bytes of each record
+
+        /**
+         * Adds a record to the operation.
+         *
+         * @param type     The record target, {@link #DATA_PAGE} or {@link #DIRECTORY_ENTRY}.
+         * @param position The position the bytes are written to in the target file.
+         * @param bytes    The new bytes.
+         * @return This operation.
+         */
+        public Operation add(byte type, long position, byte[] bytes) {
+            records.add(ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length)
+                    .put(type).putLong(position).putInt(bytes.length).put(bytes).array());
+            return this;
+        }
+    }
+
+    private final FileChannel channel; // Open channel to the log file
+    private int version;               // Format version of the records in the file; the header is rewritten on truncation
+    private long generation;           // Incremented by every truncation
+    private ByteBuffer pending;        // Records appended but not yet written to the file
+    private ByteBuffer spare;          // Buffer swapped in for pending while a batch is written
+    private long baseLsn;              // LSN of the first record after the header
+    private long appendedLsn;          // LSN just past the last appended record
+    private long durableLsn;           // LSN up to which records are forced to disk
+    private boolean forcing;           // True while a committer writes and forces a batch
+    private IOException failure;       // First write or force failure; the log refuses commits afterwards
+    private long forceCount;           // Number of forces issued by commits
+    private long commitCount;          // Number of commit calls that had records to wait for
+
+    /**
+     * Opens the log file, creating it if necessary. Existing records are kept for {@link #replay(Redo)}.
+     *
+     * @param filename Path to the log file.
+     * @throws IOException If an I/O error occurs or the file is not a log.
+     */
+    public WriteAheadLog(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        if (channel.size() < HEADER_SIZE) {
+            version = VERSION;
+            generation = 1;
+            writeHeader();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(header, 0);
+            header.flip();
+            int magic = header.getInt();
+            version = header.getInt();
+            if (magic != MAGIC || (version != VERSION && version != UNGROUPED_VERSION)) {
+                throw new IOException("Not a write-ahead log: " + filename);
+            }
+            generation = header.getLong();
+        }
+    }
+
+    /**
+     * Replays the records in the log in the order they were appended. Replay stops at the first
+     * record that is incomplete or fails its checksum, which is where the last forced batch ended,
+     * and the records of an operation whose end record was not reached are not applied.
+     *
+     * @param redo The action that applies each record.
+     * @return The number of records replayed.
+     * @throws IOException If an I/O error occurs while reading the log or applying a record.
+     */
+    public synchronized int replay(Redo redo) throws IOException {
+        long size = channel.size();
+        if (size - HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Write-ahead log too large to replay: " + size + " bytes");
+        }
+        ByteBuffer log = ByteBuffer.allocate((int) (size - HEADER_SIZE));
+        readFully(log, HEADER_SIZE);
+        log.flip();
+        int replayed = 0;
+        List<ByteBuffer> operation = new ArrayList<>(); // Verified records of the operation being read
+        while (log.remaining() >= RECORD_HEADER_SIZE) {
+            int start = log.position();
+            byte type = log.get();
+            long position = log.getLong();
+            int length = log.getInt();
+            if (length < 0 || log.remaining() < length + Integer.BYTES) {
+                break; // The record was cut off by a crash
+            }
+            ByteBuffer bytes = log.slice();
+            bytes.limit(length);
+            log.position(log.position() + length);
+            int checksum = log.getInt();
+            if (checksum != checksum(log, start, RECORD_HEADER_SIZE + length)) {
+                break; // Torn write, or a record from before the last truncation
+            }
+            if (type != END_OPERATION) {
+                operation.add(log.duplicate().position(start).limit(start + RECORD_HEADER_SIZE + length).slice());
+            }
+            if (type == END_OPERATION || version == UNGROUPED_VERSION) {
+                for (ByteBuffer record : operation) {
+                    byte recordType = record.get();
+                    long recordPosition = record.getLong();
+                    record.getInt();
+                    redo.apply(recordType, recordPosition, record.slice());
+                    replayed++;
+                }
+                operation.clear();
+            }
+        }
+        return replayed; // Records of an operation cut off by the crash are dropped
+    }
+
+    /**
+     * Appends a single record as an operation of its own. The record is not durable until it is committed.
+     *
+     * @param type     The record target, {@link #DATA_PAGE} or {@link #DIRECTORY_ENTRY}.
+     * @param position The position the bytes are written to in the target file.
+     * @param bytes    The new bytes.
+     * @return The LSN just past the operation, to be passed to {@link #commit(long)}.
+     */
+    public long append(byte type, long position, byte[] bytes) {
+        return append(new Operation().add(type, position, bytes));
+    }
+
+    /**
+     * Appends the records of an operation and its end record to the in-memory buffer, with no records
+     * of other operations between them. The operation is not durable until it is committed.
+     *
+     * @param operation The records to append.
+     * @return The LSN just past the operation, to be passed to {@link #commit(long)}.
+     */
+    public synchronized long append(Operation operation) {
+        for (byte[] record : operation.records) {
+            appendRecord(record);
+        }
+        appendRecord(ByteBuffer.allocate(RECORD_HEADER_SIZE).put(END_OPERATION).putLong(0).putInt(0).array());
+        return appendedLsn;
+    }
+
+    /**
+     * Waits until every record up to the given LSN is forced to disk, writing and forcing the
+     * buffered records itself if no other committer is already doing so.
+     *
+     * @param lsn The LSN returned by the last append to make durable.
+     * @throws IOException If writing or forcing the log fails, now or in an earlier commit.
+     */
+    public void commit(long lsn) throws IOException {
+        ByteBuffer batch;
+        long batchStart;
+        long batchEnd;
+        synchronized (this) {
+            if (lsn <= durableLsn) {
+                return;
+            }
+            commitCount++;
+            boolean interrupted = false;
+            while (forcing && lsn > durableLsn) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // The batch holding our records is already being written
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw new IOException("Write-ahead log failed earlier", failure);
+            }
+            if (lsn <= durableLsn) {
+                return; // Covered by the force another committer just finished
+            }
+            // Become the leader: take everything appended so far, including other threads' records
+            forcing = true;
+            batch = pending;
+            pending = spare;
+            spare = null;
+            batchStart = durableLsn;
+            batchEnd = appendedLsn;
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            long position = HEADER_SIZE + (batchStart - baseLsn);
+            while (batch.hasRemaining()) {
+                channel.write(batch, position + batch.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            batch.clear();
+            spare = batch;
+            forcing = false;
+            if (error == null) {
+                durableLsn = batchEnd;
+                forceCount++;
+            } else {
+                failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Forces every record appended so far. Must be called before a page changed by a logged
+     * operation is written in place, so that the page never reaches disk ahead of its log record.
+     *
+     * @throws IOException If writing or forcing the log fails.
+     */
+    public void sync() throws IOException {
+        long lsn;
+        synchronized (this) {
+            lsn = appendedLsn;
+        }
+        commit(lsn);
+    }
+
+    /**
+     * Discards every record after a checkpoint has written the logged changes in place and forced them.
+     * The caller must ensure that no records are appended while the log is truncated.
+     *
+     * @throws IOException If an I/O error occurs while resetting the log file.
+     */
+    public synchronized void truncate() throws IOException {
+        boolean interrupted = false;
+        while (forcing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        generation++;
+        version = VERSION;
+        writeHeader(); // Forced before any record of the new generation can be forced
+        channel.truncate(HEADER_SIZE);
+        pending.clear();
+        baseLsn = appendedLsn;
+        durableLsn = appendedLsn;
+    }
+
+    /**
+     * Returns the number of bytes appended since the last truncation, forced or not.
+     *
+     * @return The log size in bytes, excluding the header.
+     */
+    public synchronized long size() {
+        return appendedLsn - baseLsn;
+    }
+
+    /**
+     * Returns the number of forces issued by commits. Compared with {@link #getCommitCount()},
+     * it shows how many commits each force covered on average.
+     *
+     * @return The force count.
+     */
+    public synchronized long getForceCount() {
+        return forceCount;
+    }
+
+    /**
+     * Returns the number of commits that had records to wait for.
+     *
+     * @return The commit count.
+     */
+    public synchronized long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * Closes the log file without forcing buffered records; callers checkpoint first.
+     * Calling close more than once has no effect.
+     *
+     * @throws IOException If an I/O error occurs while closing.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Writes the header with the current generation and forces it
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(version).putLong(generation);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(false);
+    }
+
+    // Reads bytes from the log starting at the given position until the buffer is full
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of write-ahead log");
+            }
+        }
+    }
+
+    // Copies an encoded record and its checksum into the in-memory buffer
+    private void appendRecord(byte[] record) {
+        int recordSize = record.length + Integer.BYTES;
+        pending = ensureCapacity(pending, recordSize);
+        int start = pending.position();
+        pending.put(record);
+        pending.putInt(checksum(pending, start, record.length));
+        appendedLsn += recordSize;
+    }
+
+    // Checksum of a record's bytes, seeded with the generation so stale records fail verification
+    private int checksum(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer seed = ByteBuffer.allocate(Long.BYTES).putLong(generation);
+        crc.update(seed.array());
+        ByteBuffer record = buffer.duplicate();
+        record.position(start).limit(start + length);
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    // Returns a buffer with room for the given number of bytes, copying into a larger one if needed
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < bytes) {
+            capacity *= 2;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}